@@ -0,0 +1,89 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.zepben.commandlinearguments.benchmarks;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The argument vectors the benchmarks are run against.
+ */
+@EverythingIsNonnullByDefault
+public enum ArgVectors {
+
+    /**
+     * The minimum needed to call every getter.
+     */
+    SMALL(build(1, 0)),
+
+    /**
+     * What a typical EWB launcher passes.
+     */
+    TYPICAL(build(10, 5)),
+
+    /**
+     * 10k value lists and every one of the generated long options.
+     */
+    PATHOLOGICAL(build(10_000, BenchmarkCmdArgs.LONG_OPTION_COUNT));
+
+    private final String[] args;
+
+    ArgVectors(String[] args) {
+        this.args = args;
+    }
+
+    /**
+     * @return A copy of the argument vector.
+     */
+    public String[] args() {
+        return args.clone();
+    }
+
+    private static String[] build(int listSize, int longOptions) {
+        List<String> args = new ArrayList<>();
+
+        args.add("-a");
+        args.add("network-model");
+        args.add("-n");
+        args.add("42");
+        args.add("-d");
+        args.add("2020-10-08");
+        args.add("-f");
+        args.add("--time");
+        args.add("2020-10-08T12:30:00");
+        args.add("--instant");
+        args.add("2020-10-08T02:30:00Z");
+        args.add("--timeout");
+        args.add("PT30S");
+
+        for (int i = 0; i < longOptions; ++i) {
+            args.add("--" + BenchmarkCmdArgs.longOptionName(i));
+            args.add(Integer.toString(i));
+        }
+
+        args.add("--ids");
+        for (int i = 0; i < listSize; ++i)
+            args.add(Integer.toString(i));
+
+        LocalDate firstDate = LocalDate.of(2020, 1, 1);
+        args.add("--dates");
+        for (int i = 0; i < listSize; ++i)
+            args.add(firstDate.plusDays(i).toString());
+
+        args.add("-l");
+        for (int i = 0; i < listSize; ++i)
+            args.add("feeder-" + i);
+
+        return args.toArray(new String[0]);
+    }
+
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.zepben.commandlinearguments.benchmarks;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import com.zepben.commandlinearguments.CmdArgsBase;
+import com.zepben.commandlinearguments.OptionKey;
+import com.zepben.commandlinearguments.ParserEngine;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * A representative launcher args class. The protected getters are re-exposed so the benchmarks can call them directly.
+ */
+@EverythingIsNonnullByDefault
+public class BenchmarkCmdArgs extends CmdArgsBase {
+
+    static final int LONG_OPTION_COUNT = 300;
+
+    private static final OptionKey<Integer> COUNT = OptionKey.intKey("n");
+
+    private final ParserEngine engine;
+
+    public BenchmarkCmdArgs(ParserEngine engine) {
+        this.engine = engine;
+    }
+
+    static String longOptionName(int index) {
+        return String.format("option-%03d", index);
+    }
+
+    @Override
+    protected void addCustomOptions(Options options) {
+        options.addOption(Option.builder("a").longOpt("name").hasArg().desc("a string value.").build());
+        options.addOption(Option.builder("n").longOpt("count").hasArg().desc("an integer value.").build());
+        options.addOption(Option.builder("d").longOpt("date").hasArg().desc("a date value.").build());
+        options.addOption(Option.builder("l").longOpt("list").hasArgs().desc("a list of values.").build());
+        options.addOption(Option.builder("f").longOpt("flag").desc("a flag.").build());
+        options.addOption(Option.builder().longOpt("time").hasArg().desc("a date time value.").build());
+        options.addOption(Option.builder().longOpt("instant").hasArg().desc("an instant value.").build());
+        options.addOption(Option.builder().longOpt("timeout").hasArg().desc("a duration value.").build());
+        options.addOption(Option.builder().longOpt("ids").hasArgs().desc("a list of integer values.").build());
+        options.addOption(Option.builder().longOpt("dates").hasArgs().desc("a list of date values.").build());
+        options.addOption(Option.builder().longOpt("missing").hasArg().desc("a value that is never given.").build());
+
+        for (int i = 0; i < LONG_OPTION_COUNT; ++i)
+            options.addOption(Option.builder().longOpt(longOptionName(i)).hasArg().desc("a generated option.").build());
+    }
+
+    @Override
+    protected void extractCustomOptions() {
+    }
+
+    @Override
+    protected ParserEngine parserEngine() {
+        return engine;
+    }
+
+    public boolean flag() throws ParseException {
+        return hasArg("f");
+    }
+
+    public String name() throws ParseException {
+        return getRequiredStringArg("a");
+    }
+
+    public int count() throws ParseException {
+        return getRequiredIntArg("n");
+    }
+
+    public int countInRange() throws ParseException {
+        return getRequiredIntArg("n", 0, Integer.MAX_VALUE);
+    }
+
+    public int countByKey() throws ParseException {
+        return getRequiredArg(COUNT);
+    }
+
+    public Optional<Integer> optionalCount() throws ParseException {
+        return getOptionalIntArg("n");
+    }
+
+    public LocalDate date() throws ParseException {
+        return getRequiredDateArg("d");
+    }
+
+    public List<String> list() throws ParseException {
+        return getRequiredStringArgList("l");
+    }
+
+    public Optional<String> optionalName() throws ParseException {
+        return getOptionalStringArg("a");
+    }
+
+    public Optional<String> optionalMissing() throws ParseException {
+        return getOptionalStringArg("missing");
+    }
+
+    public Optional<LocalDate> optionalDate() throws ParseException {
+        return getOptionalDateArg("d");
+    }
+
+    public Optional<List<String>> optionalList() throws ParseException {
+        return getOptionalStringArgList("l");
+    }
+
+    public LocalDateTime dateTime() throws ParseException {
+        return getRequiredDateTimeArg("time");
+    }
+
+    public Instant instant() throws ParseException {
+        return getRequiredInstantArg("instant");
+    }
+
+    public Duration timeout() throws ParseException {
+        return getRequiredDurationArg("timeout");
+    }
+
+    public int[] ids() throws ParseException {
+        return getRequiredIntArgList("ids");
+    }
+
+    public long[] longIds() throws ParseException {
+        return getRequiredLongArgList("ids");
+    }
+
+    public List<LocalDate> dates() throws ParseException {
+        return getRequiredDateArgList("dates");
+    }
+
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.zepben.commandlinearguments.benchmarks;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import com.zepben.commandlinearguments.ParserEngine;
+import org.apache.commons.cli.ParseException;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the per call cost of the typed getters against an already parsed args instance.
+ */
+@EverythingIsNonnullByDefault
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GetterBenchmark {
+
+    @Param
+    public ArgVectors vector = ArgVectors.SMALL;
+
+    @Param
+    public ParserEngine engine = ParserEngine.COMMONS_CLI;
+
+    private BenchmarkCmdArgs cmdArgs = new BenchmarkCmdArgs(ParserEngine.COMMONS_CLI);
+
+    @Setup
+    public void setup() throws ParseException {
+        cmdArgs = new BenchmarkCmdArgs(engine);
+        cmdArgs.parse(vector.args());
+    }
+
+    @Benchmark
+    public boolean hasArg() throws ParseException {
+        return cmdArgs.flag();
+    }
+
+    @Benchmark
+    public String getRequiredStringArg() throws ParseException {
+        return cmdArgs.name();
+    }
+
+    @Benchmark
+    public int getRequiredIntArg() throws ParseException {
+        return cmdArgs.count();
+    }
+
+    @Benchmark
+    public int getRequiredIntArgInRange() throws ParseException {
+        return cmdArgs.countInRange();
+    }
+
+    @Benchmark
+    public int getRequiredArgByKey() throws ParseException {
+        return cmdArgs.countByKey();
+    }
+
+    @Benchmark
+    public Optional<Integer> getOptionalIntArg() throws ParseException {
+        return cmdArgs.optionalCount();
+    }
+
+    @Benchmark
+    public LocalDate getRequiredDateArg() throws ParseException {
+        return cmdArgs.date();
+    }
+
+    @Benchmark
+    public List<String> getRequiredStringArgList() throws ParseException {
+        return cmdArgs.list();
+    }
+
+    @Benchmark
+    public Optional<String> getOptionalStringArg() throws ParseException {
+        return cmdArgs.optionalName();
+    }
+
+    @Benchmark
+    public Optional<String> getOptionalStringArgMissing() throws ParseException {
+        return cmdArgs.optionalMissing();
+    }
+
+    @Benchmark
+    public Optional<LocalDate> getOptionalDateArg() throws ParseException {
+        return cmdArgs.optionalDate();
+    }
+
+    @Benchmark
+    public Optional<List<String>> getOptionalStringArgList() throws ParseException {
+        return cmdArgs.optionalList();
+    }
+
+    @Benchmark
+    public LocalDateTime getRequiredDateTimeArg() throws ParseException {
+        return cmdArgs.dateTime();
+    }
+
+    @Benchmark
+    public Instant getRequiredInstantArg() throws ParseException {
+        return cmdArgs.instant();
+    }
+
+    @Benchmark
+    public Duration getRequiredDurationArg() throws ParseException {
+        return cmdArgs.timeout();
+    }
+
+    @Benchmark
+    public int[] getRequiredIntArgList() throws ParseException {
+        return cmdArgs.ids();
+    }
+
+    @Benchmark
+    public long[] getRequiredLongArgList() throws ParseException {
+        return cmdArgs.longIds();
+    }
+
+    @Benchmark
+    public List<LocalDate> getRequiredDateArgList() throws ParseException {
+        return cmdArgs.dates();
+    }
+
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.zepben.commandlinearguments.benchmarks;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import com.zepben.commandlinearguments.ParserEngine;
+import org.apache.commons.cli.ParseException;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of {@code CmdArgsBase.parse} for fresh and reused args instances.
+ */
+@EverythingIsNonnullByDefault
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark {
+
+    @Param
+    public ArgVectors vector = ArgVectors.SMALL;
+
+    @Param
+    public ParserEngine engine = ParserEngine.COMMONS_CLI;
+
+    private String[] args = new String[0];
+    private BenchmarkCmdArgs reused = new BenchmarkCmdArgs(ParserEngine.COMMONS_CLI);
+
+    @Setup
+    public void setup() {
+        args = vector.args();
+        reused = new BenchmarkCmdArgs(engine);
+    }
+
+    @Benchmark
+    public BenchmarkCmdArgs parseNewInstance() throws ParseException {
+        BenchmarkCmdArgs cmdArgs = new BenchmarkCmdArgs(engine);
+        cmdArgs.parse(args);
+        return cmdArgs;
+    }
+
+    @Benchmark
+    public BenchmarkCmdArgs reparse() throws ParseException {
+        reused.parse(args);
+        return reused;
+    }
+
+}
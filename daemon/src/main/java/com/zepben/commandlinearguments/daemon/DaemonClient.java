@@ -0,0 +1,97 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.zepben.commandlinearguments.daemon;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+
+import java.io.*;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * Sends a command line to a {@link ParseDaemon} and relays its output and exit code. Only the JDK is needed on the class
+ * path, so it starts much faster than the tool itself, and it can be built as a native image to start faster still.
+ * <p>
+ * Run it with the path of the socket followed by the args, e.g.
+ * <pre>{@code
+ * java -cp command-line-arguments-daemon.jar com.zepben.commandlinearguments.daemon.DaemonClient \
+ *     /run/user/1000/tool.sock import --file a.csv
+ * }</pre>
+ */
+@EverythingIsNonnullByDefault
+@SuppressWarnings("WeakerAccess")
+public final class DaemonClient {
+
+    public static void main(String[] args) {
+        System.exit(run(args, System.out, System.err));
+    }
+
+    /**
+     * @param args The path of the socket, followed by the command line to run.
+     * @return The exit code of the command, or {@link ParseDaemon#FAILURE_EXIT_CODE} if it couldn't be run.
+     */
+    static int run(String[] args, PrintStream out, PrintStream err) {
+        if (args.length == 0) {
+            err.println("Usage: DaemonClient <socket> [args...]");
+            return ParseDaemon.FAILURE_EXIT_CODE;
+        }
+
+        try {
+            return run(Paths.get(args[0]), Arrays.copyOfRange(args, 1, args.length), out, err);
+        } catch (IOException e) {
+            err.printf("Unable to run the command line with the daemon at '%s': %s%n", args[0], e.getMessage());
+            return ParseDaemon.FAILURE_EXIT_CODE;
+        }
+    }
+
+    /**
+     * @param socket The path of the socket the daemon is listening on.
+     * @param args The command line to run.
+     * @param out Where to write the standard output of the command.
+     * @param err Where to write the standard error of the command.
+     * @return The exit code of the command.
+     * @throws IOException if the daemon can't be reached, or the connection is lost before the command finishes.
+     */
+    public static int run(Path socket, String[] args, OutputStream out, OutputStream err) throws IOException {
+        return run(socket, Paths.get("").toAbsolutePath(), args, out, err);
+    }
+
+    static int run(Path socket, Path workingDirectory, String[] args, OutputStream out, OutputStream err) throws IOException {
+        try (SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(socket))) {
+            DataOutputStream request = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            DaemonProtocol.writeRequest(request, workingDirectory.toString(), args);
+
+            DataInputStream response = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            while (true) {
+                byte kind = response.readByte();
+                if (kind == DaemonProtocol.EXIT)
+                    return response.readInt();
+
+                OutputStream target;
+                if (kind == DaemonProtocol.OUT)
+                    target = out;
+                else if (kind == DaemonProtocol.ERR)
+                    target = err;
+                else
+                    throw new IOException(String.format("Unexpected frame kind %d.", kind));
+
+                target.write(DaemonProtocol.readFrame(response));
+                target.flush();
+            }
+        }
+    }
+
+    private DaemonClient() {
+    }
+
+}
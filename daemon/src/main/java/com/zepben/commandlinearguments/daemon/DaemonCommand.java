@@ -0,0 +1,35 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.zepben.commandlinearguments.daemon;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import com.zepben.commandlinearguments.CmdArgsBase;
+
+/**
+ * Runs a command line once a {@link ParseDaemon} has parsed it.
+ *
+ * @param <T> The type of the parsed args.
+ */
+@EverythingIsNonnullByDefault
+@FunctionalInterface
+public interface DaemonCommand<T extends CmdArgsBase> {
+
+    /**
+     * Called on a thread of the daemon for each command line it is sent, so it must be thread safe. The parsed args are a
+     * new instance for each command line, and may have only asked for help.
+     *
+     * @param args The parsed args.
+     * @param invocation The streams and working directory of the client.
+     * @return The exit code for the client.
+     * @throws Exception if the command fails, in which case the stack trace is printed to the client and it exits with
+     * {@link ParseDaemon#FAILURE_EXIT_CODE}.
+     */
+    int run(T args, Invocation invocation) throws Exception;
+
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.zepben.commandlinearguments.daemon;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The messages exchanged between the {@link DaemonClient} and the {@link ParseDaemon}.
+ * <p>
+ * The client sends the protocol version, its working directory and the args, with each string sent as its length followed
+ * by its UTF-8 bytes. The daemon replies with any number of output frames, each a kind byte followed by a length and the
+ * bytes, and finishes with an exit frame holding the exit code.
+ */
+@EverythingIsNonnullByDefault
+final class DaemonProtocol {
+
+    static final int VERSION = 1;
+
+    static final byte EXIT = 0;
+    static final byte OUT = 1;
+    static final byte ERR = 2;
+
+    // Guards against reading a corrupt or hostile request into memory.
+    private static final int MAX_ARGS = 65536;
+    private static final int MAX_STRING_BYTES = 1 << 20;
+
+    static void writeRequest(DataOutputStream out, String workingDirectory, String[] args) throws IOException {
+        out.writeInt(VERSION);
+        writeString(out, workingDirectory);
+        out.writeInt(args.length);
+        for (String arg : args)
+            writeString(out, arg);
+        out.flush();
+    }
+
+    /**
+     * @return The working directory of the client, followed by the args.
+     */
+    static String[] readRequest(DataInputStream in) throws IOException {
+        int version = in.readInt();
+        if (version != VERSION)
+            throw new IOException(String.format("Unsupported daemon protocol version %d, expected %d.", version, VERSION));
+
+        String workingDirectory = readString(in);
+        int count = in.readInt();
+        if ((count < 0) || (count > MAX_ARGS))
+            throw new IOException(String.format("Invalid argument count %d.", count));
+
+        String[] request = new String[count + 1];
+        request[0] = workingDirectory;
+        for (int i = 1; i < request.length; ++i)
+            request[i] = readString(in);
+        return request;
+    }
+
+    static void writeFrame(DataOutputStream out, byte kind, byte[] bytes, int length) throws IOException {
+        out.writeByte(kind);
+        out.writeInt(length);
+        out.write(bytes, 0, length);
+        out.flush();
+    }
+
+    static void writeExit(DataOutputStream out, int exitCode) throws IOException {
+        out.writeByte(EXIT);
+        out.writeInt(exitCode);
+        out.flush();
+    }
+
+    static byte[] readFrame(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if ((length < 0) || (length > MAX_STRING_BYTES))
+            throw new IOException(String.format("Invalid frame length %d.", length));
+
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return new String(readFrame(in), StandardCharsets.UTF_8);
+    }
+
+    private DaemonProtocol() {
+    }
+
+}
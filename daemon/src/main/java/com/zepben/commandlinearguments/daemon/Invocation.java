@@ -0,0 +1,132 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.zepben.commandlinearguments.daemon;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One run of a command line sent to a {@link ParseDaemon} by a {@link DaemonClient}.
+ * <p>
+ * The daemon shares its working directory and standard streams between every invocation, so commands must resolve
+ * relative paths against {@link #workingDirectory()} and print to {@link #out()} and {@link #err()}, which are sent back
+ * to the client as they are flushed.
+ */
+@EverythingIsNonnullByDefault
+@SuppressWarnings("WeakerAccess")
+public final class Invocation {
+
+    private final Path workingDirectory;
+    private final List<String> args;
+    private final DataOutputStream connection;
+    private final PrintStream out;
+    private final PrintStream err;
+
+    Invocation(Path workingDirectory, String[] args, DataOutputStream connection) {
+        this.workingDirectory = workingDirectory;
+        this.args = Collections.unmodifiableList(Arrays.asList(args));
+        this.connection = connection;
+        out = new PrintStream(new FrameOutputStream(DaemonProtocol.OUT), true, StandardCharsets.UTF_8);
+        err = new PrintStream(new FrameOutputStream(DaemonProtocol.ERR), true, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return The working directory of the client.
+     */
+    public Path workingDirectory() {
+        return workingDirectory;
+    }
+
+    /**
+     * @return The args sent by the client.
+     */
+    public List<String> args() {
+        return args;
+    }
+
+    /**
+     * @return The standard output of the client.
+     */
+    public PrintStream out() {
+        return out;
+    }
+
+    /**
+     * @return The standard error of the client.
+     */
+    public PrintStream err() {
+        return err;
+    }
+
+    void finish(int exitCode) throws IOException {
+        out.flush();
+        err.flush();
+        synchronized (connection) {
+            DaemonProtocol.writeExit(connection, exitCode);
+        }
+    }
+
+    /**
+     * Sends the bytes written to it to the client as frames of one kind, whenever it is flushed or its buffer fills.
+     */
+    private final class FrameOutputStream extends OutputStream {
+
+        private final byte kind;
+        private final byte[] buffer = new byte[8192];
+        private int count = 0;
+
+        private FrameOutputStream(byte kind) {
+            this.kind = kind;
+        }
+
+        @Override
+        public synchronized void write(int b) throws IOException {
+            if (count == buffer.length)
+                flush();
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public synchronized void write(byte[] bytes, int offset, int length) throws IOException {
+            while (length > 0) {
+                if (count == buffer.length)
+                    flush();
+
+                int copied = Math.min(length, buffer.length - count);
+                System.arraycopy(bytes, offset, buffer, count, copied);
+                count += copied;
+                offset += copied;
+                length -= copied;
+            }
+        }
+
+        @Override
+        public synchronized void flush() throws IOException {
+            if (count == 0)
+                return;
+
+            // Both streams share the connection, so each frame is written as a whole.
+            synchronized (connection) {
+                DaemonProtocol.writeFrame(connection, kind, buffer, count);
+            }
+            count = 0;
+        }
+
+    }
+
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.zepben.commandlinearguments.daemon;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import com.zepben.commandlinearguments.CmdArgsBase;
+import org.apache.commons.cli.ParseException;
+
+import java.io.*;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Keeps a JVM warm for a command line tool, so scripts that run the tool many times only pay for JVM startup, class
+ * loading and compiling the schema once. The daemon listens on a Unix domain socket, and each command line sent to it by
+ * a {@link DaemonClient} is parsed into a new instance of the args and passed to a {@link DaemonCommand}. Relative
+ * {@code @path} argument files and config files are resolved against the working directory of the client.
+ * <p>
+ * Only the working directory is sent by the client, so {@link com.zepben.commandlinearguments.Fallbacks} and
+ * {@link CmdArgsBase#environment()} still read the environment variables and system properties of the daemon, not those
+ * of the client.
+ * <p>
+ * The schema is compiled before the daemon starts listening, and is shared by the instances as usual. Each connection is
+ * served on its own thread, so command lines sent at the same time are run concurrently.
+ * <p>
+ * The socket file is only readable and writable by its owner, but it should still be created in a directory that only
+ * the user running the daemon can access, as anyone who can connect can run commands as that user.
+ *
+ * @param <T> The type of the parsed args.
+ */
+@EverythingIsNonnullByDefault
+@SuppressWarnings("WeakerAccess")
+public final class ParseDaemon<T extends CmdArgsBase> implements Closeable {
+
+    /**
+     * The exit code sent to the client when its command line can't be parsed.
+     */
+    public static final int PARSE_ERROR_EXIT_CODE = 2;
+
+    /**
+     * The exit code sent to the client when the command fails.
+     */
+    public static final int FAILURE_EXIT_CODE = 1;
+
+    private static final long MIN_ACCEPT_BACK_OFF_MILLIS = 10;
+    private static final long MAX_ACCEPT_BACK_OFF_MILLIS = 1000;
+
+    private final Path socket;
+    private final Supplier<T> factory;
+    private final DaemonCommand<T> command;
+    private final ServerSocketChannel server;
+    private final ExecutorService connections;
+    private final Thread acceptor;
+    private volatile boolean closed = false;
+
+    private ParseDaemon(Path socket, Supplier<T> factory, DaemonCommand<T> command, ServerSocketChannel server) {
+        this.socket = socket;
+        this.factory = factory;
+        this.command = command;
+        this.server = server;
+
+        connections = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "command-line-arguments-daemon-connection");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // The acceptor is not a daemon thread, so the JVM stays up until the daemon is closed.
+        acceptor = new Thread(this::acceptConnections, "command-line-arguments-daemon");
+    }
+
+    /**
+     * @param socket The path of the socket file. A stale socket file left by a daemon that was not closed is replaced.
+     * @param factory Creates a new instance of the args for each command line.
+     * @param command Runs each parsed command line.
+     * @return The running daemon.
+     * @throws IOException if the socket can't be bound, including when another daemon is already listening on it.
+     */
+    public static <T extends CmdArgsBase> ParseDaemon<T> start(Path socket, Supplier<T> factory, DaemonCommand<T> command) throws IOException {
+        factory.get().schema();
+
+        UnixDomainSocketAddress address = UnixDomainSocketAddress.of(socket);
+        removeStaleSocket(address);
+
+        ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        try {
+            server.bind(address);
+            restrictToOwner(socket);
+        } catch (IOException | RuntimeException e) {
+            server.close();
+            throw e;
+        }
+
+        ParseDaemon<T> daemon = new ParseDaemon<>(socket, factory, command, server);
+        daemon.acceptor.start();
+        return daemon;
+    }
+
+    /**
+     * @return The path of the socket file.
+     */
+    public Path socket() {
+        return socket;
+    }
+
+    /**
+     * Waits for the daemon to be closed, e.g. from the {@code main} method of a tool that only runs as a daemon.
+     *
+     * @throws InterruptedException if the thread is interrupted while waiting.
+     */
+    public void awaitClose() throws InterruptedException {
+        acceptor.join();
+    }
+
+    /**
+     * Stops accepting command lines and removes the socket file. Command lines that are already running are left to
+     * finish.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        try {
+            server.close();
+        } finally {
+            connections.shutdown();
+            Files.deleteIfExists(socket);
+        }
+    }
+
+    private void acceptConnections() {
+        long backOffMillis = 0;
+        while (!closed) {
+            SocketChannel channel;
+            try {
+                channel = server.accept();
+                backOffMillis = 0;
+            } catch (AsynchronousCloseException ignored) {
+                return;
+            } catch (IOException e) {
+                if (closed)
+                    return;
+
+                // Failures such as running out of file descriptors don't clear straight away, so accepting again at once
+                // would spin. Wait longer after each failure until a connection is accepted, and report the first of them.
+                if (backOffMillis == 0)
+                    System.err.printf("Failed to accept a connection on '%s', retrying: %s%n", socket, e);
+                backOffMillis = Math.min(Math.max(2 * backOffMillis, MIN_ACCEPT_BACK_OFF_MILLIS), MAX_ACCEPT_BACK_OFF_MILLIS);
+                try {
+                    Thread.sleep(backOffMillis);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                continue;
+            }
+
+            try {
+                connections.execute(() -> serve(channel));
+            } catch (RejectedExecutionException e) {
+                // The daemon was closed after the connection was accepted, so it is dropped rather than left open.
+                closeQuietly(channel);
+            }
+        }
+    }
+
+    private void serve(SocketChannel channel) {
+        try (channel) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+
+            String[] request = DaemonProtocol.readRequest(in);
+            Invocation invocation = new Invocation(Paths.get(request[0]), Arrays.copyOfRange(request, 1, request.length), out);
+            invocation.finish(run(invocation));
+        } catch (IOException ignored) {
+            // The client has gone, so there is no one to report the failure to.
+        }
+    }
+
+    private int run(Invocation invocation) {
+        T args = factory.get();
+        try {
+            args.parse(invocation.args().toArray(new String[0]), invocation.workingDirectory());
+        } catch (ParseException e) {
+            invocation.err().println(e.getMessage());
+            return PARSE_ERROR_EXIT_CODE;
+        } catch (RuntimeException e) {
+            // A bug in extractCustomOptions or a validator still needs an exit frame, or the client reports a lost connection.
+            e.printStackTrace(invocation.err());
+            return FAILURE_EXIT_CODE;
+        }
+
+        try {
+            return command.run(args, invocation);
+        } catch (Exception e) {
+            e.printStackTrace(invocation.err());
+            return FAILURE_EXIT_CODE;
+        }
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // The client sees the connection close either way.
+        }
+    }
+
+    private static void removeStaleSocket(UnixDomainSocketAddress address) throws IOException {
+        if (!Files.exists(address.getPath()))
+            return;
+
+        boolean listening;
+        try (SocketChannel ignored = SocketChannel.open(address)) {
+            listening = true;
+        } catch (IOException e) {
+            listening = false;
+        }
+
+        if (listening)
+            throw new IOException(String.format("A daemon is already listening on '%s'.", address.getPath()));
+        Files.delete(address.getPath());
+    }
+
+    private static void restrictToOwner(Path socket) throws IOException {
+        try {
+            Files.setPosixFilePermissions(socket, PosixFilePermissions.fromString("rw-------"));
+        } catch (UnsupportedOperationException ignored) {
+            // The file system doesn't have POSIX permissions, so the socket keeps those of its directory.
+        }
+    }
+
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.zepben.commandlinearguments.daemon;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import static com.zepben.testutils.exception.ExpectException.expect;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class DaemonProtocolTest {
+
+    @Test
+    public void roundTripsRequests() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DaemonProtocol.writeRequest(new DataOutputStream(bytes), "/home/café", new String[]{"--name", "über", ""});
+
+        assertThat(DaemonProtocol.readRequest(input(bytes.toByteArray())), arrayContaining("/home/café", "--name", "über", ""));
+    }
+
+    @Test
+    public void rejectsInvalidRequests() throws Exception {
+        expect(() -> DaemonProtocol.readRequest(input(ints(DaemonProtocol.VERSION + 1))))
+            .toThrow(IOException.class)
+            .withMessage(String.format("Unsupported daemon protocol version %d, expected %d.", DaemonProtocol.VERSION + 1, DaemonProtocol.VERSION));
+        expect(() -> DaemonProtocol.readRequest(input(ints(DaemonProtocol.VERSION, 0, -1))))
+            .toThrow(IOException.class)
+            .withMessage("Invalid argument count -1.");
+        expect(() -> DaemonProtocol.readRequest(input(ints(DaemonProtocol.VERSION, 0, Integer.MAX_VALUE))))
+            .toThrow(IOException.class)
+            .withMessage(String.format("Invalid argument count %d.", Integer.MAX_VALUE));
+        expect(() -> DaemonProtocol.readFrame(input(ints(-1))))
+            .toThrow(IOException.class)
+            .withMessage("Invalid frame length -1.");
+        expect(() -> DaemonProtocol.readFrame(input(ints(Integer.MAX_VALUE))))
+            .toThrow(IOException.class)
+            .withMessage(String.format("Invalid frame length %d.", Integer.MAX_VALUE));
+    }
+
+    private static DataInputStream input(byte[] bytes) {
+        return new DataInputStream(new ByteArrayInputStream(bytes));
+    }
+
+    private static byte[] ints(int... values) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (int value : values)
+            out.writeInt(value);
+        return bytes.toByteArray();
+    }
+
+}
@@ -0,0 +1,311 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.zepben.commandlinearguments.daemon;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import com.zepben.commandlinearguments.CmdArgsBase;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.*;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.zepben.testutils.exception.ExpectException.expect;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class ParseDaemonTest {
+
+    @TempDir
+    Path directory;
+
+    private final List<ParseDaemon<?>> daemons = new ArrayList<>();
+
+    @AfterEach
+    public void closeDaemons() throws IOException {
+        for (ParseDaemon<?> daemon : daemons)
+            daemon.close();
+    }
+
+    @Test
+    public void runsCommandLinesSentByTheClient() throws Exception {
+        Path socket = start((args, invocation) -> {
+            invocation.out().println("Hello " + args.name + " from " + invocation.workingDirectory());
+            invocation.err().print("done");
+            return args.count;
+        }).socket();
+
+        Result result = run(socket, "--name", "Zeppelin Bend", "-n", "3");
+
+        assertThat(result.exitCode, equalTo(3));
+        assertThat(result.out, equalTo("Hello Zeppelin Bend from " + Paths.get("").toAbsolutePath() + System.lineSeparator()));
+        assertThat(result.err, equalTo("done"));
+    }
+
+    @Test
+    public void reportsParseErrors() throws Exception {
+        Path socket = start((args, invocation) -> 0).socket();
+
+        Result result = run(socket, "-n", "3");
+
+        assertThat(result.exitCode, equalTo(ParseDaemon.PARSE_ERROR_EXIT_CODE));
+        assertThat(result.err, equalTo("Missing required option: name" + System.lineSeparator()));
+        assertThat(result.out, equalTo(""));
+    }
+
+    @Test
+    public void reportsFailedCommands() throws Exception {
+        Path socket = start((args, invocation) -> {
+            throw new IllegalStateException("Broken");
+        }).socket();
+
+        Result result = run(socket, "--name", "a");
+
+        assertThat(result.exitCode, equalTo(ParseDaemon.FAILURE_EXIT_CODE));
+        assertThat(result.err, startsWith("java.lang.IllegalStateException: Broken"));
+    }
+
+    @Test
+    public void reportsFailedExtraction() throws Exception {
+        Path socket = start((args, invocation) -> 0).socket();
+
+        Result result = run(socket, "--name", "a", "-n", "-1");
+
+        assertThat(result.exitCode, equalTo(ParseDaemon.FAILURE_EXIT_CODE));
+        assertThat(result.err, startsWith("java.lang.IllegalStateException: INTERNAL ERROR: The count can't be negative."));
+    }
+
+    @Test
+    public void resolvesArgumentFilesAgainstTheClientDirectory() throws Exception {
+        Path client = Files.createDirectory(directory.resolve("client"));
+        Files.write(client.resolve("args.txt"), "--name \"from file\"".getBytes(StandardCharsets.UTF_8));
+        Path socket = start((args, invocation) -> {
+            invocation.out().print(args.name);
+            return 0;
+        }).socket();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int exitCode = DaemonClient.run(socket, client, new String[]{"@args.txt"}, out, new ByteArrayOutputStream());
+
+        assertThat(exitCode, equalTo(0));
+        assertThat(out.toString(StandardCharsets.UTF_8), equalTo("from file"));
+    }
+
+    @Test
+    public void runsCommandLinesConcurrentlyWithNewArgs() throws Exception {
+        CountDownLatch running = new CountDownLatch(4);
+        Path socket = start((args, invocation) -> {
+            running.countDown();
+            if (!running.await(10, TimeUnit.SECONDS))
+                throw new IllegalStateException("The command lines were not run concurrently.");
+            invocation.out().print(args.name);
+            return 0;
+        }).socket();
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Result>> results = new ArrayList<>();
+            for (int i = 0; i < 4; ++i) {
+                String name = "client" + i;
+                results.add(executor.submit(() -> run(socket, "--name", name)));
+            }
+
+            for (int i = 0; i < 4; ++i)
+                assertThat(results.get(i).get(10, TimeUnit.SECONDS).out, equalTo("client" + i));
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(DaemonArgs.SCHEMAS_COMPILED.get(), equalTo(1));
+    }
+
+    @Test
+    public void sendsLargeOutputInFrames() throws Exception {
+        String line = "x".repeat(10_000);
+        Path socket = start((args, invocation) -> {
+            for (int i = 0; i < 10; ++i)
+                invocation.out().print(line);
+            return 0;
+        }).socket();
+
+        assertThat(run(socket, "--name", "a").out, equalTo(line.repeat(10)));
+    }
+
+    @Test
+    public void sendsSingleBytesAndFullBuffers() throws Exception {
+        byte[] half = "y".repeat(5000).getBytes(StandardCharsets.UTF_8);
+        Path socket = start((args, invocation) -> {
+            for (int i = 0; i < 10_000; ++i)
+                invocation.out().write('x');
+            invocation.err().write(half, 0, half.length);
+            invocation.err().write(half, 0, half.length);
+            return 0;
+        }).socket();
+
+        Result result = run(socket, "--name", "a");
+
+        assertThat(result.out, equalTo("x".repeat(10_000)));
+        assertThat(result.err, equalTo("y".repeat(10_000)));
+    }
+
+    @Test
+    public void awaitsClose() throws Exception {
+        ParseDaemon<DaemonArgs> daemon = start((args, invocation) -> 0);
+        CountDownLatch closed = new CountDownLatch(1);
+        Thread waiter = new Thread(() -> {
+            try {
+                daemon.awaitClose();
+                closed.countDown();
+            } catch (InterruptedException ignored) {
+                // The test fails below.
+            }
+        });
+        waiter.start();
+
+        daemon.close();
+
+        assertThat(closed.await(10, TimeUnit.SECONDS), equalTo(true));
+    }
+
+    @Test
+    public void clientReportsUsageAndUnreachableDaemons() {
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        PrintStream errStream = new PrintStream(err, true, StandardCharsets.UTF_8);
+        PrintStream out = new PrintStream(new ByteArrayOutputStream(), true, StandardCharsets.UTF_8);
+
+        assertThat(DaemonClient.run(new String[0], out, errStream), equalTo(ParseDaemon.FAILURE_EXIT_CODE));
+        assertThat(err.toString(StandardCharsets.UTF_8), startsWith("Usage: DaemonClient <socket> [args...]"));
+
+        err.reset();
+        Path missing = directory.resolve("missing.sock");
+        assertThat(DaemonClient.run(new String[]{missing.toString(), "--name", "a"}, out, errStream), equalTo(ParseDaemon.FAILURE_EXIT_CODE));
+        assertThat(err.toString(StandardCharsets.UTF_8), startsWith(String.format("Unable to run the command line with the daemon at '%s': ", missing)));
+    }
+
+    @Test
+    public void clientRejectsUnexpectedFrames() throws Exception {
+        Path socket = directory.resolve("fake.sock");
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(socket));
+            Thread fake = new Thread(() -> {
+                try (SocketChannel channel = server.accept()) {
+                    DaemonProtocol.readRequest(new DataInputStream(Channels.newInputStream(channel)));
+                    DataOutputStream out = new DataOutputStream(Channels.newOutputStream(channel));
+                    out.writeByte(9);
+                    out.flush();
+                } catch (IOException ignored) {
+                    // The client reports the failure.
+                }
+            });
+            fake.start();
+
+            expect(() -> run(socket, "--name", "a"))
+                .toThrow(IOException.class)
+                .withMessage("Unexpected frame kind 9.");
+            fake.join();
+        }
+    }
+
+    @Test
+    public void onlyOneDaemonCanListen() throws Exception {
+        ParseDaemon<DaemonArgs> daemon = start((args, invocation) -> 0);
+
+        expect(() -> ParseDaemon.start(daemon.socket(), DaemonArgs::new, (args, invocation) -> 0))
+            .toThrow(IOException.class)
+            .withMessage(String.format("A daemon is already listening on '%s'.", daemon.socket()));
+
+        daemon.close();
+        assertThat(Files.exists(daemon.socket()), equalTo(false));
+        expect(() -> run(daemon.socket(), "--name", "a")).toThrow(IOException.class);
+    }
+
+    @Test
+    public void replacesStaleSockets() throws Exception {
+        Path socket = directory.resolve("tool.sock");
+        Files.createFile(socket);
+
+        start((args, invocation) -> 7);
+
+        assertThat(run(socket, "--name", "a").exitCode, equalTo(7));
+    }
+
+    private ParseDaemon<DaemonArgs> start(DaemonCommand<DaemonArgs> command) throws IOException {
+        ParseDaemon<DaemonArgs> daemon = ParseDaemon.start(directory.resolve("tool.sock"), DaemonArgs::new, command);
+        daemons.add(daemon);
+        return daemon;
+    }
+
+    private static Result run(Path socket, String... args) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        int exitCode = DaemonClient.run(socket, args, out, err);
+        return new Result(exitCode, out.toString(StandardCharsets.UTF_8), err.toString(StandardCharsets.UTF_8));
+    }
+
+    private static class Result {
+
+        private final int exitCode;
+        private final String out;
+        private final String err;
+
+        private Result(int exitCode, String out, String err) {
+            this.exitCode = exitCode;
+            this.out = out;
+            this.err = err;
+        }
+
+    }
+
+    @EverythingIsNonnullByDefault
+    private static class DaemonArgs extends CmdArgsBase {
+
+        private static final AtomicInteger SCHEMAS_COMPILED = new AtomicInteger();
+
+        private String name = "";
+        private int count = 0;
+
+        @Override
+        protected void addCustomOptions(Options options) {
+            SCHEMAS_COMPILED.incrementAndGet();
+            options.addOption(Option.builder().longOpt("name").hasArg().required().build());
+            options.addOption(Option.builder("n").hasArg().build());
+        }
+
+        @Override
+        protected void extractCustomOptions() throws ParseException {
+            name = getRequiredStringArg("name");
+            count = getOptionalIntArg("n").orElse(0);
+            if (count < 0)
+                throw new IllegalStateException("INTERNAL ERROR: The count can't be negative.");
+        }
+
+        @Override
+        protected boolean expandArgumentFiles() {
+            return true;
+        }
+
+    }
+
+}
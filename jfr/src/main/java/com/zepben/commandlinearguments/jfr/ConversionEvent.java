@@ -0,0 +1,30 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.zepben.commandlinearguments.jfr;
+
+import jdk.jfr.*;
+
+@Name("com.zepben.commandlinearguments.Conversion")
+@Label("Command Line Option Conversion")
+@Category({"Zepben", "Command Line Arguments"})
+@Description("The time spent converting the value of an option in a typed getter.")
+@StackTrace(false)
+class ConversionEvent extends Event {
+
+    @Label("Option")
+    String option;
+
+    @Label("Converted Type")
+    Class<?> convertedType;
+
+    @Label("Conversion Duration")
+    @Timespan(Timespan.NANOSECONDS)
+    long conversionDuration;
+
+}
@@ -0,0 +1,27 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.zepben.commandlinearguments.jfr;
+
+import jdk.jfr.*;
+
+@Name("com.zepben.commandlinearguments.Extract")
+@Label("Command Line Option Extraction")
+@Category({"Zepben", "Command Line Arguments"})
+@Description("The time spent in extractCustomOptions, including any validation.")
+@StackTrace(false)
+class ExtractEvent extends Event {
+
+    @Label("Arguments Class")
+    Class<?> argsClass;
+
+    @Label("Extract Duration")
+    @Timespan(Timespan.NANOSECONDS)
+    long extractDuration;
+
+}
@@ -0,0 +1,28 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+
+package com.zepben.commandlinearguments.jfr;
+
+import jdk.jfr.*;
+
+@Name("com.zepben.commandlinearguments.Fallbacks")
+@Label("Command Line Fallbacks")
+@Category({"Zepben", "Command Line Arguments"})
+@Description("The time spent reading config files and resolving fallbacks for the options not on the command line.")
+@StackTrace(false)
+class FallbackEvent extends Event {
+
+    @Label("Arguments Class")
+    Class<?> argsClass;
+
+    @Label("Fallbacks Duration")
+    @Timespan(Timespan.NANOSECONDS)
+    long fallbacksDuration;
+
+}
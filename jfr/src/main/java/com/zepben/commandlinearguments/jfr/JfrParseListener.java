@@ -0,0 +1,140 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.zepben.commandlinearguments.jfr;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import com.zepben.commandlinearguments.ParseListener;
+import com.zepben.commandlinearguments.ParserEngine;
+import jdk.jfr.Event;
+import org.apache.commons.cli.Option;
+
+import java.util.function.Supplier;
+
+/**
+ * Records each stage of parsing as a Java Flight Recorder event, under the "Command Line Arguments" category. Return
+ * {@link #INSTANCE} from {@code CmdArgsBase.parseListener()} to enable it.
+ * <p>
+ * Each event is begun when its stage starts and committed when it completes, so it spans the stage in the recording, and
+ * the time spent in the stage is also recorded as a field. Events that are not enabled in the recording are not
+ * committed. The events in progress are held per thread, so when a stage is started again on the same thread before it
+ * completes, such as by parsing other args from {@code extractCustomOptions}, the outer stage is recorded without a span.
+ */
+@EverythingIsNonnullByDefault
+public final class JfrParseListener implements ParseListener {
+
+    public static final JfrParseListener INSTANCE = new JfrParseListener();
+
+    private static final InProgress<ParseEvent> PARSE_EVENTS = new InProgress<>(ParseEvent::new);
+    private static final InProgress<FallbackEvent> FALLBACK_EVENTS = new InProgress<>(FallbackEvent::new);
+    private static final InProgress<ConversionEvent> CONVERSION_EVENTS = new InProgress<>(ConversionEvent::new);
+    private static final InProgress<ExtractEvent> EXTRACT_EVENTS = new InProgress<>(ExtractEvent::new);
+
+    private JfrParseListener() {
+    }
+
+    @Override
+    public void onParseStarted(Class<?> type) {
+        PARSE_EVENTS.begin();
+    }
+
+    @Override
+    public void onParsed(Class<?> type, ParserEngine engine, long tokenizeNanos, long resolveNanos) {
+        ParseEvent event = PARSE_EVENTS.end();
+
+        // The config files and fallbacks are resolved as soon as the command line has been parsed.
+        FALLBACK_EVENTS.begin();
+
+        if (!event.shouldCommit())
+            return;
+
+        event.argsClass = type;
+        event.engine = engine.name();
+        event.tokenizeDuration = tokenizeNanos;
+        event.resolveDuration = resolveNanos;
+        event.commit();
+    }
+
+    @Override
+    public void onFallbacksResolved(Class<?> type, long durationNanos) {
+        FallbackEvent event = FALLBACK_EVENTS.end();
+        if (!event.shouldCommit())
+            return;
+
+        event.argsClass = type;
+        event.fallbacksDuration = durationNanos;
+        event.commit();
+    }
+
+    @Override
+    public void onConversionStarted(Option option) {
+        CONVERSION_EVENTS.begin();
+    }
+
+    @Override
+    public void onConverted(Option option, Class<?> convertedType, long durationNanos) {
+        ConversionEvent event = CONVERSION_EVENTS.end();
+        if (!event.shouldCommit())
+            return;
+
+        event.option = option.getOpt() != null ? option.getOpt() : option.getLongOpt();
+        event.convertedType = convertedType;
+        event.conversionDuration = durationNanos;
+        event.commit();
+    }
+
+    @Override
+    public void onExtractStarted(Class<?> type) {
+        EXTRACT_EVENTS.begin();
+    }
+
+    @Override
+    public void onExtracted(Class<?> type, long durationNanos) {
+        ExtractEvent event = EXTRACT_EVENTS.end();
+        if (!event.shouldCommit())
+            return;
+
+        event.argsClass = type;
+        event.extractDuration = durationNanos;
+        event.commit();
+    }
+
+    /**
+     * The events of a stage that has begun on each thread, until the stage ends.
+     */
+    private static final class InProgress<E extends Event> {
+
+        private final ThreadLocal<E> events = new ThreadLocal<>();
+        private final Supplier<E> newEvent;
+
+        InProgress(Supplier<E> newEvent) {
+            this.newEvent = newEvent;
+        }
+
+        void begin() {
+            E event = newEvent.get();
+            event.begin();
+            events.set(event);
+        }
+
+        /**
+         * @return The event begun on this thread, or a new one if a nested stage on the same thread has already ended it.
+         */
+        E end() {
+            E event = events.get();
+            if (event == null)
+                return newEvent.get();
+
+            events.remove();
+            event.end();
+            return event;
+        }
+
+    }
+
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.zepben.commandlinearguments.jfr;
+
+import jdk.jfr.*;
+
+@Name("com.zepben.commandlinearguments.Parse")
+@Label("Command Line Parse")
+@Category({"Zepben", "Command Line Arguments"})
+@Description("The time spent parsing a command line.")
+@StackTrace(false)
+class ParseEvent extends Event {
+
+    @Label("Arguments Class")
+    Class<?> argsClass;
+
+    @Label("Engine")
+    String engine;
+
+    @Label("Tokenize Duration")
+    @Timespan(Timespan.NANOSECONDS)
+    long tokenizeDuration;
+
+    @Label("Resolve Duration")
+    @Timespan(Timespan.NANOSECONDS)
+    long resolveDuration;
+
+}
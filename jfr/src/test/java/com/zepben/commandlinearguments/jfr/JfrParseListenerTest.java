@@ -0,0 +1,121 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.zepben.commandlinearguments.jfr;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import com.zepben.commandlinearguments.CmdArgsBase;
+import com.zepben.commandlinearguments.ParseListener;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class JfrParseListenerTest {
+
+    @Test
+    public void recordsEvents(@TempDir Path tempDir) throws Exception {
+        Path file = tempDir.resolve("parse.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(ParseEvent.class);
+            recording.enable(FallbackEvent.class);
+            recording.enable(ConversionEvent.class);
+            recording.enable(ExtractEvent.class);
+            recording.start();
+
+            new JfrCmdArgs().parse(new String[]{"-n", "123"});
+
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file)
+            .stream()
+            .filter(event -> event.getEventType().getName().startsWith("com.zepben.commandlinearguments."))
+            .collect(Collectors.toList());
+
+        assertThat(events.stream().map(event -> event.getEventType().getName()).collect(Collectors.toList()), contains(
+            "com.zepben.commandlinearguments.Parse",
+            "com.zepben.commandlinearguments.Fallbacks",
+            "com.zepben.commandlinearguments.Conversion",
+            "com.zepben.commandlinearguments.Extract"
+        ));
+        RecordedEvent parse = events.get(0);
+        RecordedEvent fallbacks = events.get(1);
+        RecordedEvent conversion = events.get(2);
+        RecordedEvent extract = events.get(3);
+
+        assertThat(parse.getString("engine"), equalTo("COMMONS_CLI"));
+        assertThat(parse.getClass("argsClass").getName(), equalTo(JfrCmdArgs.class.getName()));
+        assertThat(fallbacks.getClass("argsClass").getName(), equalTo(JfrCmdArgs.class.getName()));
+        assertThat(conversion.getString("option"), equalTo("n"));
+        assertThat(conversion.getClass("convertedType").getName(), equalTo(Integer.class.getName()));
+        assertThat(extract.getDuration("extractDuration").toNanos(), greaterThan(0L));
+
+        // Each event spans its stage, and the conversion is done by the extraction.
+        assertThat(parse.getDuration().toNanos(), greaterThan(0L));
+        assertThat(extract.getDuration().toNanos(), greaterThan(0L));
+        assertThat(fallbacks.getStartTime(), not(lessThan(parse.getEndTime())));
+        assertThat(extract.getStartTime(), not(lessThan(fallbacks.getEndTime())));
+        assertThat(conversion.getStartTime(), not(lessThan(extract.getStartTime())));
+        assertThat(conversion.getEndTime(), not(greaterThan(extract.getEndTime())));
+    }
+
+    @Test
+    public void skipsEventsThatAreNotEnabled(@TempDir Path tempDir) throws Exception {
+        Path file = tempDir.resolve("disabled.jfr");
+        try (Recording recording = new Recording()) {
+            recording.disable(ParseEvent.class);
+            recording.disable(FallbackEvent.class);
+            recording.disable(ConversionEvent.class);
+            recording.disable(ExtractEvent.class);
+            recording.start();
+
+            new JfrCmdArgs().parse(new String[]{"-n", "123"});
+
+            recording.stop();
+            recording.dump(file);
+        }
+
+        assertThat(RecordingFile.readAllEvents(file)
+            .stream()
+            .filter(event -> event.getEventType().getName().startsWith("com.zepben.commandlinearguments."))
+            .count(), equalTo(0L));
+    }
+
+    @EverythingIsNonnullByDefault
+    private static class JfrCmdArgs extends CmdArgsBase {
+
+        @Override
+        protected void addCustomOptions(Options options) {
+            options.addOption("n", true, "");
+        }
+
+        @Override
+        protected void extractCustomOptions() throws ParseException {
+            getRequiredIntArg("n");
+        }
+
+        @Override
+        protected ParseListener parseListener() {
+            return JfrParseListener.INSTANCE;
+        }
+
+    }
+
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.zepben.commandlinearguments.nativeimage;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import com.zepben.commandlinearguments.CmdArgsBase;
+import com.zepben.commandlinearguments.ParserEngine;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+
+import javax.annotation.Nullable;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * The options of a typical tool, covering each of the typed getters.
+ */
+@EverythingIsNonnullByDefault
+class SampleArgs extends CmdArgsBase {
+
+    private final ParserEngine engine;
+
+    @Nullable private String name;
+    @Nullable private Integer count;
+    @Nullable private LocalDate date;
+    @Nullable private List<String> tags;
+
+    SampleArgs(ParserEngine engine) {
+        this.engine = engine;
+    }
+
+    String name() {
+        return ensureOptionInitialised(name);
+    }
+
+    int count() {
+        return ensureOptionInitialised(count);
+    }
+
+    LocalDate date() {
+        return ensureOptionInitialised(date);
+    }
+
+    List<String> tags() {
+        return ensureOptionInitialised(tags);
+    }
+
+    @Override
+    protected void addCustomOptions(Options options) {
+        options.addOption(Option.builder("n").longOpt("name").hasArg().desc("the name.").build());
+        options.addOption(Option.builder("c").longOpt("count").hasArg().desc("the count.").build());
+        options.addOption(Option.builder("d").longOpt("date").hasArg().desc("the date.").build());
+        options.addOption(Option.builder("t").longOpt("tag").hasArgs().desc("the tags.").build());
+    }
+
+    @Override
+    protected void extractCustomOptions() throws ParseException {
+        name = getRequiredStringArg("n");
+        count = getOptionalIntArg("c", 0).orElse(1);
+        date = getRequiredDateArg("d");
+        tags = getRequiredStringArgList("t");
+    }
+
+    @Override
+    protected ParserEngine parserEngine() {
+        return engine;
+    }
+
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.zepben.commandlinearguments.nativeimage;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import com.zepben.commandlinearguments.ParserEngine;
+import org.apache.commons.cli.ParseException;
+
+/**
+ * A tool that parses its command line and reports the values, which is built as a native image to check startup time.
+ * <p>
+ * Set the {@code ENGINE} environment variable to {@code NATIVE} to use {@link ParserEngine#NATIVE}.
+ */
+@EverythingIsNonnullByDefault
+public class SampleTool {
+
+    public static void main(String[] args) {
+        String engine = System.getenv("ENGINE");
+        SampleArgs sampleArgs = new SampleArgs(engine == null ? ParserEngine.COMMONS_CLI : ParserEngine.valueOf(engine));
+
+        try {
+            sampleArgs.parse(args);
+        } catch (ParseException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+
+        System.out.printf("parsed name=%s count=%d date=%s tags=%s%n", sampleArgs.name(), sampleArgs.count(), sampleArgs.date(), sampleArgs.tags());
+    }
+
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.zepben.commandlinearguments.nativeimage;
+
+import com.zepben.commandlinearguments.ParserEngine;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Checks the time from launching the native image until it has parsed its command line. This only runs when the image has
+ * been built with the {@code native} profile, which sets {@code native.executable}.
+ */
+public class NativeStartupIT {
+
+    private static final int RUNS = 11;
+    private static final String[] ARGS = {"-n", "sample", "--count", "3", "-d", "2020-10-08", "-t", "a", "b", "c"};
+
+    @Test
+    public void startsWithinBudget() throws Exception {
+        String executable = System.getProperty("native.executable");
+        assumeTrue((executable != null) && Files.isExecutable(Paths.get(executable)), "The native image has not been built.");
+
+        long budgetMs = Long.getLong("native.startup.budget.ms", 50);
+        for (ParserEngine engine : ParserEngine.values()) {
+            long[] timesMs = new long[RUNS];
+            for (int i = 0; i < RUNS; ++i)
+                timesMs[i] = timeToParsed(executable, engine);
+
+            Arrays.sort(timesMs);
+            assertThat(engine + " median startup to parsed (ms)", timesMs[RUNS / 2], lessThanOrEqualTo(budgetMs));
+        }
+    }
+
+    private long timeToParsed(String executable, ParserEngine engine) throws Exception {
+        String[] command = new String[ARGS.length + 1];
+        command[0] = executable;
+        System.arraycopy(ARGS, 0, command, 1, ARGS.length);
+
+        ProcessBuilder builder = new ProcessBuilder(command).redirectErrorStream(true);
+        builder.environment().put("ENGINE", engine.name());
+
+        long start = System.nanoTime();
+        Process process = builder.start();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line = reader.readLine();
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            assertThat(line, equalTo("parsed name=sample count=3 date=2020-10-08 tags=[a, b, c]"));
+            assertThat(process.waitFor(), equalTo(0));
+            return elapsed;
+        }
+    }
+
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.zepben.commandlinearguments.processor;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import com.zepben.commandlinearguments.CmdOption;
+
+import javax.annotation.Nullable;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+
+/**
+ * Generates a {@code Generated<ClassName>} subclass for each abstract {@code CmdArgsBase} subclass with {@link CmdOption}
+ * fields.
+ * <p>
+ * The generated class registers the options with literal code, in field order, so the slot of each option in the compiled
+ * schema is known when the code is generated. The fields are then extracted with the slot based getters of
+ * {@code ParsedArgs}, without looking up the options by name.
+ */
+@EverythingIsNonnullByDefault
+@SupportedAnnotationTypes("com.zepben.commandlinearguments.CmdOption")
+public class CmdArgsProcessor extends AbstractProcessor {
+
+    private static final String CMD_ARGS_BASE = "com.zepben.commandlinearguments.CmdArgsBase";
+
+    // CmdArgsBase registers the help option before the custom options, so it always has the first slot.
+    private static final int FIRST_SLOT = 1;
+    private static final Set<String> RESERVED_NAMES = new HashSet<>(Arrays.asList("h", "help"));
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        Set<TypeElement> types = new LinkedHashSet<>();
+        for (Element field : roundEnv.getElementsAnnotatedWith(CmdOption.class))
+            types.add((TypeElement) field.getEnclosingElement());
+
+        for (TypeElement type : types) {
+            if (isValidType(type))
+                generate(type);
+        }
+
+        return true;
+    }
+
+    private boolean isValidType(TypeElement type) {
+        boolean valid = true;
+
+        TypeElement base = processingEnv.getElementUtils().getTypeElement(CMD_ARGS_BASE);
+        if ((type.getKind() != ElementKind.CLASS) || !processingEnv.getTypeUtils().isSubtype(type.asType(), base.asType()))
+            valid = error(type, "@CmdOption fields must be declared in a subclass of CmdArgsBase.");
+        else if (!type.getModifiers().contains(Modifier.ABSTRACT))
+            valid = error(type, "Classes with @CmdOption fields must be abstract, so the options can be generated.");
+        else if (type.getModifiers().contains(Modifier.PRIVATE))
+            valid = error(type, "Classes with @CmdOption fields must not be private.");
+        else if ((type.getNestingKind() == NestingKind.MEMBER) && !type.getModifiers().contains(Modifier.STATIC))
+            valid = error(type, "Nested classes with @CmdOption fields must be static.");
+        else if (!type.getTypeParameters().isEmpty())
+            valid = error(type, "Classes with @CmdOption fields must not be generic.");
+
+        for (ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+            String name = method.getSimpleName().toString();
+            if (("addCustomOptions".equals(name) || "extractCustomOptions".equals(name)) && !method.getModifiers().contains(Modifier.ABSTRACT))
+                valid = error(method, String.format("%s is generated from the @CmdOption fields, so it must not be implemented.", name));
+        }
+
+        return valid;
+    }
+
+    private void generate(TypeElement type) {
+        List<OptionField> fields = new ArrayList<>();
+        Set<String> names = new HashSet<>(RESERVED_NAMES);
+        boolean valid = true;
+
+        for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            CmdOption option = field.getAnnotation(CmdOption.class);
+            if (option == null)
+                continue;
+
+            OptionField optionField = toOptionField(field, option, names, FIRST_SLOT + fields.size());
+            if (optionField == null)
+                valid = false;
+            else
+                fields.add(optionField);
+        }
+
+        if (!valid)
+            return;
+
+        String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        String className = generatedName(type);
+        String qualifiedName = packageName.isEmpty() ? className : packageName + "." + className;
+
+        try (Writer writer = processingEnv.getFiler().createSourceFile(qualifiedName, type).openWriter()) {
+            writer.write(new SourceWriter(packageName, className, type, fields).write());
+        } catch (IOException e) {
+            error(type, String.format("Unable to write %s: %s", qualifiedName, e.getMessage()));
+        }
+    }
+
+    @Nullable
+    private OptionField toOptionField(VariableElement field, CmdOption option, Set<String> names, int slot) {
+        Set<Modifier> modifiers = field.getModifiers();
+        if (modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.FINAL) || modifiers.contains(Modifier.STATIC)) {
+            error(field, "@CmdOption fields must not be private, final or static.");
+            return null;
+        }
+
+        TypeMirror fieldType = field.asType();
+        OptionKind kind = OptionKind.of(fieldType, processingEnv.getTypeUtils(), processingEnv.getElementUtils());
+        if (kind == null) {
+            error(field, String.format("@CmdOption does not support fields of type %s.", fieldType));
+            return null;
+        } else if (kind.optional && option.required()) {
+            error(field, "Optional @CmdOption fields can't be required.");
+            return null;
+        } else if (!kind.isBounded() && ((option.min() != Integer.MIN_VALUE) || (option.max() != Integer.MAX_VALUE))) {
+            error(field, String.format("@CmdOption min and max only apply to int fields, not %s.", fieldType));
+            return null;
+        } else if (option.min() > option.max()) {
+            error(field, String.format("@CmdOption min %d is greater than max %d.", option.min(), option.max()));
+            return null;
+        }
+
+        if (option.opt().isEmpty() && option.longOpt().isEmpty()) {
+            error(field, "@CmdOption must have an opt, a longOpt, or both.");
+            return null;
+        }
+
+        for (String name : Arrays.asList(option.opt(), option.longOpt())) {
+            if (!name.isEmpty() && !names.add(name)) {
+                error(field, String.format("The option name '%s' is already in use.", name));
+                return null;
+            }
+        }
+
+        return new OptionField(field.getSimpleName().toString(), kind, option, slot);
+    }
+
+    private static String generatedName(TypeElement type) {
+        Deque<String> names = new ArrayDeque<>();
+        Element element = type;
+        while (element instanceof TypeElement) {
+            names.addFirst(element.getSimpleName().toString());
+            element = element.getEnclosingElement();
+        }
+        return "Generated" + String.join("_", names);
+    }
+
+    private boolean error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+        return false;
+    }
+
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.zepben.commandlinearguments.processor;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import com.zepben.commandlinearguments.CmdOption;
+
+/**
+ * A field annotated with {@link CmdOption}, along with the slot its option will be compiled into.
+ */
+@EverythingIsNonnullByDefault
+final class OptionField {
+
+    final String name;
+    final OptionKind kind;
+    final CmdOption option;
+    final int slot;
+
+    OptionField(String name, OptionKind kind, CmdOption option, int slot) {
+        this.name = name;
+        this.kind = kind;
+        this.option = option;
+        this.slot = slot;
+    }
+
+    /**
+     * @return The name of the constant holding the slot, e.g. {@code SERVER_PORT_SLOT} for {@code serverPort}.
+     */
+    String slotConstant() {
+        StringBuilder constant = new StringBuilder();
+        for (int i = 0; i < name.length(); ++i) {
+            char c = name.charAt(i);
+            if (Character.isUpperCase(c) && (i > 0))
+                constant.append('_');
+            constant.append(Character.toUpperCase(c));
+        }
+        return constant.append("_SLOT").toString();
+    }
+
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.zepben.commandlinearguments.processor;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+
+import javax.annotation.Nullable;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import java.util.function.Function;
+
+/**
+ * The field types supported by {@code @CmdOption}, with the code used to register and extract each of them.
+ */
+@EverythingIsNonnullByDefault
+enum OptionKind {
+
+    FLAG(types -> types.primitive(TypeKind.BOOLEAN), Arity.NONE, "args.hasArg(%1$s)", false),
+    STRING(types -> types.declared("java.lang.String"), Arity.ONE, "args.getRequiredStringArg(%1$s)", false),
+    INT(types -> types.primitive(TypeKind.INT), Arity.ONE, "args.getRequiredIntArg(%1$s, %2$s, %3$s)", false),
+    DATE(types -> types.declared("java.time.LocalDate"), Arity.ONE, "args.getRequiredDateArg(%1$s)", false),
+    STRING_LIST(types -> types.declared("java.util.List", STRING.type(types)), Arity.MANY, "args.getRequiredStringArgList(%1$s)", false),
+    INT_LIST(types -> types.array(INT.type(types)), Arity.MANY, "args.getRequiredIntArgList(%1$s, %2$s, %3$s)", false),
+    LONG_LIST(types -> types.array(types.primitive(TypeKind.LONG)), Arity.MANY, "args.getRequiredLongArgList(%1$s)", false),
+    OPTIONAL_STRING(types -> types.optional(STRING.type(types)), Arity.ONE, STRING.getter, true),
+    OPTIONAL_INT(types -> types.optional(types.declared("java.lang.Integer")), Arity.ONE, INT.getter, true),
+    OPTIONAL_DATE(types -> types.optional(DATE.type(types)), Arity.ONE, DATE.getter, true),
+    OPTIONAL_STRING_LIST(types -> types.optional(STRING_LIST.type(types)), Arity.MANY, STRING_LIST.getter, true);
+
+    enum Arity {
+        NONE, ONE, MANY
+    }
+
+    final Arity arity;
+    final boolean optional;
+    private final Function<TypeLookup, TypeMirror> type;
+    private final String getter;
+
+    OptionKind(Function<TypeLookup, TypeMirror> type, Arity arity, String getter, boolean optional) {
+        this.type = type;
+        this.arity = arity;
+        this.getter = getter;
+        this.optional = optional;
+    }
+
+    /**
+     * The types are compared with {@link Types#isSameType}, so the field type can be written in any form that names the
+     * same type, such as with type annotations.
+     *
+     * @return The kind of option for fields of the type, or null if the type isn't supported.
+     */
+    @Nullable
+    static OptionKind of(TypeMirror fieldType, Types types, Elements elements) {
+        TypeLookup lookup = new TypeLookup(types, elements);
+        for (OptionKind kind : values()) {
+            if (types.isSameType(kind.type(lookup), fieldType))
+                return kind;
+        }
+        return null;
+    }
+
+    /**
+     * @return If the {@code min} and {@code max} of the option are used to check its values.
+     */
+    boolean isBounded() {
+        return (this == INT) || (this == INT_LIST) || (this == OPTIONAL_INT);
+    }
+
+    /**
+     * @return The expression that reads the value of the option, assuming it is present.
+     */
+    String getter(String slot, int min, int max) {
+        return String.format(getter, slot, bound(min), bound(max));
+    }
+
+    private TypeMirror type(TypeLookup types) {
+        return type.apply(types);
+    }
+
+    private static String bound(int value) {
+        if (value == Integer.MIN_VALUE)
+            return "Integer.MIN_VALUE";
+        else if (value == Integer.MAX_VALUE)
+            return "Integer.MAX_VALUE";
+        else
+            return Integer.toString(value);
+    }
+
+    private static final class TypeLookup {
+
+        private final Types types;
+        private final Elements elements;
+
+        TypeLookup(Types types, Elements elements) {
+            this.types = types;
+            this.elements = elements;
+        }
+
+        TypeMirror primitive(TypeKind kind) {
+            return types.getPrimitiveType(kind);
+        }
+
+        TypeMirror array(TypeMirror componentType) {
+            return types.getArrayType(componentType);
+        }
+
+        TypeMirror declared(String name, TypeMirror... typeArgs) {
+            TypeElement element = elements.getTypeElement(name);
+            if (element == null)
+                throw new IllegalStateException(String.format("INTERNAL ERROR: The type %s is not on the class path.", name));
+            return types.getDeclaredType(element, typeArgs);
+        }
+
+        TypeMirror optional(TypeMirror valueType) {
+            return declared("java.util.Optional", valueType);
+        }
+
+    }
+
+}
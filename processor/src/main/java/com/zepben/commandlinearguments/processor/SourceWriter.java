@@ -0,0 +1,163 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.zepben.commandlinearguments.processor;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import com.zepben.commandlinearguments.CmdOption;
+
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import java.util.List;
+
+/**
+ * Writes the source of the class generated for a {@code CmdArgsBase} subclass.
+ */
+@EverythingIsNonnullByDefault
+final class SourceWriter {
+
+    private final String packageName;
+    private final String className;
+    private final TypeElement type;
+    private final List<OptionField> fields;
+    private final StringBuilder source = new StringBuilder();
+
+    SourceWriter(String packageName, String className, TypeElement type, List<OptionField> fields) {
+        this.packageName = packageName;
+        this.className = className;
+        this.type = type;
+        this.fields = fields;
+    }
+
+    String write() {
+        line("// Generated by %s from %s. Do not edit.", CmdArgsProcessor.class.getName(), type.getQualifiedName());
+        if (!packageName.isEmpty()) {
+            line("package %s;", packageName);
+            line("");
+        }
+
+        line("import com.zepben.commandlinearguments.ParsedArgs;");
+        line("import org.apache.commons.cli.Option;");
+        line("import org.apache.commons.cli.Options;");
+        line("import org.apache.commons.cli.ParseException;");
+        line("");
+        line("%sfinal class %s extends %s {", type.getModifiers().contains(Modifier.PUBLIC) ? "public " : "", className, type.getQualifiedName());
+        line("");
+
+        for (OptionField field : fields)
+            line("    private static final int %s = %d;", field.slotConstant(), field.slot);
+        if (!fields.isEmpty())
+            line("");
+
+        writeAddCustomOptions();
+        line("");
+        writeExtractCustomOptions();
+        line("");
+        line("}");
+
+        return source.toString();
+    }
+
+    private void writeAddCustomOptions() {
+        line("    @Override");
+        line("    protected void addCustomOptions(Options options) {");
+        for (OptionField field : fields) {
+            CmdOption option = field.option;
+
+            StringBuilder builder = new StringBuilder("Option.builder(");
+            if (!option.opt().isEmpty())
+                builder.append(literal(option.opt()));
+            builder.append(")");
+
+            if (!option.longOpt().isEmpty())
+                builder.append(".longOpt(").append(literal(option.longOpt())).append(")");
+            if (!option.desc().isEmpty())
+                builder.append(".desc(").append(literal(option.desc())).append(")");
+            if (!option.argName().isEmpty())
+                builder.append(".argName(").append(literal(option.argName())).append(")");
+
+            if (option.required())
+                builder.append(".required()");
+
+            if (field.kind.arity == OptionKind.Arity.ONE)
+                builder.append(".hasArg()");
+            else if (field.kind.arity == OptionKind.Arity.MANY)
+                builder.append(".hasArgs()");
+
+            line("        options.addOption(%s.build());", builder);
+        }
+        line("    }");
+    }
+
+    private void writeExtractCustomOptions() {
+        line("    @Override");
+        line("    protected void extractCustomOptions() throws ParseException {");
+        if (!fields.isEmpty())
+            line("        ParsedArgs args = parsedArgs();");
+
+        for (OptionField field : fields) {
+            String slot = field.slotConstant();
+            String getter = field.kind.getter(slot, field.option.min(), field.option.max());
+
+            // Each field reports its own error, so every field is checked when the errors are being collected.
+            if (field.kind == OptionKind.FLAG) {
+                line("        %s = %s;", field.name, getter);
+            } else if (field.kind.optional) {
+                tryLine("%s = args.hasArg(%s) ? java.util.Optional.of(%s) : java.util.Optional.empty();", field.name, slot, getter);
+            } else if (field.option.required()) {
+                tryLine("%s = %s;", field.name, getter);
+            } else {
+                tryLine("if (args.hasArg(%s)) %s = %s;", slot, field.name, getter);
+            }
+        }
+        line("    }");
+    }
+
+    private void tryLine(String format, Object... args) {
+        line("        try {");
+        line("            %s", String.format(format, args));
+        line("        } catch (ParseException e) {");
+        line("            addError(e);");
+        line("        }");
+    }
+
+    private void line(String format, Object... args) {
+        source.append(String.format(format, args)).append('\n');
+    }
+
+    private static String literal(String value) {
+        StringBuilder literal = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); ++i) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    literal.append("\\\"");
+                    break;
+                case '\\':
+                    literal.append("\\\\");
+                    break;
+                case '\n':
+                    literal.append("\\n");
+                    break;
+                case '\r':
+                    literal.append("\\r");
+                    break;
+                case '\t':
+                    literal.append("\\t");
+                    break;
+                default:
+                    if (c < ' ')
+                        literal.append(String.format("\\u%04x", (int) c));
+                    else
+                        literal.append(c);
+            }
+        }
+        return literal.append('"').toString();
+    }
+
+}
@@ -0,0 +1,281 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.zepben.commandlinearguments.processor;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import com.zepben.commandlinearguments.CmdArgsBase;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.annotation.Nullable;
+import javax.tools.*;
+import java.io.File;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static com.zepben.testutils.exception.ExpectException.expect;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class CmdArgsProcessorTest {
+
+    private static final String SAMPLE_ARGS = String.join("\n",
+        "package sample;",
+        "",
+        "import com.zepben.commandlinearguments.CmdArgsBase;",
+        "import com.zepben.commandlinearguments.CmdOption;",
+        "import java.time.LocalDate;",
+        "import java.util.*;",
+        "",
+        "public abstract class SampleArgs extends CmdArgsBase {",
+        "    @CmdOption(opt = \"v\", longOpt = \"verbose\") boolean verbose;",
+        "    @CmdOption(opt = \"n\", desc = \"The \\\"name\\\".\", required = true) String name;",
+        "    @CmdOption(longOpt = \"port\", argName = \"PORT\", min = 1, max = 65535) int port = 8080;",
+        "    @CmdOption(opt = \"d\") LocalDate date;",
+        "    @CmdOption(opt = \"t\") List<String> tags = Collections.emptyList();",
+        "    @CmdOption(opt = \"i\") int[] ids;",
+        "    @CmdOption(opt = \"l\") long[] sizes;",
+        "    @CmdOption(opt = \"o\") Optional<String> output;",
+        "    @CmdOption(longOpt = \"retries\") Optional<Integer> retries;",
+        "    @CmdOption(longOpt = \"since\") Optional<LocalDate> since;",
+        "    @CmdOption(longOpt = \"extra\") Optional<List<String>> extra;",
+        "}"
+    );
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void generatesOptionsAndExtraction() throws Exception {
+        CmdArgsBase args = newInstance(compile("sample.SampleArgs", SAMPLE_ARGS), "sample.GeneratedSampleArgs");
+
+        args.parse(new String[]{"-v", "-n", "abc", "-d", "2020-10-08", "-t", "a", "b", "-i", "1", "2", "-l", "3", "--retries", "4", "--extra", "x"});
+
+        assertThat(field(args, "verbose"), equalTo(true));
+        assertThat(field(args, "name"), equalTo("abc"));
+        assertThat(field(args, "port"), equalTo(8080));
+        assertThat(field(args, "date"), equalTo(LocalDate.of(2020, 10, 8)));
+        assertThat(field(args, "tags"), equalTo(Arrays.asList("a", "b")));
+        assertThat(field(args, "ids"), equalTo(new int[]{1, 2}));
+        assertThat(field(args, "sizes"), equalTo(new long[]{3}));
+        assertThat(field(args, "output"), equalTo(Optional.empty()));
+        assertThat(field(args, "retries"), equalTo(Optional.of(4)));
+        assertThat(field(args, "since"), equalTo(Optional.empty()));
+        assertThat(field(args, "extra"), equalTo(Optional.of(Collections.singletonList("x"))));
+
+        args.parse(new String[]{"-n", "def", "--port", "80"});
+        assertThat(field(args, "verbose"), equalTo(false));
+        assertThat(field(args, "port"), equalTo(80));
+
+        expect(() -> args.parse(new String[]{"-n", "def", "--port", "0"}))
+            .toThrow(ParseException.class)
+            .withMessage("Integer 0 for argument port is out of range. Expected value in range 1..65535.");
+        expect(() -> args.parse(new String[]{"-v"}))
+            .toThrow(ParseException.class)
+            .withMessage("Missing required option: n");
+
+        args.parse(new String[]{"-h", "-n", "abc"});
+        assertThat(args.isHelpRequested(), equalTo(true));
+        assertThat(args.options().getOption("n").isRequired(), equalTo(true));
+        assertThat(args.options().getOption("v").isRequired(), equalTo(false));
+        assertThat(args.options().getOption("n").getDescription(), equalTo("The \"name\"."));
+        assertThat(args.options().getOption("port").getArgName(), equalTo("PORT"));
+    }
+
+    @Test
+    public void generatedSlotsMatchTheSchema() throws Exception {
+        ClassLoader classLoader = compile("sample.SampleArgs", SAMPLE_ARGS);
+        CmdArgsBase args = newInstance(classLoader, "sample.GeneratedSampleArgs");
+        Class<?> generated = classLoader.loadClass("sample.GeneratedSampleArgs");
+
+        List<String> names = Arrays.asList("v", "n", "port", "d", "t", "i", "l", "o", "retries", "since", "extra");
+        for (Field constant : generated.getDeclaredFields()) {
+            constant.setAccessible(true);
+            assertThat(constant.getName(), constant.getInt(null), equalTo(args.schema().slotOf(names.get(constant.getInt(null) - 1))));
+        }
+        assertThat(generated.getDeclaredFields().length, equalTo(names.size()));
+    }
+
+    @Test
+    public void supportsNestedAndLongOnlyOptions() throws Exception {
+        ClassLoader classLoader = compile("sample.Outer", String.join("\n",
+            "package sample;",
+            "",
+            "public class Outer {",
+            "    abstract static class Inner extends com.zepben.commandlinearguments.CmdArgsBase {",
+            "        @com.zepben.commandlinearguments.CmdOption(longOpt = \"value\") String value = \"default\";",
+            "    }",
+            "}"
+        ));
+        CmdArgsBase args = newInstance(classLoader, "sample.GeneratedOuter_Inner");
+
+        args.parse(new String[0]);
+        assertThat(field(args, "value"), equalTo("default"));
+
+        args.parse(new String[]{"--value", "set"});
+        assertThat(field(args, "value"), equalTo("set"));
+    }
+
+    @Test
+    public void supportsTheDefaultPackageAndEscapesDescriptions() throws Exception {
+        ClassLoader classLoader = compile("DefaultArgs", String.join("\n",
+            "public abstract class DefaultArgs extends com.zepben.commandlinearguments.CmdArgsBase {",
+            "    @com.zepben.commandlinearguments.CmdOption(longOpt = \"server-port\", desc = \"a\\\\b\\n\\r\\t\\u0001\") int serverPort;",
+            "}"
+        ));
+        CmdArgsBase args = newInstance(classLoader, "GeneratedDefaultArgs");
+
+        args.parse(new String[]{"--server-port", "80"});
+
+        assertThat(field(args, "serverPort"), equalTo(80));
+        assertThat(args.options().getOption("server-port").getDescription(), equalTo("a\\b\n\r\t\u0001"));
+        assertThat(classLoader.loadClass("GeneratedDefaultArgs").getDeclaredField("SERVER_PORT_SLOT"), notNullValue());
+    }
+
+    @Test
+    public void matchesTypesRatherThanTheirNames() throws Exception {
+        ClassLoader classLoader = compile("sample.AnnotatedArgs", String.join("\n",
+            "package sample;",
+            "",
+            "import com.zepben.commandlinearguments.CmdArgsBase;",
+            "import com.zepben.commandlinearguments.CmdOption;",
+            "import java.lang.annotation.*;",
+            "",
+            "public abstract class AnnotatedArgs extends CmdArgsBase {",
+            "    @Target(ElementType.TYPE_USE) @interface Checked {}",
+            "",
+            "    @CmdOption(opt = \"n\") @Checked String name;",
+            "    @CmdOption(opt = \"t\") java.util.List<@Checked String> tags;",
+            "}"
+        ));
+        CmdArgsBase args = newInstance(classLoader, "sample.GeneratedAnnotatedArgs");
+
+        args.parse(new String[]{"-n", "abc", "-t", "a", "b"});
+
+        assertThat(field(args, "name"), equalTo("abc"));
+        assertThat(field(args, "tags"), equalTo(Arrays.asList("a", "b")));
+    }
+
+    @Test
+    public void reportsInvalidDeclarations() throws Exception {
+        assertErrors("public class Invalid extends CmdArgsBase {\n@CmdOption(opt = \"a\") String a;\n}",
+            "Classes with @CmdOption fields must be abstract, so the options can be generated.");
+        assertErrors("public abstract class Invalid {\n@CmdOption(opt = \"a\") String a;\n}",
+            "@CmdOption fields must be declared in a subclass of CmdArgsBase.");
+        assertErrors("public abstract class Invalid extends CmdArgsBase {\n@CmdOption(opt = \"a\") private String a;\n}",
+            "@CmdOption fields must not be private, final or static.");
+        assertErrors("public abstract class Invalid extends CmdArgsBase {\n@CmdOption(opt = \"a\") Double a;\n}",
+            "@CmdOption does not support fields of type java.lang.Double.");
+        assertErrors("public abstract class Invalid extends CmdArgsBase {\n@CmdOption(opt = \"a\", required = true) java.util.Optional<String> a;\n}",
+            "Optional @CmdOption fields can't be required.");
+        assertErrors("public abstract class Invalid extends CmdArgsBase {\n@CmdOption(opt = \"a\", min = 1) String a;\n}",
+            "@CmdOption min and max only apply to int fields, not java.lang.String.");
+        assertErrors("public abstract class Invalid extends CmdArgsBase {\n@CmdOption(opt = \"a\", max = 1) long[] a;\n}",
+            "@CmdOption min and max only apply to int fields, not long[].");
+        assertErrors("public abstract class Invalid extends CmdArgsBase {\n@CmdOption(opt = \"a\", min = 2, max = 1) int a;\n}",
+            "@CmdOption min 2 is greater than max 1.");
+        assertErrors("public abstract class Invalid extends CmdArgsBase {\n@CmdOption(opt = \"a\") java.util.List a;\n}",
+            "@CmdOption does not support fields of type java.util.List.");
+        assertErrors("public abstract class Invalid extends CmdArgsBase {\n@CmdOption String a;\n}",
+            "@CmdOption must have an opt, a longOpt, or both.");
+        assertErrors("public abstract class Invalid extends CmdArgsBase {\n@CmdOption(opt = \"a\") String a;\n@CmdOption(longOpt = \"a\") String b;\n}",
+            "The option name 'a' is already in use.");
+        assertErrors("public abstract class Invalid extends CmdArgsBase {\n@CmdOption(longOpt = \"help\") boolean help;\n}",
+            "The option name 'help' is already in use.");
+        assertErrors("public abstract class Invalid extends CmdArgsBase {\n@CmdOption(opt = \"a\") String a;\n"
+                + "@Override protected void extractCustomOptions() {}\n}",
+            "extractCustomOptions is generated from the @CmdOption fields, so it must not be implemented.");
+        assertErrors("public abstract class Invalid extends CmdArgsBase {\n@CmdOption(opt = \"a\") String a;\n"
+                + "@Override protected void addCustomOptions(org.apache.commons.cli.Options options) {}\n}",
+            "addCustomOptions is generated from the @CmdOption fields, so it must not be implemented.");
+        assertErrors("public abstract class Invalid extends CmdArgsBase {\n@CmdOption(opt = \"a\") final String a = \"\";\n"
+                + "@CmdOption(opt = \"b\") static String b;\n}",
+            "@CmdOption fields must not be private, final or static.");
+        assertErrors("public abstract class Invalid<T> extends CmdArgsBase {\n@CmdOption(opt = \"a\") String a;\n}",
+            "Classes with @CmdOption fields must not be generic.");
+        assertErrors("public class Invalid {\nprivate abstract static class Inner extends CmdArgsBase {\n@CmdOption(opt = \"a\") String a;\n}\n}",
+            "Classes with @CmdOption fields must not be private.");
+        assertErrors("public class Invalid {\nabstract class Inner extends CmdArgsBase {\n@CmdOption(opt = \"a\") String a;\n}\n}",
+            "Nested classes with @CmdOption fields must be static.");
+        assertErrors("public interface Invalid {\n@CmdOption(opt = \"a\") String a = \"\";\n}",
+            "@CmdOption fields must be declared in a subclass of CmdArgsBase.");
+    }
+
+    private void assertErrors(String body, String... expected) throws Exception {
+        String source = "package sample;\nimport com.zepben.commandlinearguments.*;\n" + body;
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+
+        assertThat(source, run("sample.Invalid", source, diagnostics), equalTo(false));
+        assertThat(
+            source,
+            diagnostics.getDiagnostics().stream().map(diagnostic -> diagnostic.getMessage(Locale.ROOT)).collect(Collectors.toList()),
+            hasItems(expected)
+        );
+    }
+
+    private ClassLoader compile(String className, String source) throws Exception {
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        assertThat(diagnostics.getDiagnostics().toString(), run(className, source, diagnostics), equalTo(true));
+        return new URLClassLoader(new URL[]{tempDir.resolve("classes").toUri().toURL()}, getClass().getClassLoader());
+    }
+
+    private boolean run(String className, String source, DiagnosticCollector<JavaFileObject> diagnostics) throws Exception {
+        Path sourceFile = tempDir.resolve("src").resolve(className.replace('.', '/') + ".java");
+        Path classes = tempDir.resolve("classes");
+        Files.createDirectories(sourceFile.getParent());
+        Files.createDirectories(classes);
+        Files.write(sourceFile, source.getBytes(StandardCharsets.UTF_8));
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, Locale.ROOT, StandardCharsets.UTF_8)) {
+            JavaCompiler.CompilationTask task = compiler.getTask(
+                null,
+                fileManager,
+                diagnostics,
+                Arrays.asList("-classpath", classpath(), "-d", classes.toString(), "-s", classes.toString()),
+                null,
+                fileManager.getJavaFileObjects(sourceFile.toFile())
+            );
+            task.setProcessors(Collections.singletonList(new CmdArgsProcessor()));
+            return task.call();
+        }
+    }
+
+    // The test runner may not put the dependencies on java.class.path, so find them from the classes that need them.
+    private static String classpath() throws Exception {
+        List<String> paths = new ArrayList<>();
+        for (Class<?> type : Arrays.asList(CmdArgsBase.class, Options.class, EverythingIsNonnullByDefault.class, Nullable.class))
+            paths.add(Paths.get(type.getProtectionDomain().getCodeSource().getLocation().toURI()).toString());
+        return String.join(File.pathSeparator, paths);
+    }
+
+    private static CmdArgsBase newInstance(ClassLoader classLoader, String className) throws Exception {
+        Constructor<?> constructor = classLoader.loadClass(className).getDeclaredConstructor();
+        constructor.setAccessible(true);
+        return (CmdArgsBase) constructor.newInstance();
+    }
+
+    private static Object field(CmdArgsBase args, String name) throws Exception {
+        Field field = args.getClass().getSuperclass().getDeclaredField(name);
+        field.setAccessible(true);
+        return field.get(args);
+    }
+
+}
@@ -0,0 +1,27 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.zepben.commandlinearguments;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import org.apache.commons.cli.ParseException;
+
+/**
+ * Checks the parsed args once they have been extracted. See {@link CmdArgsBase#validators()}.
+ */
+@EverythingIsNonnullByDefault
+@FunctionalInterface
+public interface ArgsValidator {
+
+    /**
+     * @param args The parsed args.
+     * @throws ParseException if the args are not valid. Use an {@link OptionValueException} to identify the option.
+     */
+    void validate(ParsedArgs args) throws ParseException;
+
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.zepben.commandlinearguments;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import org.apache.commons.cli.ParseException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads the tokens of an {@code @path} argument file.
+ * <p>
+ * Tokens are separated by whitespace and may contain single or double quoted sections, which can include whitespace. A
+ * {@code #} at the start of a token comments out the rest of the line. The file must be UTF-8 encoded.
+ * <p>
+ * The file is read through a fixed size buffer and each token is handed to the consumer as soon as it is complete, so the
+ * size of the file is not limited by the heap. Argument files are not expanded recursively.
+ */
+@EverythingIsNonnullByDefault
+final class ArgumentFile {
+
+    static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Receives each token read from an argument file.
+     */
+    @FunctionalInterface
+    interface TokenConsumer {
+
+        void accept(String token) throws ParseException;
+
+    }
+
+    private final Path path;
+    private final TokenConsumer consumer;
+    private final ByteBuffer buffer;
+
+    private byte[] token = new byte[64];
+    private int tokenLength = 0;
+    private boolean inToken = false;
+    private byte quote = 0;
+    private boolean inComment = false;
+
+    private ArgumentFile(Path path, TokenConsumer consumer, int bufferSize) {
+        this.path = path;
+        this.consumer = consumer;
+        buffer = ByteBuffer.allocate(bufferSize);
+    }
+
+    /**
+     * @return true if the arg refers to an argument file, i.e. it starts with a single {@code @}.
+     */
+    static boolean isArgumentFile(String arg) {
+        return (arg.length() > 1) && (arg.charAt(0) == '@') && (arg.charAt(1) != '@');
+    }
+
+    /**
+     * @return true if the arg is an escaped literal starting with {@code @}, i.e. it starts with {@code @@}.
+     */
+    static boolean isEscaped(String arg) {
+        return arg.startsWith("@@");
+    }
+
+    /**
+     * Reads the tokens of the argument file referenced by the arg.
+     *
+     * @param arg The {@code @path} argument.
+     * @param consumer Called with each token in the file.
+     * @throws ParseException if the file cannot be read, has an unterminated quote, or the consumer throws.
+     */
+    static void read(String arg, TokenConsumer consumer) throws ParseException {
+        read(arg, Paths.get(""), consumer);
+    }
+
+    /**
+     * As per {@link #read(String, TokenConsumer)}, with a relative path resolved against the working directory.
+     */
+    static void read(String arg, Path workingDirectory, TokenConsumer consumer) throws ParseException {
+        read(workingDirectory.resolve(arg.substring(1)), consumer, DEFAULT_BUFFER_SIZE);
+    }
+
+    static void read(Path path, TokenConsumer consumer, int bufferSize) throws ParseException {
+        new ArgumentFile(path, consumer, bufferSize).read();
+    }
+
+    /**
+     * Expands any argument files into a new array of args. This is only used for parsers that need all of the args up
+     * front.
+     */
+    static String[] expand(String[] args) throws ParseException {
+        return expand(args, Paths.get(""));
+    }
+
+    static String[] expand(String[] args, Path workingDirectory) throws ParseException {
+        List<String> expanded = null;
+
+        for (int i = 0; i < args.length; ++i) {
+            String arg = args[i];
+            if (expanded == null) {
+                if (!isArgumentFile(arg) && !isEscaped(arg))
+                    continue;
+
+                expanded = new ArrayList<>(Arrays.asList(args).subList(0, i));
+            }
+
+            if (isArgumentFile(arg))
+                read(arg, workingDirectory, expanded::add);
+            else if (isEscaped(arg))
+                expanded.add(arg.substring(1));
+            else
+                expanded.add(arg);
+        }
+
+        return expanded == null ? args : expanded.toArray(new String[0]);
+    }
+
+    private void read() throws ParseException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                while (buffer.hasRemaining())
+                    accept(buffer.get());
+                buffer.clear();
+            }
+        } catch (IOException e) {
+            throw new ParseException(String.format("Unable to read argument file '%s': %s", path, e.getMessage()));
+        }
+
+        if (quote != 0)
+            throw new ParseException(String.format("Unterminated quote in argument file '%s'.", path));
+
+        endToken();
+    }
+
+    private void accept(byte b) throws ParseException {
+        if (inComment) {
+            if ((b == '\n') || (b == '\r'))
+                inComment = false;
+        } else if (quote != 0) {
+            if (b == quote)
+                quote = 0;
+            else
+                append(b);
+        } else if ((b == '"') || (b == '\'')) {
+            quote = b;
+            inToken = true;
+        } else if ((b == ' ') || (b == '\t') || (b == '\n') || (b == '\r') || (b == '\f')) {
+            endToken();
+        } else if ((b == '#') && !inToken) {
+            inComment = true;
+        } else {
+            append(b);
+        }
+    }
+
+    // Whitespace and quotes are all ASCII, which never appear inside a multi-byte UTF-8 sequence, so the bytes can be split
+    // before they are decoded.
+    private void append(byte b) {
+        if (tokenLength == token.length)
+            token = Arrays.copyOf(token, token.length * 2);
+        token[tokenLength++] = b;
+        inToken = true;
+    }
+
+    private void endToken() throws ParseException {
+        if (!inToken)
+            return;
+
+        consumer.accept(new String(token, 0, tokenLength, StandardCharsets.UTF_8));
+        tokenLength = 0;
+        inToken = false;
+    }
+
+}
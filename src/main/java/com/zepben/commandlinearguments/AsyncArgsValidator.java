@@ -0,0 +1,48 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.zepben.commandlinearguments;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import org.apache.commons.cli.ParseException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Checks the parsed args without blocking the parse, e.g. that a path exists, a database is reachable or a port is free.
+ * See {@link CmdArgsBase#asyncValidators()}.
+ */
+@EverythingIsNonnullByDefault
+@FunctionalInterface
+public interface AsyncArgsValidator {
+
+    /**
+     * @param args The parsed args.
+     * @param executor The executor to run any blocking work on.
+     * @return A future that completes when the check is done, or completes exceptionally with a {@link ParseException} if
+     * the args are not valid.
+     */
+    CompletableFuture<?> validate(ParsedArgs args, Executor executor);
+
+    /**
+     * @param validator A blocking check.
+     * @return A validator that runs the blocking check on the executor.
+     */
+    static AsyncArgsValidator blocking(ArgsValidator validator) {
+        return (args, executor) -> CompletableFuture.runAsync(() -> {
+            try {
+                validator.validate(args);
+            } catch (ParseException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+}
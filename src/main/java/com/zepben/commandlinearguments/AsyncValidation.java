@@ -0,0 +1,174 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.zepben.commandlinearguments;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import org.apache.commons.cli.ParseException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * The {@link AsyncArgsValidator}s started for one parse, which are joined with an overall deadline.
+ */
+@EverythingIsNonnullByDefault
+final class AsyncValidation {
+
+    private static final AsyncValidation NONE = new AsyncValidation(new CompletableFuture<?>[0]);
+
+    private final CompletableFuture<?>[] futures;
+    private boolean abandoned = false;
+
+    private AsyncValidation(CompletableFuture<?>[] futures) {
+        this.futures = futures;
+    }
+
+    /**
+     * Virtual threads are used when the runtime has them, as the checks mostly wait on I/O. Otherwise the checks run on a
+     * cached pool of daemon threads, so they never keep the JVM alive.
+     */
+    static Executor defaultExecutor() {
+        return DefaultExecutor.INSTANCE;
+    }
+
+    /**
+     * @param validators The validators to start.
+     * @param args The parsed args to validate.
+     * @param executor Supplies the executor, which is only requested if there are any validators.
+     * @return The started validators.
+     */
+    static AsyncValidation start(List<AsyncArgsValidator> validators, ParsedArgs args, Supplier<Executor> executor) {
+        if (validators.isEmpty())
+            return NONE;
+
+        Executor validationExecutor = executor.get();
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[validators.size()];
+        for (int i = 0; i < futures.length; ++i) {
+            try {
+                futures[i] = validators.get(i).validate(args, validationExecutor);
+            } catch (RuntimeException e) {
+                CompletableFuture<?> failed = new CompletableFuture<>();
+                failed.completeExceptionally(e);
+                futures[i] = failed;
+            }
+        }
+        return new AsyncValidation(futures);
+    }
+
+    /**
+     * Waits for the validators to finish. Any that haven't finished by the deadline are cancelled, which completes their
+     * futures but can't stop work they have already started.
+     *
+     * @param timeout The deadline, measured from now.
+     * @param stopAtFirstFailure Stop waiting as soon as any validator fails, cancelling the rest, rather than waiting for
+     * every validator to finish.
+     * @return The errors of the validators that failed, in the order of the validators, followed by an error for the
+     * deadline if it was missed.
+     */
+    List<ParseException> join(Duration timeout, boolean stopAtFirstFailure) {
+        if (futures.length == 0)
+            return Collections.emptyList();
+
+        CompletableFuture<?> finished = CompletableFuture.allOf(futures);
+        if (stopAtFirstFailure)
+            finished = CompletableFuture.anyOf(finished, firstFailure());
+
+        List<ParseException> errors = new ArrayList<>();
+        try {
+            finished.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            cancel();
+            errors.add(new ParseException(String.format("The command line arguments were not validated within %d ms.", timeout.toMillis())));
+        } catch (InterruptedException e) {
+            cancel();
+            Thread.currentThread().interrupt();
+            errors.add(new ParseException("Interrupted while validating the command line arguments."));
+        } catch (ExecutionException ignored) {
+            // The failures are read from each future below, once any that are still running have been cancelled.
+            cancel();
+        }
+
+        List<ParseException> failures = new ArrayList<>();
+        for (CompletableFuture<?> future : futures) {
+            if (future.isCompletedExceptionally() && !future.isCancelled())
+                failures.add(failureOf(future));
+        }
+
+        failures.addAll(errors);
+        return failures;
+    }
+
+    /**
+     * Cancels any validators that haven't finished.
+     */
+    void cancel() {
+        for (CompletableFuture<?> future : futures) {
+            if (future.cancel(true))
+                abandoned = true;
+        }
+    }
+
+    /**
+     * @return true if any validators were cancelled before they finished, in which case they may still be reading the args.
+     */
+    boolean isAbandoned() {
+        return abandoned;
+    }
+
+    private CompletableFuture<?> firstFailure() {
+        CompletableFuture<?> failure = new CompletableFuture<>();
+        for (CompletableFuture<?> future : futures) {
+            future.whenComplete((result, throwable) -> {
+                if (throwable != null)
+                    failure.completeExceptionally(throwable);
+            });
+        }
+        return failure;
+    }
+
+    private static ParseException failureOf(CompletableFuture<?> future) {
+        try {
+            future.join();
+            throw new IllegalStateException("INTERNAL ERROR: The future should have failed.");
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof ParseException)
+                return (ParseException) cause;
+            else if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            else if (cause instanceof Error)
+                throw (Error) cause;
+            else
+                return new ParseException(String.format("Unable to validate the command line arguments: %s", cause));
+        }
+    }
+
+    private static final class DefaultExecutor {
+
+        private static final Executor INSTANCE = create();
+
+        private static Executor create() {
+            try {
+                return (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException | RuntimeException ignored) {
+                return Executors.newCachedThreadPool(runnable -> {
+                    Thread thread = new Thread(runnable, "command-line-arguments-validator");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.zepben.commandlinearguments;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import org.apache.commons.cli.ParseException;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Stream;
+
+/**
+ * Parses many command lines against one compiled schema in parallel.
+ * <p>
+ * The command lines are split into chunks across a {@link ForkJoinPool}, with each chunk parsed by its own
+ * {@link ParserEngine#NATIVE} parser, so the schema is shared without any locking. Every command line is parsed, regardless
+ * of how many fail, and the results are returned in the same order as the command lines.
+ * <p>
+ * Only the options are checked. No {@link CmdArgsBase#extractCustomOptions()} is run against the results. Any
+ * {@link Fallbacks} in the schema are resolved from the environment given to the parser, which for
+ * {@link CmdArgsBase#batchParser()} is the {@link CmdArgsBase#environment()} of the args.
+ * <p>
+ * Config files are never read, even for a parser from {@link CmdArgsBase#batchParser()} whose class overrides
+ * {@link CmdArgsBase#configFiles}, so options that are only set in a config file are missing from the results. Parse
+ * each command line with {@link CmdArgsBase#parse} when the config files matter.
+ */
+@EverythingIsNonnullByDefault
+@SuppressWarnings("WeakerAccess")
+public final class BatchParser {
+
+    private static final int CHUNK_SIZE = 64;
+
+    private final CmdArgsSchema schema;
+    private final ForkJoinPool pool;
+    private final boolean expandArgumentFiles;
+    private final Map<String, String> environment;
+
+    /**
+     * Creates a batch parser that uses the common fork-join pool and does not expand argument files.
+     *
+     * @param schema The schema to parse the command lines against.
+     */
+    public BatchParser(CmdArgsSchema schema) {
+        this(schema, ForkJoinPool.commonPool(), false);
+    }
+
+    /**
+     * Creates a batch parser that resolves fallbacks from the environment of this process.
+     *
+     * @param schema The schema to parse the command lines against.
+     * @param pool The pool used to parse the command lines.
+     * @param expandArgumentFiles If {@code @path} args should be expanded, as per {@link CmdArgsBase#expandArgumentFiles()}.
+     */
+    public BatchParser(CmdArgsSchema schema, ForkJoinPool pool, boolean expandArgumentFiles) {
+        this(schema, pool, expandArgumentFiles, System.getenv());
+    }
+
+    /**
+     * @param schema The schema to parse the command lines against.
+     * @param pool The pool used to parse the command lines.
+     * @param expandArgumentFiles If {@code @path} args should be expanded, as per {@link CmdArgsBase#expandArgumentFiles()}.
+     * @param environment The environment variables the fallbacks are resolved from. It is read by several threads at once,
+     * so it must not be modified while command lines are being parsed.
+     */
+    public BatchParser(CmdArgsSchema schema, ForkJoinPool pool, boolean expandArgumentFiles, Map<String, String> environment) {
+        this.schema = schema;
+        this.pool = pool;
+        this.expandArgumentFiles = expandArgumentFiles;
+        this.environment = environment;
+    }
+
+    /**
+     * @param commandLines The command lines to parse.
+     * @return The result of parsing each command line, in the same order as the command lines.
+     */
+    public List<ParseResult> parseAll(Collection<String[]> commandLines) {
+        return parseAll(commandLines.toArray(new String[0][]));
+    }
+
+    /**
+     * @param commandLines The command lines to parse. The stream is consumed before any of them are parsed.
+     * @return The result of parsing each command line, in the same order as the command lines.
+     */
+    public List<ParseResult> parseAll(Stream<String[]> commandLines) {
+        return parseAll(commandLines.toArray(String[][]::new));
+    }
+
+    private List<ParseResult> parseAll(String[][] commandLines) {
+        ParseResult[] results = new ParseResult[commandLines.length];
+        pool.invoke(new ParseChunk(commandLines, results, 0, commandLines.length));
+        return Arrays.asList(results);
+    }
+
+    private final class ParseChunk extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String[][] commandLines;
+        // Tasks are only serializable because ForkJoinTask is, and are never serialized.
+        @SuppressWarnings("serial")
+        private final ParseResult[] results;
+        private final int from;
+        private final int to;
+
+        ParseChunk(String[][] commandLines, ParseResult[] results, int from, int to) {
+            this.commandLines = commandLines;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > CHUNK_SIZE) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ParseChunk(commandLines, results, from, middle), new ParseChunk(commandLines, results, middle, to));
+                return;
+            }
+
+            NativeParser parser = new NativeParser(schema);
+            for (int i = from; i < to; ++i) {
+                String[] args = commandLines[i];
+
+                // The parsed values are handed out with the results, so each command line needs its own.
+                OptionValues values = new OptionValues();
+                try {
+                    parser.parse(args, values, expandArgumentFiles);
+                    Fallbacks.resolve(schema, values, environment);
+                    results[i] = ParseResult.success(args, new ParsedArgs(schema, values));
+                } catch (ParseException e) {
+                    results[i] = ParseResult.failure(args, e);
+                }
+            }
+        }
+
+    }
+
+}
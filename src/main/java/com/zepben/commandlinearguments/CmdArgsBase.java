@@ -12,18 +12,60 @@ import com.zepben.annotations.EverythingIsNonnullByDefault;
 import org.apache.commons.cli.*;
 
 import javax.annotation.Nullable;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
-import java.time.format.DateTimeParseException;
-import java.util.Arrays;
-import java.util.List;
-import java.util.Optional;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
 
 @EverythingIsNonnullByDefault
 @SuppressWarnings({"WeakerAccess", "UnusedReturnValue"})
 public abstract class CmdArgsBase {
 
-    @Nullable private Options options = null;
-    @Nullable private CommandLine cmd = null;
+    private static final ClassValue<AtomicReference<CmdArgsSchema>> SHARED_SCHEMAS = new ClassValue<AtomicReference<CmdArgsSchema>>() {
+        @Override
+        protected AtomicReference<CmdArgsSchema> computeValue(Class<?> type) {
+            return new AtomicReference<>();
+        }
+    };
+
+    private static final ClassValue<Map<String, CmdArgsSchema>> SHARED_COMMAND_SCHEMAS = new ClassValue<Map<String, CmdArgsSchema>>() {
+        @Override
+        protected Map<String, CmdArgsSchema> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    private static final Duration DEFAULT_VALIDATION_TIMEOUT = Duration.ofSeconds(30);
+
+    @Nullable private CmdArgsSchema schema = null;
+    @Nullable private Map<String, CmdArgsSchema> commandSchemas = null;
+    @Nullable private Set<String> commandNames = null;
+    @Nullable private NativeParser nativeParser = null;
+
+    // The args are parsed into the spare buffers and swapped in once the config files and fallbacks are resolved, so a
+    // command line that can't be parsed leaves the last args intact. They are swapped in before extractCustomOptions runs,
+    // as it reads them through the getters, so args that fail extraction or validation do replace the last args. A
+    // published snapshot is never reused, so the spare is replaced rather than parsed into once it has been published.
+    @Nullable private ParsedArgs parsedArgs = null;
+    @Nullable private ParsedArgs spareArgs = null;
+    @Nullable private volatile ParsedArgs snapshot = null;
+    // Set when the parsed args are held by a ParseCache, or may still be read by async validators that were cancelled, so
+    // like a snapshot they are never reused as the spare.
+    private boolean parsedArgsShared = false;
+    private List<Path> configFilesRead = Collections.emptyList();
+
+    // Only set while extractCustomOptions is running in a parse that collects its errors.
+    @Nullable private List<ParseException> collectedErrors = null;
 
     private boolean helpRequested = true;
 
@@ -31,12 +73,65 @@ public abstract class CmdArgsBase {
     }
 
     /**
-     * @return The supported options.
+     * @return A copy of the supported options. Changes to it don't affect parsing.
      */
     public Options options() {
-        if (options == null)
-            options = createOptions();
-        return options;
+        return schema().options();
+    }
+
+    /**
+     * The schema is compiled on first use and, unless {@link #isSchemaShared()} is overridden, shared by every instance of
+     * the same class, so {@link #addCustomOptions} is only called once per class.
+     *
+     * @return The compiled schema of the supported options.
+     */
+    public CmdArgsSchema schema() {
+        if (schema == null)
+            schema = isSchemaShared() ? sharedSchema() : compileSchema(null);
+        return schema;
+    }
+
+    /**
+     * @param command One of the {@link #commands()}.
+     * @return A copy of the supported options of the command. Changes to it don't affect parsing.
+     * @throws IllegalArgumentException if the command is not one of the {@link #commands()}.
+     */
+    public Options options(String command) {
+        return schema(command).options();
+    }
+
+    /**
+     * The schema of each command is compiled the first time the command is used and, like {@link #schema()}, shared by
+     * every instance of the same class unless {@link #isSchemaShared()} is overridden. Only the commands that are actually
+     * used are compiled.
+     *
+     * @param command One of the {@link #commands()}.
+     * @return The compiled schema of the options common to every command and the options of the command.
+     * @throws IllegalArgumentException if the command is not one of the {@link #commands()}.
+     */
+    public CmdArgsSchema schema(String command) {
+        if (!commandNames().contains(command))
+            throw new IllegalArgumentException(String.format("INTERNAL ERROR: '%s' is not one of the commands.", command));
+
+        if (commandSchemas == null)
+            commandSchemas = isSchemaShared() ? SHARED_COMMAND_SCHEMAS.get(getClass()) : new HashMap<>();
+
+        CmdArgsSchema compiled = commandSchemas.get(command);
+        if (compiled == null) {
+            compiled = compileSchema(command);
+            CmdArgsSchema existing = commandSchemas.putIfAbsent(command, compiled);
+            if (existing != null)
+                compiled = existing;
+        }
+        return compiled;
+    }
+
+    /**
+     * @return The command of the last successful parse, or empty if there wasn't one.
+     * @throws ParseException if the args haven't been parsed.
+     */
+    public Optional<String> command() throws ParseException {
+        return parsedArgs().command();
     }
 
     /**
@@ -50,100 +145,1000 @@ public abstract class CmdArgsBase {
      * @param args The command line args to be parsed
      * @throws ParseException if the args cannot be parsed
      */
-    public void parse(String[] args) throws ParseException {
-        CommandLineParser parser = new DefaultParser();
-        cmd = parser.parse(options(), args.clone());
+    public synchronized void parse(String[] args) throws ParseException {
+        parse(args, Paths.get(""));
+    }
 
-        helpRequested = hasArg("h");
+    /**
+     * Parses args given to another process, e.g. one that sent them to a daemon, where relative paths must be resolved
+     * against the working directory of that process rather than this one.
+     *
+     * @param args The command line args to be parsed
+     * @param workingDirectory The directory relative {@code @path} argument files and {@link #configFiles} are resolved
+     * against.
+     * @throws ParseException if the args cannot be parsed
+     */
+    public synchronized void parse(String[] args, Path workingDirectory) throws ParseException {
+        ParseListener listener = parseListener();
+        boolean timed = listener != ParseListener.NONE;
+        ParserEngine engine = parserEngine();
 
-        if (!isHelpRequested())
-            extractCustomOptions();
+        long start = 0;
+        if (timed) {
+            listener.onParseStarted(getClass());
+            start = System.nanoTime();
+        }
+
+        // Argument files can change between parses, so command lines that may use them are never cached.
+        ParseCache cache = expandArgumentFiles() ? null : parseCache();
+        if (cache != null) {
+            ParsedArgs cached = cache.get(schema(), listener, args);
+
+            // Only command lines without config files are cached, but the files can depend on more than the command line,
+            // e.g. whether a file exists, so a command line that now has some is parsed again.
+            if ((cached != null) && !cached.isHelpRequested() && !configFiles(cached).isEmpty())
+                cached = null;
+
+            if (cached != null) {
+                cache.hit();
+                if (timed)
+                    listener.onParsed(getClass(), engine, System.nanoTime() - start, 0);
+                useCached(cached, listener);
+                return;
+            }
+        }
+
+        // The command word is resolved before anything else, so only the schema of the command is needed.
+        Set<String> commands = commandNames();
+        CmdArgsSchema parseSchema;
+        String[] optionArgs;
+        if (!commands.isEmpty() && (args.length > 0) && !args[0].startsWith("-")) {
+            if (!commands.contains(args[0]))
+                throw new ParseException(String.format("Unknown command '%s'. Expected one of: %s.", args[0], String.join(", ", commands)));
+
+            parseSchema = schema(args[0]);
+            optionArgs = Arrays.copyOfRange(args, 1, args.length);
+        } else {
+            parseSchema = schema();
+            optionArgs = args;
+        }
+
+        ParsedArgs next = spareArgs(parseSchema);
+        long tokenized;
+        long resolved;
+        if (engine == ParserEngine.NATIVE) {
+            nativeParser(parseSchema).parse(optionArgs, next.values(), expandArgumentFiles(), workingDirectory);
+            tokenized = timed ? System.nanoTime() : 0;
+            resolved = tokenized;
+        } else {
+            CommandLine cmd = parseWithCommonsCli(parseSchema, expandArgumentFiles() ? ArgumentFile.expand(optionArgs, workingDirectory) : optionArgs);
+            tokenized = timed ? System.nanoTime() : 0;
+            next.values().reset(parseSchema, cmd);
+            resolved = timed ? System.nanoTime() : 0;
+        }
+
+        if (!commands.isEmpty() && !next.command().isPresent() && !next.isHelpRequested())
+            throw new ParseException(String.format("Missing command. Expected one of: %s.", String.join(", ", commands)));
+
+        if (timed)
+            listener.onParsed(getClass(), engine, tokenized - start, resolved - tokenized);
+
+        // The config files and fallbacks are resolved into the slots here, so the getters never need to look at them.
+        long fallbacksStart = timed ? System.nanoTime() : 0;
+        List<Path> files = next.isHelpRequested() ? Collections.emptyList() : resolve(configFiles(next), workingDirectory);
+        ConfigFile.read(files, parseSchema, next.values());
+        boolean readExternalFallbacks = Fallbacks.resolve(parseSchema, next.values(), environment());
+
+        if (timed && !next.isHelpRequested())
+            listener.onFallbacksResolved(getClass(), System.nanoTime() - fallbacksStart);
+
+        spareArgs = isShared(parsedArgs) ? null : parsedArgs;
+        parsedArgs = next;
+        parsedArgsShared = false;
+        configFilesRead = files;
+
+        helpRequested = next.isHelpRequested();
+
+        if (!isHelpRequested()) {
+            if (!timed) {
+                extractAndValidate();
+            } else {
+                listener.onExtractStarted(getClass());
+                long extractStart = System.nanoTime();
+                try {
+                    extractAndValidate();
+                } finally {
+                    listener.onExtracted(getClass(), System.nanoTime() - extractStart);
+                }
+            }
+        }
+
+        // Only args that were accepted are cached, and not those that depend on config files, environment variables or
+        // system properties, which can change at any time.
+        if ((cache != null) && files.isEmpty() && !readExternalFallbacks) {
+            cache.put(schema(), listener, args, next);
+            parsedArgsShared = true;
+        }
+    }
+
+    /**
+     * Parses the args as per {@link #parse}, then publishes them as an immutable snapshot that can be read from any thread
+     * without locking. Each call atomically replaces the snapshot returned by {@link #snapshot()}, while readers holding an
+     * earlier snapshot continue to see the args it was parsed from.
+     *
+     * @param args The command line args to be parsed
+     * @return The parsed args.
+     * @throws ParseException if the args cannot be parsed, in which case the current snapshot is left unchanged.
+     */
+    public synchronized ParsedArgs parseSnapshot(String[] args) throws ParseException {
+        parse(args);
+
+        ParsedArgs parsed = Objects.requireNonNull(parsedArgs);
+        snapshot = parsed;
+        return parsed;
+    }
+
+    /**
+     * Clears the parsed args, so the instance can be reused to parse another command line, e.g. by a {@link CmdArgsPool}.
+     * The compiled schema and the buffers the args were parsed into are kept for the next parse, and with
+     * {@link ParserEngine#NATIVE} reparsing then allocates little beyond the values themselves.
+     * <p>
+     * A published {@link #snapshot()} is forgotten rather than cleared, so threads still reading it are unaffected.
+     */
+    public synchronized void reset() {
+        ParsedArgs current = parsedArgs;
+        if ((spareArgs == null) && !isShared(current))
+            spareArgs = current;
+        if (spareArgs != null)
+            spareArgs.values().clear();
+
+        parsedArgs = null;
+        parsedArgsShared = false;
+        snapshot = null;
+        configFilesRead = Collections.emptyList();
+        helpRequested = true;
+
+        resetCustomOptions();
+    }
+
+    /**
+     * @return The args published by the last successful call to {@link #parseSnapshot}, or null if there hasn't been one.
+     */
+    @Nullable
+    public ParsedArgs snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * @return A parser for validating many command lines against the options of this class in parallel. The command
+     * lines are parsed against {@link #schema()}, so they can't start with one of the {@link #commands()}, and the
+     * {@link #configFiles} are not read.
+     */
+    public BatchParser batchParser() {
+        return new BatchParser(schema(), ForkJoinPool.commonPool(), expandArgumentFiles(), environment());
     }
 
     protected abstract void addCustomOptions(Options options);
 
     protected abstract void extractCustomOptions() throws ParseException;
 
+    /**
+     * Override this to clear the values set by {@link #extractCustomOptions} when the instance is {@link #reset()}, e.g.
+     * so a pooled instance doesn't keep them alive while it is idle.
+     */
+    protected void resetCustomOptions() {
+    }
+
+    /**
+     * Override this to split the options into commands, e.g. {@code tool import --file a.csv}. The first arg selects the
+     * command, and only the options added by {@link #addCustomOptions} and by {@link #addCommandOptions} for that command
+     * are accepted after it. Use {@link #command()} in {@link #extractCustomOptions} to see which command was given.
+     * <p>
+     * The options of a command are only compiled when the command is first used, so a tool with many commands only pays
+     * for the one that is run. A command line without a command is rejected unless it only asks for help.
+     *
+     * @return The names of the commands, in the order they should be listed. Defaults to none.
+     */
+    protected List<String> commands() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Override this to add the options of one of the {@link #commands()}. It is called once per command, when the schema
+     * of the command is compiled, after {@link #addCustomOptions}.
+     *
+     * @param command The command.
+     * @param options The options to add to, which already hold the options common to every command.
+     */
+    protected void addCommandOptions(String command, Options options) {
+    }
+
+    /**
+     * Override this to add fallbacks for the options of one of the {@link #commands()}. It is called once per command,
+     * when the schema of the command is compiled, after {@link #addFallbacks}.
+     *
+     * @param command The command.
+     * @param fallbacks The fallbacks to add to.
+     */
+    protected void addCommandFallbacks(String command, Fallbacks fallbacks) {
+    }
+
+    /**
+     * Override this to give options values from the environment, system properties or defaults when they are not on the
+     * command line. Like {@link #addCustomOptions}, it is only called when the schema is compiled.
+     *
+     * @param fallbacks The fallbacks to add to.
+     */
+    protected void addFallbacks(Fallbacks fallbacks) {
+    }
+
+    /**
+     * Override this to return true to report every invalid option value at once, rather than stopping at the first one.
+     * <p>
+     * While {@link #extractCustomOptions} runs, a getter that fails records its error and returns a placeholder, e.g.
+     * an empty string or zero, so the remaining options are still checked. The {@link #validators()} are then run in
+     * parallel and the {@link #asyncValidators()} are joined, and if there were any errors, {@link #parse} throws a
+     * {@link ParseErrorsException} with all of them. Errors from the command line itself, such as an unrecognised option,
+     * are still thrown as soon as they are found.
+     *
+     * @return If errors should be collected. Defaults to false.
+     */
+    protected boolean collectErrors() {
+        return false;
+    }
+
+    /**
+     * Override this to check the args once {@link #extractCustomOptions} has run, e.g. with checks that depend on several
+     * options or are expensive. When {@link #collectErrors()} is enabled the validators are run in parallel on the common
+     * fork-join pool, so they must be thread safe.
+     *
+     * @return The validators to run after each parse. Defaults to none.
+     */
+    protected List<ArgsValidator> validators() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Override this to check the args with I/O bound checks, e.g. that paths exist or services are reachable. The checks
+     * are started once {@link #extractCustomOptions} has run, run concurrently on the {@link #validationExecutor()}, and
+     * are joined before {@link #parse} returns. Blocking checks can be run with {@link AsyncArgsValidator#blocking}.
+     * <p>
+     * Any check that hasn't finished within the {@link #validationTimeout()} is cancelled and the parse fails. Unless the
+     * errors are {@link #collectErrors() collected}, the remaining checks are also cancelled as soon as one of them fails.
+     *
+     * @return The async validators to run after each parse. Defaults to none.
+     */
+    protected List<AsyncArgsValidator> asyncValidators() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Override this to run the {@link #asyncValidators()} on a different executor. It is only called if there are any.
+     *
+     * @return The executor passed to the async validators. Defaults to virtual threads if the runtime supports them,
+     * otherwise a shared pool of daemon threads.
+     */
+    protected Executor validationExecutor() {
+        return AsyncValidation.defaultExecutor();
+    }
+
+    /**
+     * @return How long the {@link #asyncValidators()} have to finish, in total. Defaults to 30 seconds.
+     */
+    protected Duration validationTimeout() {
+        return DEFAULT_VALIDATION_TIMEOUT;
+    }
+
+    /**
+     * Reports an error found by {@link #extractCustomOptions}. When {@link #collectErrors()} is enabled the error is
+     * recorded and extraction continues, otherwise it is thrown.
+     *
+     * @param error The error.
+     * @throws ParseException the error, unless errors are being collected.
+     */
+    protected void addError(ParseException error) throws ParseException {
+        collect(error, error);
+    }
+
+    /**
+     * Override this to read the values of options that are not on the command line from config files, e.g. from the paths
+     * given by a {@code --config} option. See {@link ConfigFile} for the format. Values in later files take precedence over
+     * those in earlier files, and {@link Fallbacks} are only used for options that are in none of them.
+     *
+     * @param commandLine The args parsed from the command line, before any config files or fallbacks are applied.
+     * @return The config files to read. Defaults to none.
+     * @throws ParseException if the config files can't be determined from the command line.
+     */
+    protected List<Path> configFiles(ParsedArgs commandLine) throws ParseException {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Override this to resolve {@link Fallbacks} from somewhere other than the environment of this process.
+     *
+     * @return The environment variables. Defaults to {@link System#getenv()}.
+     */
+    protected Map<String, String> environment() {
+        return System.getenv();
+    }
+
+    /**
+     * Override this to reuse the args parsed from command lines that have been parsed before. The cache should be shared,
+     * e.g. held in a static field, as it only helps when the same command line is parsed by several instances or several
+     * times. Command lines that read config files or argument files are never cached.
+     * <p>
+     * When the args are found in the cache, {@link #extractCustomOptions} is still called to set the fields of this
+     * instance, but reads values that have already been converted, and the {@link #validators()} and
+     * {@link #asyncValidators()} are not run again.
+     *
+     * @return The cache to use. Defaults to null, which disables caching.
+     */
+    @Nullable
+    protected ParseCache parseCache() {
+        return null;
+    }
+
+    /**
+     * Override this to use a different engine to parse the command line.
+     *
+     * @return The engine used to parse the command line. Defaults to {@link ParserEngine#COMMONS_CLI}.
+     */
+    protected ParserEngine parserEngine() {
+        return ParserEngine.COMMONS_CLI;
+    }
+
+    /**
+     * Override this to time each stage of parsing, e.g. to record them as Java Flight Recorder events.
+     *
+     * @return The listener to notify as the command line is parsed. Defaults to {@link ParseListener#NONE}.
+     */
+    protected ParseListener parseListener() {
+        return ParseListener.NONE;
+    }
+
+    /**
+     * Override this to return true to replace any {@code @path} args with the whitespace separated tokens in the file, which
+     * may use quotes and {@code #} comments. A leading {@code @@} is passed through as a literal {@code @}.
+     * <p>
+     * With {@link ParserEngine#NATIVE} the tokens are parsed as the file is read, so there is no limit on the size of the
+     * file beyond the values themselves. {@link ParserEngine#COMMONS_CLI} needs every token up front, so the files are
+     * expanded into a new args array before parsing.
+     *
+     * @return If argument files should be expanded. Defaults to false.
+     */
+    protected boolean expandArgumentFiles() {
+        return false;
+    }
+
+    /**
+     * Override this to return false if the options added by {@link #addCustomOptions} depend on the state of the instance,
+     * e.g. values passed to the constructor.
+     *
+     * @return If the compiled schema can be shared by all instances of this class.
+     */
+    protected boolean isSchemaShared() {
+        return true;
+    }
+
     protected <T> T ensureOptionInitialised(@Nullable T option) {
         if (option == null)
             throw new IllegalStateException("INTERNAL ERROR: You called an option getter before you parsed the options or when help was requested.");
         return option;
     }
 
+    /**
+     * @return The args from the last successful parse.
+     * @throws ParseException if the args haven't been parsed.
+     */
+    protected ParsedArgs parsedArgs() throws ParseException {
+        if (parsedArgs == null)
+            throw new ParseException("You must parse the command line arguments before they can be used.");
+        return parsedArgs;
+    }
+
     protected boolean hasArg(String arg) throws ParseException {
-        return cmd().hasOption(arg);
+        return parsedArgs().hasArg(arg);
     }
 
     protected String getRequiredStringArg(String arg) throws ParseException {
-        String value = cmd().getOptionValue(arg);
-        if (value == null)
-            throw new ParseException(String.format("Missing required option: %s.", arg));
-        return value;
+        try {
+            return parsedArgs().getRequiredStringArg(arg);
+        } catch (ParseException e) {
+            return collect(e, "");
+        }
     }
 
     protected Optional<String> getOptionalStringArg(String arg) throws ParseException {
-        return cmd().hasOption(arg) ? Optional.of(getRequiredStringArg(arg)) : Optional.empty();
+        try {
+            return parsedArgs().getOptionalStringArg(arg);
+        } catch (ParseException e) {
+            return collect(e, Optional.empty());
+        }
     }
 
     protected List<String> getRequiredStringArgList(String arg) throws ParseException {
-        String[] values = cmd().getOptionValues(arg);
-        if (values == null)
-            throw new ParseException(String.format("Missing required option: %s.", arg));
-        return Arrays.asList(values);
+        try {
+            return parsedArgs().getRequiredStringArgList(arg);
+        } catch (ParseException e) {
+            return collect(e, Collections.emptyList());
+        }
     }
 
     protected Optional<List<String>> getOptionalStringArgList(String arg) throws ParseException {
-        return cmd().hasOption(arg) ? Optional.of(getRequiredStringArgList(arg)) : Optional.empty();
+        try {
+            return parsedArgs().getOptionalStringArgList(arg);
+        } catch (ParseException e) {
+            return collect(e, Optional.empty());
+        }
     }
 
-    protected int getRequiredIntArg(String arg) throws ParseException {
-        String value = getRequiredStringArg(arg);
+    /**
+     * Streams the values of the option without copying them. The stream is lazy and reads the parsed values in place, so
+     * it must be consumed before the next call to {@link #parse}. It can be made parallel, in which case the values are
+     * split by range.
+     *
+     * @return The values of the option, or an empty stream if the option was not specified.
+     */
+    protected Stream<String> streamStringArg(String arg) throws ParseException {
+        return parsedArgs().streamStringArg(arg);
+    }
 
+    /**
+     * @return An iterator over the values of the option, with the same restrictions as {@link #streamStringArg}.
+     */
+    protected Iterator<String> iterateStringArg(String arg) throws ParseException {
+        return parsedArgs().iterateStringArg(arg);
+    }
+
+    /**
+     * Streams the values of the option, converting each value as it is consumed. As the values are converted lazily, an
+     * invalid value is reported by throwing an {@link UncheckedParseException} from the terminal operation.
+     *
+     * @return The values of the option, or an empty stream if the option was not specified.
+     */
+    protected IntStream streamIntArg(String arg) throws ParseException {
+        return parsedArgs().streamIntArg(arg);
+    }
+
+    /**
+     * @return The values of the option, or an empty stream if the option was not specified. See {@link #streamIntArg}.
+     */
+    protected LongStream streamLongArg(String arg) throws ParseException {
+        return parsedArgs().streamLongArg(arg);
+    }
+
+    protected int getRequiredIntArg(String arg) throws ParseException {
         try {
-            return Integer.parseInt(value);
-        } catch (NumberFormatException ignored) {
-            throw new ParseException(String.format("Invalid integer '%s' for argument %s.", value, arg));
+            return parsedArgs().getRequiredIntArg(arg);
+        } catch (ParseException e) {
+            return collect(e, 0);
         }
     }
 
     protected int getRequiredIntArg(String arg, int minimumValue) throws ParseException {
-        int value = getRequiredIntArg(arg);
-        if (value < minimumValue)
-            throw new ParseException(String.format("Integer %s for argument %s is out of range. Value must be at least %d.", value, arg, minimumValue));
-        return value;
+        try {
+            return parsedArgs().getRequiredIntArg(arg, minimumValue);
+        } catch (ParseException e) {
+            return collect(e, 0);
+        }
     }
 
     protected int getRequiredIntArg(String arg, int minimumValue, int maximumValue) throws ParseException {
-        int value = getRequiredIntArg(arg);
-        if ((value < minimumValue) || (value > maximumValue))
-            throw new ParseException(String.format("Integer %s for argument %s is out of range. Expected value in range %d..%d.", value, arg, minimumValue, maximumValue));
-        return value;
+        try {
+            return parsedArgs().getRequiredIntArg(arg, minimumValue, maximumValue);
+        } catch (ParseException e) {
+            return collect(e, 0);
+        }
     }
 
     protected Optional<Integer> getOptionalIntArg(String arg) throws ParseException {
-        return cmd().hasOption(arg) ? Optional.of(getRequiredIntArg(arg)) : Optional.empty();
+        try {
+            return parsedArgs().getOptionalIntArg(arg);
+        } catch (ParseException e) {
+            return collect(e, Optional.empty());
+        }
     }
 
     protected Optional<Integer> getOptionalIntArg(String arg, int minimumValue) throws ParseException {
-        return cmd().hasOption(arg) ? Optional.of(getRequiredIntArg(arg, minimumValue)) : Optional.empty();
+        try {
+            return parsedArgs().getOptionalIntArg(arg, minimumValue);
+        } catch (ParseException e) {
+            return collect(e, Optional.empty());
+        }
     }
 
     protected Optional<Integer> getOptionalIntArg(String arg, int minimumValue, int maximumValue) throws ParseException {
-        return cmd().hasOption(arg) ? Optional.of(getRequiredIntArg(arg, minimumValue, maximumValue)) : Optional.empty();
+        try {
+            return parsedArgs().getOptionalIntArg(arg, minimumValue, maximumValue);
+        } catch (ParseException e) {
+            return collect(e, Optional.empty());
+        }
     }
 
-    protected LocalDate getRequiredDateArg(String arg) throws ParseException {
-        String value = getRequiredStringArg(arg);
+    /**
+     * @return The values of the option converted to a new array, without boxing.
+     */
+    protected int[] getRequiredIntArgList(String arg) throws ParseException {
+        try {
+            return parsedArgs().getRequiredIntArgList(arg);
+        } catch (ParseException e) {
+            return collect(e, new int[0]);
+        }
+    }
+
+    protected int[] getRequiredIntArgList(String arg, int minimumValue) throws ParseException {
+        try {
+            return parsedArgs().getRequiredIntArgList(arg, minimumValue);
+        } catch (ParseException e) {
+            return collect(e, new int[0]);
+        }
+    }
+
+    protected int[] getRequiredIntArgList(String arg, int minimumValue, int maximumValue) throws ParseException {
+        try {
+            return parsedArgs().getRequiredIntArgList(arg, minimumValue, maximumValue);
+        } catch (ParseException e) {
+            return collect(e, new int[0]);
+        }
+    }
+
+    protected Optional<int[]> getOptionalIntArgList(String arg) throws ParseException {
+        try {
+            return parsedArgs().getOptionalIntArgList(arg);
+        } catch (ParseException e) {
+            return collect(e, Optional.empty());
+        }
+    }
+
+    protected Optional<int[]> getOptionalIntArgList(String arg, int minimumValue) throws ParseException {
+        try {
+            return parsedArgs().getOptionalIntArgList(arg, minimumValue);
+        } catch (ParseException e) {
+            return collect(e, Optional.empty());
+        }
+    }
+
+    protected Optional<int[]> getOptionalIntArgList(String arg, int minimumValue, int maximumValue) throws ParseException {
+        try {
+            return parsedArgs().getOptionalIntArgList(arg, minimumValue, maximumValue);
+        } catch (ParseException e) {
+            return collect(e, Optional.empty());
+        }
+    }
+
+    protected long getRequiredLongArg(String arg) throws ParseException {
+        try {
+            return parsedArgs().getRequiredLongArg(arg);
+        } catch (ParseException e) {
+            return collect(e, 0L);
+        }
+    }
+
+    protected long getRequiredLongArg(String arg, long minimumValue, long maximumValue) throws ParseException {
+        try {
+            return parsedArgs().getRequiredLongArg(arg, minimumValue, maximumValue);
+        } catch (ParseException e) {
+            return collect(e, 0L);
+        }
+    }
+
+    protected Optional<Long> getOptionalLongArg(String arg) throws ParseException {
+        try {
+            return parsedArgs().getOptionalLongArg(arg);
+        } catch (ParseException e) {
+            return collect(e, Optional.empty());
+        }
+    }
+
+    protected Optional<Long> getOptionalLongArg(String arg, long minimumValue, long maximumValue) throws ParseException {
+        try {
+            return parsedArgs().getOptionalLongArg(arg, minimumValue, maximumValue);
+        } catch (ParseException e) {
+            return collect(e, Optional.empty());
+        }
+    }
+
+    /**
+     * @return The value of the option, which may use underscores between digits, or anything accepted by
+     * {@link Double#parseDouble}.
+     */
+    protected double getRequiredDoubleArg(String arg) throws ParseException {
+        try {
+            return parsedArgs().getRequiredDoubleArg(arg);
+        } catch (ParseException e) {
+            return collect(e, 0.0);
+        }
+    }
+
+    protected double getRequiredDoubleArg(String arg, double minimumValue, double maximumValue) throws ParseException {
+        try {
+            return parsedArgs().getRequiredDoubleArg(arg, minimumValue, maximumValue);
+        } catch (ParseException e) {
+            return collect(e, 0.0);
+        }
+    }
+
+    protected Optional<Double> getOptionalDoubleArg(String arg) throws ParseException {
+        try {
+            return parsedArgs().getOptionalDoubleArg(arg);
+        } catch (ParseException e) {
+            return collect(e, Optional.empty());
+        }
+    }
+
+    protected Optional<Double> getOptionalDoubleArg(String arg, double minimumValue, double maximumValue) throws ParseException {
+        try {
+            return parsedArgs().getOptionalDoubleArg(arg, minimumValue, maximumValue);
+        } catch (ParseException e) {
+            return collect(e, Optional.empty());
+        }
+    }
+
+    /**
+     * @return The value of the option, which is a whole number that may use underscores between digits, a {@code 0x} hex
+     * prefix, or an SI or binary suffix such as {@code 10k} or {@code 512MiB}.
+     */
+    protected long getRequiredQuantityArg(String arg) throws ParseException {
+        try {
+            return parsedArgs().getRequiredQuantityArg(arg);
+        } catch (ParseException e) {
+            return collect(e, 0L);
+        }
+    }
+
+    protected long getRequiredQuantityArg(String arg, long minimumValue, long maximumValue) throws ParseException {
+        try {
+            return parsedArgs().getRequiredQuantityArg(arg, minimumValue, maximumValue);
+        } catch (ParseException e) {
+            return collect(e, 0L);
+        }
+    }
+
+    protected Optional<Long> getOptionalQuantityArg(String arg) throws ParseException {
+        try {
+            return parsedArgs().getOptionalQuantityArg(arg);
+        } catch (ParseException e) {
+            return collect(e, Optional.empty());
+        }
+    }
+
+    protected Optional<Long> getOptionalQuantityArg(String arg, long minimumValue, long maximumValue) throws ParseException {
+        try {
+            return parsedArgs().getOptionalQuantityArg(arg, minimumValue, maximumValue);
+        } catch (ParseException e) {
+            return collect(e, Optional.empty());
+        }
+    }
+
+    /**
+     * @return The values of the option converted to a new array, without boxing.
+     */
+    protected long[] getRequiredLongArgList(String arg) throws ParseException {
+        try {
+            return parsedArgs().getRequiredLongArgList(arg);
+        } catch (ParseException e) {
+            return collect(e, new long[0]);
+        }
+    }
+
+    protected long[] getRequiredLongArgList(String arg, long minimumValue) throws ParseException {
+        try {
+            return parsedArgs().getRequiredLongArgList(arg, minimumValue);
+        } catch (ParseException e) {
+            return collect(e, new long[0]);
+        }
+    }
 
+    protected long[] getRequiredLongArgList(String arg, long minimumValue, long maximumValue) throws ParseException {
         try {
-            return LocalDate.parse(value);
-        } catch (DateTimeParseException ignored) {
-            throw new ParseException(String.format("Invalid date '%s' for argument %s.", value, arg));
+            return parsedArgs().getRequiredLongArgList(arg, minimumValue, maximumValue);
+        } catch (ParseException e) {
+            return collect(e, new long[0]);
+        }
+    }
+
+    protected Optional<long[]> getOptionalLongArgList(String arg) throws ParseException {
+        try {
+            return parsedArgs().getOptionalLongArgList(arg);
+        } catch (ParseException e) {
+            return collect(e, Optional.empty());
+        }
+    }
+
+    protected Optional<long[]> getOptionalLongArgList(String arg, long minimumValue) throws ParseException {
+        try {
+            return parsedArgs().getOptionalLongArgList(arg, minimumValue);
+        } catch (ParseException e) {
+            return collect(e, Optional.empty());
+        }
+    }
+
+    protected Optional<long[]> getOptionalLongArgList(String arg, long minimumValue, long maximumValue) throws ParseException {
+        try {
+            return parsedArgs().getOptionalLongArgList(arg, minimumValue, maximumValue);
+        } catch (ParseException e) {
+            return collect(e, Optional.empty());
+        }
+    }
+
+    protected LocalDate getRequiredDateArg(String arg) throws ParseException {
+        try {
+            return parsedArgs().getRequiredDateArg(arg);
+        } catch (ParseException e) {
+            return collect(e, LocalDate.MIN);
         }
     }
 
     protected Optional<LocalDate> getOptionalDateArg(String arg) throws ParseException {
-        return cmd().hasOption(arg) ? Optional.of(getRequiredDateArg(arg)) : Optional.empty();
+        try {
+            return parsedArgs().getOptionalDateArg(arg);
+        } catch (ParseException e) {
+            return collect(e, Optional.empty());
+        }
+    }
+
+    /**
+     * @return The values of the option, in an unmodifiable list.
+     */
+    protected List<LocalDate> getRequiredDateArgList(String arg) throws ParseException {
+        try {
+            return parsedArgs().getRequiredDateArgList(arg);
+        } catch (ParseException e) {
+            return collect(e, Collections.emptyList());
+        }
+    }
+
+    protected Optional<List<LocalDate>> getOptionalDateArgList(String arg) throws ParseException {
+        try {
+            return parsedArgs().getOptionalDateArgList(arg);
+        } catch (ParseException e) {
+            return collect(e, Optional.empty());
+        }
+    }
+
+    /**
+     * @return The value of the option, as accepted by {@link LocalDateTime#parse(CharSequence)}.
+     */
+    protected LocalDateTime getRequiredDateTimeArg(String arg) throws ParseException {
+        try {
+            return parsedArgs().getRequiredDateTimeArg(arg);
+        } catch (ParseException e) {
+            return collect(e, LocalDateTime.MIN);
+        }
+    }
+
+    protected Optional<LocalDateTime> getOptionalDateTimeArg(String arg) throws ParseException {
+        try {
+            return parsedArgs().getOptionalDateTimeArg(arg);
+        } catch (ParseException e) {
+            return collect(e, Optional.empty());
+        }
+    }
+
+    /**
+     * @return The value of the option, as accepted by {@link Instant#parse(CharSequence)}.
+     */
+    protected Instant getRequiredInstantArg(String arg) throws ParseException {
+        try {
+            return parsedArgs().getRequiredInstantArg(arg);
+        } catch (ParseException e) {
+            return collect(e, Instant.MIN);
+        }
+    }
+
+    protected Optional<Instant> getOptionalInstantArg(String arg) throws ParseException {
+        try {
+            return parsedArgs().getOptionalInstantArg(arg);
+        } catch (ParseException e) {
+            return collect(e, Optional.empty());
+        }
+    }
+
+    /**
+     * @return The value of the option, as accepted by {@link Duration#parse(CharSequence)}.
+     */
+    protected Duration getRequiredDurationArg(String arg) throws ParseException {
+        try {
+            return parsedArgs().getRequiredDurationArg(arg);
+        } catch (ParseException e) {
+            return collect(e, Duration.ZERO);
+        }
+    }
+
+    protected Optional<Duration> getOptionalDurationArg(String arg) throws ParseException {
+        try {
+            return parsedArgs().getOptionalDurationArg(arg);
+        } catch (ParseException e) {
+            return collect(e, Optional.empty());
+        }
+    }
+
+    protected Optional<ValueSource> sourceOf(String arg) throws ParseException {
+        return parsedArgs().sourceOf(arg);
+    }
+
+    protected boolean hasArg(OptionKey<?> key) throws ParseException {
+        return parsedArgs().hasArg(key);
+    }
+
+    protected <T> T getRequiredArg(OptionKey<T> key) throws ParseException {
+        try {
+            return parsedArgs().getRequiredArg(key);
+        } catch (ParseException e) {
+            return collect(e, key.placeholder());
+        }
+    }
+
+    protected <T> Optional<T> getOptionalArg(OptionKey<T> key) throws ParseException {
+        try {
+            return parsedArgs().getOptionalArg(key);
+        } catch (ParseException e) {
+            return collect(e, Optional.empty());
+        }
+    }
+
+    /**
+     * @return The config files read by the last successful parse.
+     */
+    synchronized List<Path> configFilesRead() {
+        return configFilesRead;
+    }
+
+    private void extractAndValidate() throws ParseException {
+        ParsedArgs args = parsedArgs();
+        if (!collectErrors()) {
+            extractCustomOptions();
+
+            AsyncValidation async = AsyncValidation.start(asyncValidators(), args, this::validationExecutor);
+            List<ParseException> asyncErrors;
+            try {
+                try {
+                    for (ArgsValidator validator : validators())
+                        validator.validate(args);
+                } catch (ParseException | RuntimeException e) {
+                    async.cancel();
+                    throw e;
+                }
+
+                asyncErrors = async.join(validationTimeout(), true);
+            } finally {
+                // Whether the validation passed, failed or threw, any validators that were cancelled may still be running.
+                abandonIfRunning(async);
+            }
+
+            if (!asyncErrors.isEmpty())
+                throw asyncErrors.get(0);
+            return;
+        }
+
+        List<ParseException> errors = new ArrayList<>();
+        collectedErrors = errors;
+        try {
+            extractCustomOptions();
+        } catch (ParseException e) {
+            ParseErrorsException.addTo(errors, e);
+        } finally {
+            collectedErrors = null;
+        }
+
+        // The async validators are started first, so they can run while the other validators are checked.
+        AsyncValidation async = AsyncValidation.start(asyncValidators(), args, this::validationExecutor);
+
+        List<ArgsValidator> validators = validators();
+        ParseException[] failures = new ParseException[validators.size()];
+        List<ParseException> asyncErrors;
+        try {
+            try {
+                IntStream.range(0, validators.size()).parallel().forEach(i -> {
+                    try {
+                        validators.get(i).validate(args);
+                    } catch (ParseException e) {
+                        failures[i] = e;
+                    }
+                });
+            } catch (RuntimeException e) {
+                async.cancel();
+                throw e;
+            }
+
+            asyncErrors = async.join(validationTimeout(), false);
+        } finally {
+            abandonIfRunning(async);
+        }
+
+        for (ParseException failure : failures) {
+            if (failure != null)
+                ParseErrorsException.addTo(errors, failure);
+        }
+
+        for (ParseException failure : asyncErrors)
+            ParseErrorsException.addTo(errors, failure);
+
+        if (!errors.isEmpty())
+            throw new ParseErrorsException(errors);
+    }
+
+    private static List<Path> resolve(List<Path> paths, Path workingDirectory) {
+        if (paths.isEmpty())
+            return paths;
+
+        List<Path> resolved = new ArrayList<>(paths.size());
+        for (Path path : paths)
+            resolved.add(workingDirectory.resolve(path));
+        return resolved;
+    }
+
+    private void useCached(ParsedArgs cached, ParseListener listener) throws ParseException {
+        if ((spareArgs == null) && !isShared(parsedArgs))
+            spareArgs = parsedArgs;
+
+        parsedArgs = cached;
+        parsedArgsShared = true;
+        configFilesRead = Collections.emptyList();
+
+        helpRequested = cached.isHelpRequested();
+        if (isHelpRequested())
+            return;
+
+        if (listener == ParseListener.NONE) {
+            extractCustomOptions();
+        } else {
+            listener.onExtractStarted(getClass());
+            long extractStart = System.nanoTime();
+            try {
+                extractCustomOptions();
+            } finally {
+                listener.onExtracted(getClass(), System.nanoTime() - extractStart);
+            }
+        }
+    }
+
+    private void abandonIfRunning(AsyncValidation async) {
+        if (async.isAbandoned())
+            parsedArgsShared = true;
+    }
+
+    private boolean isShared(@Nullable ParsedArgs args) {
+        return (args == null) || (args == snapshot) || ((args == parsedArgs) && parsedArgsShared);
+    }
+
+    private <T> T collect(ParseException error, T placeholder) throws ParseException {
+        if (collectedErrors == null)
+            throw error;
+
+        ParseErrorsException.addTo(collectedErrors, error);
+        return placeholder;
+    }
+
+    private CmdArgsSchema sharedSchema() {
+        AtomicReference<CmdArgsSchema> shared = SHARED_SCHEMAS.get(getClass());
+
+        CmdArgsSchema compiled = shared.get();
+        if (compiled == null) {
+            shared.compareAndSet(null, compileSchema(null));
+            compiled = shared.get();
+        }
+
+        return compiled;
+    }
+
+    private CmdArgsSchema compileSchema(@Nullable String command) {
+        Options options = createOptions();
+        if (command != null)
+            addCommandOptions(command, options);
+
+        Fallbacks fallbacks = new Fallbacks();
+        addFallbacks(fallbacks);
+        if (command != null)
+            addCommandFallbacks(command, fallbacks);
+
+        return CmdArgsSchema.compile(options, fallbacks, command);
+    }
+
+    private Set<String> commandNames() {
+        if (commandNames == null)
+            commandNames = new LinkedHashSet<>(commands());
+        return commandNames;
     }
 
     private Options createOptions() {
@@ -160,10 +1155,29 @@ public abstract class CmdArgsBase {
         return options;
     }
 
-    private CommandLine cmd() throws ParseException {
-        if (cmd == null)
-            throw new ParseException("You must parse the command line arguments before they can be used.");
-        return cmd;
+    private CommandLine parseWithCommonsCli(CmdArgsSchema schema, String[] args) throws ParseException {
+        CommandLineParser parser = new DefaultParser();
+
+        // The DefaultParser records the selected option on the OptionGroup itself, so parses sharing a schema can't overlap.
+        if (schema.groupCount() > 0) {
+            synchronized (schema) {
+                return parser.parse(schema.parserOptions(), args.clone());
+            }
+        }
+
+        return parser.parse(schema.parserOptions(), args.clone());
+    }
+
+    private NativeParser nativeParser(CmdArgsSchema schema) {
+        if ((nativeParser == null) || (nativeParser.schema() != schema))
+            nativeParser = new NativeParser(schema);
+        return nativeParser;
+    }
+
+    private ParsedArgs spareArgs(CmdArgsSchema schema) {
+        if ((spareArgs == null) || (spareArgs.schema() != schema))
+            spareArgs = new ParsedArgs(schema, new OptionValues(), parseListener());
+        return spareArgs;
     }
 
 }
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.zepben.commandlinearguments;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import org.apache.commons.cli.ParseException;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.function.Supplier;
+
+/**
+ * A pool of args instances for services that parse a command line per request. Each instance is {@link CmdArgsBase#reset()}
+ * when it is released, and keeps its parse buffers for the next request, so a busy service reuses a few warm instances
+ * rather than creating one per request.
+ * <p>
+ * The pool is thread safe. Each instance is only used by one thread at a time, from when it is acquired until it is
+ * released.
+ *
+ * @param <T> The type of the args.
+ */
+@EverythingIsNonnullByDefault
+@SuppressWarnings("WeakerAccess")
+public final class CmdArgsPool<T extends CmdArgsBase> {
+
+    /**
+     * Reads the parsed args of a pooled instance.
+     */
+    @FunctionalInterface
+    public interface ArgsFunction<T, R> {
+
+        R apply(T args) throws ParseException;
+
+    }
+
+    private final Supplier<T> factory;
+    private final ArrayBlockingQueue<T> idle;
+
+    /**
+     * @param factory Creates a new instance when there are none idle.
+     * @param maximumIdle The most instances to keep for reuse. Any more that are released are dropped.
+     */
+    public CmdArgsPool(Supplier<T> factory, int maximumIdle) {
+        if (maximumIdle < 1)
+            throw new IllegalArgumentException(String.format("INTERNAL ERROR: The pool must keep at least 1 idle instance, not %d.", maximumIdle));
+
+        this.factory = factory;
+        idle = new ArrayBlockingQueue<>(maximumIdle);
+    }
+
+    /**
+     * @return An idle instance, or a new one if there are none.
+     */
+    public T acquire() {
+        T args = idle.poll();
+        return args != null ? args : factory.get();
+    }
+
+    /**
+     * Resets the instance and returns it to the pool. It must not be used again by the caller.
+     *
+     * @param args An instance from {@link #acquire()}.
+     */
+    public void release(T args) {
+        args.reset();
+        idle.offer(args);
+    }
+
+    /**
+     * Parses the command line with a pooled instance, which is released once the function returns. The args are parsed into
+     * the buffers of the instance, which are reused by the next request, so the function must copy out anything it needs
+     * to keep. To keep the parsed args themselves, {@link #acquire()} an instance and call
+     * {@link CmdArgsBase#parseSnapshot} instead, as a snapshot is left intact when the instance is released.
+     *
+     * @param args The command line args to be parsed.
+     * @param function Reads the parsed args. It must not keep a reference to the instance or its parsed args, but can keep
+     * the values it extracted.
+     * @return The result of the function.
+     * @throws ParseException if the args cannot be parsed, or the function throws it.
+     */
+    public <R> R parse(String[] args, ArgsFunction<T, R> function) throws ParseException {
+        T instance = acquire();
+        try {
+            instance.parse(args);
+            return function.apply(instance);
+        } finally {
+            release(instance);
+        }
+    }
+
+    /**
+     * @return The number of instances waiting to be reused.
+     */
+    public int idleCount() {
+        return idle.size();
+    }
+
+}
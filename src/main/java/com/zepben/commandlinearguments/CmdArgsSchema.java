@@ -0,0 +1,318 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.zepben.commandlinearguments;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.OptionGroup;
+import org.apache.commons.cli.Options;
+
+import javax.annotation.Nullable;
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * The compiled set of options supported by a {@link CmdArgsBase} subclass.
+ * <p>
+ * Each option is assigned a slot, which is its index in registration order, and both the short and long names are indexed
+ * to that slot, so resolving an option by name is a single lookup however many options there are. The long names are
+ * also kept sorted, so an abbreviated long name is resolved with a binary search rather than by checking every long
+ * name. A schema is built once per subclass and shared between all of its instances, so it must be treated as read
+ * only. The {@link Options} it was compiled from are kept to itself, and {@link #options()} returns a copy of them.
+ * <p>
+ * Any {@link Fallbacks} are compiled into the schema by slot, so they can be resolved without looking the options up.
+ */
+@EverythingIsNonnullByDefault
+@SuppressWarnings("WeakerAccess")
+public final class CmdArgsSchema {
+
+    static final int NO_MATCH = -1;
+    static final int AMBIGUOUS = -2;
+
+    private final Options options;
+    @Nullable private final String command;
+    private final Option[] optionsBySlot;
+    private final Map<String, Integer> shortSlots = new HashMap<>();
+    private final Map<String, Integer> longSlots = new HashMap<>();
+    private final Map<String, Integer> shortTokenSlots = new HashMap<>();
+    private final Map<String, Integer> longTokenSlots = new HashMap<>();
+    private final int[] asciiShortSlots = new int[128];
+    private final String[] longNames;
+    // The long names in sorted order, so the names an abbreviation matches are adjacent, and the slot of each.
+    private final String[] sortedLongNames;
+    private final int[] sortedLongSlots;
+
+    private final OptionGroup[] groups;
+    private final int[] groupsBySlot;
+    private final int[] requiredSlots;
+    private final int[] requiredGroups;
+
+    private final Fallbacks.Fallback[] fallbacksBySlot;
+    private final int[] fallbackSlots;
+
+    private CmdArgsSchema(Options options, Fallbacks fallbacks, @Nullable String command) {
+        this.options = options;
+        this.command = command;
+
+        optionsBySlot = options.getOptions().toArray(new Option[0]);
+        Arrays.fill(asciiShortSlots, NO_MATCH);
+
+        List<String> longNameList = new ArrayList<>();
+        for (int slot = 0; slot < optionsBySlot.length; ++slot) {
+            Option option = optionsBySlot[slot];
+            if (option.getOpt() != null) {
+                shortSlots.put(option.getOpt(), slot);
+                shortTokenSlots.put("-" + option.getOpt(), slot);
+                if ((option.getOpt().length() == 1) && (option.getOpt().charAt(0) < asciiShortSlots.length))
+                    asciiShortSlots[option.getOpt().charAt(0)] = slot;
+            }
+            if (option.getLongOpt() != null) {
+                longSlots.put(option.getLongOpt(), slot);
+                longTokenSlots.put("--" + option.getLongOpt(), slot);
+                longNameList.add(option.getLongOpt());
+            }
+        }
+        longNames = longNameList.toArray(new String[0]);
+        sortedLongNames = longNames.clone();
+        Arrays.sort(sortedLongNames);
+        sortedLongSlots = Arrays.stream(sortedLongNames).mapToInt(longSlots::get).toArray();
+
+        List<OptionGroup> groupList = new ArrayList<>();
+        groupsBySlot = new int[optionsBySlot.length];
+        Arrays.fill(groupsBySlot, NO_MATCH);
+        for (int slot = 0; slot < optionsBySlot.length; ++slot) {
+            OptionGroup group = options.getOptionGroup(optionsBySlot[slot]);
+            if (group != null) {
+                if (!groupList.contains(group))
+                    groupList.add(group);
+                groupsBySlot[slot] = groupList.indexOf(group);
+            }
+        }
+        groups = groupList.toArray(new OptionGroup[0]);
+
+        List<Integer> required = new ArrayList<>();
+        List<Integer> requiredGroupList = new ArrayList<>();
+        for (Object entry : options.getRequiredOptions()) {
+            if (entry instanceof OptionGroup)
+                requiredGroupList.add(groupList.indexOf(entry));
+            else
+                required.add(slotOf(entry.toString()));
+        }
+        requiredSlots = required.stream().mapToInt(Integer::intValue).toArray();
+        requiredGroups = requiredGroupList.stream().mapToInt(Integer::intValue).toArray();
+
+        fallbacksBySlot = new Fallbacks.Fallback[optionsBySlot.length];
+        for (Fallbacks.Fallback fallback : fallbacks.byName().values()) {
+            int slot = slotOf(fallback.name());
+            if (slot == NO_MATCH)
+                throw new IllegalStateException(String.format("INTERNAL ERROR: There is no option '%s' to fall back for.", fallback.name()));
+            else if (optionsBySlot[slot].isRequired())
+                throw new IllegalStateException(String.format("INTERNAL ERROR: Option '%s' is required, so its fallbacks would never be used.", fallback.name()));
+            else if (fallbacksBySlot[slot] != null)
+                throw new IllegalStateException(String.format("INTERNAL ERROR: Option '%s' has fallbacks declared under both of its names.", fallback.name()));
+            fallbacksBySlot[slot] = fallback;
+        }
+        fallbackSlots = IntStream.range(0, fallbacksBySlot.length).filter(slot -> fallbacksBySlot[slot] != null).toArray();
+    }
+
+    /**
+     * @param options The options to compile. They must not be modified after being compiled.
+     * @return The compiled schema.
+     */
+    public static CmdArgsSchema compile(Options options) {
+        return new CmdArgsSchema(options, new Fallbacks(), null);
+    }
+
+    /**
+     * @param options The options to compile. They must not be modified after being compiled.
+     * @param fallbacks The fallbacks of the options. They must not be modified after being compiled.
+     * @return The compiled schema.
+     * @throws IllegalStateException if a fallback is declared for an option that doesn't exist or is required.
+     */
+    public static CmdArgsSchema compile(Options options, Fallbacks fallbacks) {
+        return new CmdArgsSchema(options, fallbacks, null);
+    }
+
+    static CmdArgsSchema compile(Options options, Fallbacks fallbacks, @Nullable String command) {
+        return new CmdArgsSchema(options, fallbacks, command);
+    }
+
+    /**
+     * Each call copies the options, so changes to the copy don't affect the schema or any parses that share it.
+     *
+     * @return A copy of the supported options.
+     */
+    public Options options() {
+        Map<Option, Option> copies = new IdentityHashMap<>();
+        Options copy = new Options();
+        for (Option option : optionsBySlot) {
+            Option optionCopy = (Option) option.clone();
+            copies.put(option, optionCopy);
+            copy.addOption(optionCopy);
+        }
+
+        // Adding a group adds its options again, which keeps them in the order they were registered.
+        for (OptionGroup group : groups) {
+            OptionGroup groupCopy = new OptionGroup();
+            for (Option option : group.getOptions())
+                groupCopy.addOption(copies.get(option));
+            groupCopy.setRequired(group.isRequired());
+            copy.addOptionGroup(groupCopy);
+        }
+
+        return copy;
+    }
+
+    /**
+     * @return The options the schema was compiled from, for the commons-cli parser. They must not be modified.
+     */
+    Options parserOptions() {
+        return options;
+    }
+
+    /**
+     * @return The command the schema was compiled for, or empty if it has the options of a class without commands, or the
+     * options common to every command.
+     */
+    public Optional<String> command() {
+        return Optional.ofNullable(command);
+    }
+
+    /**
+     * @return The number of options in the schema.
+     */
+    public int size() {
+        return optionsBySlot.length;
+    }
+
+    /**
+     * @param slot The slot of the option.
+     * @return The option in the slot.
+     */
+    public Option option(int slot) {
+        return optionsBySlot[slot];
+    }
+
+    /**
+     * @param name The short or long name of the option, with or without leading hyphens.
+     * @return The option, or null if there is no option with the given name.
+     */
+    @Nullable
+    public Option option(String name) {
+        int slot = slotOf(name);
+        return slot < 0 ? null : optionsBySlot[slot];
+    }
+
+    /**
+     * Short names take precedence over long names, matching {@link Options#getOption(String)}.
+     *
+     * @param name The short or long name of the option, with or without leading hyphens.
+     * @return The slot of the option, or -1 if there is no option with the given name.
+     */
+    public int slotOf(String name) {
+        String stripped = stripLeadingHyphens(name);
+
+        Integer slot = shortSlots.get(stripped);
+        if (slot == null)
+            slot = longSlots.get(stripped);
+        return slot == null ? NO_MATCH : slot;
+    }
+
+    int shortSlot(char name) {
+        return name < asciiShortSlots.length ? asciiShortSlots[name] : slotOrNoMatch(shortSlots.get(String.valueOf(name)));
+    }
+
+    int longSlot(String name) {
+        return slotOrNoMatch(longSlots.get(name));
+    }
+
+    int shortTokenSlot(String token) {
+        return slotOrNoMatch(shortTokenSlots.get(token));
+    }
+
+    int longTokenSlot(String token) {
+        return slotOrNoMatch(longTokenSlots.get(token));
+    }
+
+    /**
+     * Resolves a long name the way {@link Options#getMatchingOptions(String)} does, where an exact match wins, otherwise
+     * the name may be an unambiguous prefix of a long name.
+     *
+     * @return The slot of the match, {@link #NO_MATCH} or {@link #AMBIGUOUS}.
+     */
+    int matchLong(String name) {
+        int slot = longSlot(name);
+        if (slot >= 0)
+            return slot;
+
+        // Any long names the name abbreviates sort from where it would be inserted, so only the first two need checking.
+        int index = Arrays.binarySearch(sortedLongNames, name);
+        int first = index >= 0 ? index : -(index + 1);
+        if ((first == sortedLongNames.length) || !sortedLongNames[first].startsWith(name))
+            return NO_MATCH;
+        else if ((first + 1 < sortedLongNames.length) && sortedLongNames[first + 1].startsWith(name))
+            return AMBIGUOUS;
+        else
+            return sortedLongSlots[first];
+    }
+
+    List<String> matchingLongNames(String name) {
+        List<String> matching = new ArrayList<>();
+        for (String longName : longNames) {
+            if (longName.startsWith(name))
+                matching.add(longName);
+        }
+        return matching;
+    }
+
+    int groupCount() {
+        return groups.length;
+    }
+
+    OptionGroup group(int index) {
+        return groups[index];
+    }
+
+    int groupOf(int slot) {
+        return groupsBySlot[slot];
+    }
+
+    int[] requiredSlots() {
+        return requiredSlots;
+    }
+
+    int[] requiredGroups() {
+        return requiredGroups;
+    }
+
+    /**
+     * @return The slots of the options with fallbacks, in slot order.
+     */
+    int[] fallbackSlots() {
+        return fallbackSlots;
+    }
+
+    Fallbacks.Fallback fallback(int slot) {
+        return fallbacksBySlot[slot];
+    }
+
+    static String stripLeadingHyphens(String name) {
+        if (name.startsWith("--"))
+            return name.substring(2);
+        else if (name.startsWith("-"))
+            return name.substring(1);
+        else
+            return name;
+    }
+
+    private static int slotOrNoMatch(@Nullable Integer slot) {
+        return slot == null ? NO_MATCH : slot;
+    }
+
+}
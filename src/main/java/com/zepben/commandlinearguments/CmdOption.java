@@ -0,0 +1,74 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.zepben.commandlinearguments;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares a field of an abstract {@link CmdArgsBase} subclass as a command line option. The command-line-arguments-processor
+ * annotation processor generates a {@code Generated<ClassName>} subclass that registers the options and assigns the fields
+ * from the parsed values by slot, without reflection.
+ * <p>
+ * The kind of option is taken from the type of the field:
+ * <ul>
+ *     <li>{@code boolean} is a flag that is true when the option is present.</li>
+ *     <li>{@code String}, {@code int} and {@code LocalDate} take a single value.</li>
+ *     <li>{@code List<String>}, {@code int[]} and {@code long[]} take any number of values.</li>
+ *     <li>{@code Optional<String>}, {@code Optional<Integer>}, {@code Optional<LocalDate>} and {@code Optional<List<String>>}
+ *     are empty when the option is not present.</li>
+ * </ul>
+ * Fields that are not {@link #required()} keep their initial value when the option is not present. The fields must not be
+ * private, final or static.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.FIELD)
+public @interface CmdOption {
+
+    /**
+     * @return The short name of the option. At least one of {@code opt} and {@link #longOpt()} must be given.
+     */
+    String opt() default "";
+
+    /**
+     * @return The long name of the option.
+     */
+    String longOpt() default "";
+
+    /**
+     * @return The description shown in the help.
+     */
+    String desc() default "";
+
+    /**
+     * @return The name of the value shown in the help.
+     */
+    String argName() default "";
+
+    /**
+     * @return If parsing should fail when the option is not present. The option is registered as required, so it is shown
+     * as required in the help, and a command line without it is rejected even when it only requests help.
+     */
+    boolean required() default false;
+
+    /**
+     * @return The minimum value of an {@code int}, {@code int[]} or {@code Optional<Integer>} option. Giving it for any
+     * other type of field is a compile error.
+     */
+    int min() default Integer.MIN_VALUE;
+
+    /**
+     * @return The maximum value of an {@code int}, {@code int[]} or {@code Optional<Integer>} option. Giving it for any
+     * other type of field is a compile error.
+     */
+    int max() default Integer.MAX_VALUE;
+
+}
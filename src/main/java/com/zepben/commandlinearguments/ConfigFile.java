@@ -0,0 +1,275 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.zepben.commandlinearguments;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.ParseException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads option values from a config file, for the options that were not given on the command line.
+ * <p>
+ * Each line is a {@code key = value} or {@code key: value} pair, where the key is the short or long name of an option.
+ * Lines starting with {@code #} are comments. An option that takes more than one value can list them on the same line,
+ * separated by its value separator or by commas, or on the lines following an empty value, each starting with {@code - }:
+ * <pre>
+ * port = 8080
+ * tags: a, b, c
+ * ids:
+ *   - 1
+ *   - 2
+ * </pre>
+ * Keys and values are trimmed, and a value wrapped in single or double quotes is used as is, so a quoted item of a list can
+ * contain the separator. An option that takes no value is set if its value is {@code true} and left unset if it is
+ * {@code false}, ignoring case, and any other value is an error. The file must be UTF-8 encoded.
+ * <p>
+ * The file is read through a fixed size buffer and tokenized a line at a time, so only the longest line is held in memory
+ * and only the values of the options are copied out of it.
+ */
+@EverythingIsNonnullByDefault
+final class ConfigFile {
+
+    private static final int NOT_LISTING = -1;
+    private static final int SKIPPING = -2;
+    private static final byte[] COMMA = {','};
+    private static final byte[] DOUBLE_QUOTE = {'"'};
+    private static final byte[] SINGLE_QUOTE = {'\''};
+
+    private final Path path;
+    private final CmdArgsSchema schema;
+    private final OptionValues into;
+    private final ByteBuffer buffer;
+    private final boolean[] seen;
+
+    private byte[] bytes = new byte[256];
+    private int length = 0;
+    private int line = 0;
+    private int listSlot = NOT_LISTING;
+
+    private ConfigFile(Path path, CmdArgsSchema schema, OptionValues into, int bufferSize) {
+        this.path = path;
+        this.schema = schema;
+        this.into = into;
+        buffer = ByteBuffer.allocate(bufferSize);
+        seen = new boolean[schema.size()];
+    }
+
+    /**
+     * Reads the config files into the slots that don't have values yet, with later files taking precedence over earlier
+     * ones.
+     *
+     * @throws ParseException if a file can't be read, or has a line that isn't a known option.
+     */
+    static void read(List<Path> paths, CmdArgsSchema schema, OptionValues into) throws ParseException {
+        for (int i = paths.size() - 1; i >= 0; --i)
+            read(paths.get(i), schema, into, ArgumentFile.DEFAULT_BUFFER_SIZE);
+    }
+
+    static void read(Path path, CmdArgsSchema schema, OptionValues into, int bufferSize) throws ParseException {
+        new ConfigFile(path, schema, into, bufferSize).read();
+    }
+
+    private void read() throws ParseException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    byte b = buffer.get();
+                    if (b == '\n')
+                        readLine();
+                    else
+                        append(b);
+                }
+                buffer.clear();
+            }
+        } catch (IOException e) {
+            throw new ParseException(String.format("Unable to read config file '%s': %s", path, e.getMessage()));
+        }
+
+        if (length > 0)
+            readLine();
+    }
+
+    private void append(byte b) {
+        if (length == bytes.length)
+            bytes = Arrays.copyOf(bytes, bytes.length * 2);
+        bytes[length++] = b;
+    }
+
+    private void readLine() throws ParseException {
+        ++line;
+        int lineEnd = length;
+        length = 0;
+        if ((lineEnd > 0) && (bytes[lineEnd - 1] == '\r'))
+            --lineEnd;
+
+        int from = skipWhitespace(0, lineEnd);
+        if ((from == lineEnd) || (bytes[from] == '#'))
+            return;
+
+        if ((bytes[from] == '-') && ((from + 1 == lineEnd) || isWhitespace(bytes[from + 1]))) {
+            if (listSlot == NOT_LISTING)
+                throw error("List item without an option");
+            else if (listSlot != SKIPPING)
+                addValue(listSlot, from + 1, lineEnd);
+        } else {
+            listSlot = readOption(from, lineEnd);
+        }
+    }
+
+    /**
+     * @return The slot that any following list items belong to, {@link #SKIPPING} if they should be ignored, or
+     * {@link #NOT_LISTING} if there shouldn't be any.
+     */
+    private int readOption(int from, int to) throws ParseException {
+        int separator = from;
+        while ((separator < to) && (bytes[separator] != '=') && (bytes[separator] != ':'))
+            ++separator;
+        if (separator == to)
+            throw error("Expected 'key = value'");
+
+        String key = decode(from, trimEnd(from, separator));
+        int slot = schema.slotOf(key);
+        if (slot < 0)
+            throw error(String.format("Unrecognised option '%s'", key));
+        else if (seen[slot])
+            throw error(String.format("Option '%s' is set more than once", key));
+        seen[slot] = true;
+
+        Option option = schema.option(slot);
+        int valueStart = skipWhitespace(separator + 1, to);
+        boolean listFollows = (valueStart == to) && option.hasArgs();
+
+        // Flags are checked even when they are already set, so a mistake in the file doesn't depend on the command line.
+        boolean flagSet = !option.hasArg() && readFlag(key, valueStart, to);
+
+        if (into.has(slot) || Fallbacks.isGroupSelected(schema, into, slot))
+            return listFollows ? SKIPPING : NOT_LISTING;
+
+        if (!option.hasArg()) {
+            if (flagSet)
+                into.addFallback(slot, ValueSource.CONFIG_FILE);
+            return NOT_LISTING;
+        }
+
+        into.addFallback(slot, ValueSource.CONFIG_FILE);
+        if (listFollows)
+            return slot;
+
+        if (!option.hasArgs()) {
+            addValue(slot, valueStart, to);
+            return NOT_LISTING;
+        }
+
+        byte[] valueSeparator = option.hasValueSeparator() ? encode(option.getValueSeparator()) : COMMA;
+        int itemStart = valueStart;
+        for (int itemEnd = itemEnd(valueSeparator, itemStart, to); itemEnd < to; itemEnd = itemEnd(valueSeparator, itemStart, to)) {
+            addValue(slot, itemStart, itemEnd);
+            itemStart = itemEnd + valueSeparator.length;
+        }
+        addValue(slot, itemStart, to);
+
+        return NOT_LISTING;
+    }
+
+    private boolean readFlag(String key, int from, int to) throws ParseException {
+        String value = unquoted(from, to);
+        if ("true".equalsIgnoreCase(value))
+            return true;
+        else if ("false".equalsIgnoreCase(value))
+            return false;
+        else
+            throw error(String.format("Expected true or false for option '%s', not '%s'", key, value));
+    }
+
+    /**
+     * @return The end of the list item starting at {@code from}, which is the next value separator outside the quotes of
+     * a quoted item, or {@code to} if it is the last item.
+     */
+    private int itemEnd(byte[] valueSeparator, int from, int to) {
+        int itemStart = skipWhitespace(from, to);
+        if ((itemStart < to) && ((bytes[itemStart] == '"') || (bytes[itemStart] == '\''))) {
+            // An item without a closing quote isn't quoted, so it ends at the next separator as usual.
+            int closingQuote = indexOf(bytes[itemStart] == '"' ? DOUBLE_QUOTE : SINGLE_QUOTE, itemStart + 1, to);
+            if (closingQuote < to)
+                from = closingQuote + 1;
+        }
+        return indexOf(valueSeparator, from, to);
+    }
+
+    private void addValue(int slot, int from, int to) {
+        into.addValue(slot, unquoted(from, to));
+    }
+
+    private String unquoted(int from, int to) {
+        from = skipWhitespace(from, to);
+        to = trimEnd(from, to);
+
+        if (to - from >= 2) {
+            byte first = bytes[from];
+            if (((first == '"') || (first == '\'')) && (bytes[to - 1] == first))
+                return decode(from + 1, to - 1);
+        }
+        return decode(from, to);
+    }
+
+    // The delimiters are either ASCII or the complete UTF-8 encoding of a value separator, neither of which can match part
+    // of another multi-byte sequence, so the bytes can be split before they are decoded.
+    private String decode(int from, int to) {
+        return new String(bytes, from, to - from, StandardCharsets.UTF_8);
+    }
+
+    private int indexOf(byte[] delimiter, int from, int to) {
+        for (int i = from; i <= to - delimiter.length; ++i) {
+            int matched = 0;
+            while ((matched < delimiter.length) && (bytes[i + matched] == delimiter[matched]))
+                ++matched;
+            if (matched == delimiter.length)
+                return i;
+        }
+        return to;
+    }
+
+    private int skipWhitespace(int from, int to) {
+        while ((from < to) && isWhitespace(bytes[from]))
+            ++from;
+        return from;
+    }
+
+    private int trimEnd(int from, int to) {
+        while ((to > from) && isWhitespace(bytes[to - 1]))
+            --to;
+        return to;
+    }
+
+    private ParseException error(String message) {
+        return new ParseException(String.format("%s on line %d of config file '%s'.", message, line, path));
+    }
+
+    private static byte[] encode(char valueSeparator) {
+        if (Character.isSurrogate(valueSeparator))
+            throw new IllegalArgumentException(String.format("INTERNAL ERROR: The value separator U+%04X is not a character on its own.", (int) valueSeparator));
+
+        return String.valueOf(valueSeparator).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return (b == ' ') || (b == '\t') || (b == '\r') || (b == '\f');
+    }
+
+}
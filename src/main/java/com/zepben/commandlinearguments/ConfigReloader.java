@@ -0,0 +1,233 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.zepben.commandlinearguments;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.ParseException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Keeps a set of args up to date with the config files they were parsed from.
+ * <p>
+ * The directories of the files returned by {@link CmdArgsBase#configFiles} are watched, and whenever one of the files
+ * changes the command line is parsed again into a new instance of the args, which also runs
+ * {@link CmdArgsBase#extractCustomOptions()} to validate them. If the values of any options changed, the new instance
+ * atomically replaces the one returned by {@link #current()}, so readers never see a mix of old and new values, and the
+ * listener is told which options changed. If the args can't be parsed, or anything else goes wrong while reloading them,
+ * the previous args are kept and the files are still watched.
+ * <p>
+ * Changes that arrive close together, such as an editor writing a file in several steps, are reloaded once.
+ *
+ * @param <T> The type of the args.
+ */
+@EverythingIsNonnullByDefault
+@SuppressWarnings("WeakerAccess")
+public final class ConfigReloader<T extends CmdArgsBase> implements Closeable {
+
+    private static final long SETTLE_MILLIS = 50;
+
+    private final Supplier<T> factory;
+    private final String[] args;
+    private final ReloadListener<T> listener;
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> watchedDirectories = new HashMap<>();
+    private final Thread watcher;
+
+    private volatile T current;
+    // The args the current instance was parsed into, which are compared with each reload. The instance's own snapshot
+    // can't be used, as callers are free to reset or reparse the instance.
+    private ParsedArgs currentArgs;
+    private volatile Set<Path> watchedFiles = Collections.emptySet();
+
+    private ConfigReloader(Supplier<T> factory, String[] args, ReloadListener<T> listener, T initial, ParsedArgs initialArgs)
+        throws IOException {
+        this.factory = factory;
+        this.args = args.clone();
+        this.listener = listener;
+        current = initial;
+        currentArgs = initialArgs;
+
+        watchService = FileSystems.getDefault().newWatchService();
+        watchFiles(initial.configFilesRead());
+
+        watcher = new Thread(this::watch, "command-line-arguments-reloader");
+        watcher.setDaemon(true);
+    }
+
+    /**
+     * Parses the args and starts watching their config files.
+     *
+     * @param factory Creates a new instance of the args for each reload.
+     * @param args The command line args to parse each time.
+     * @param listener Notified when the args are reloaded.
+     * @return The reloader, which must be closed to stop watching the files.
+     * @throws ParseException if the args can't be parsed.
+     * @throws IOException if the config files can't be watched.
+     */
+    public static <T extends CmdArgsBase> ConfigReloader<T> start(Supplier<T> factory, String[] args, ReloadListener<T> listener)
+        throws ParseException, IOException {
+        T initial = factory.get();
+        ParsedArgs initialArgs = initial.parseSnapshot(args);
+
+        ConfigReloader<T> reloader = new ConfigReloader<>(factory, args, listener, initial, initialArgs);
+        reloader.watcher.start();
+        return reloader;
+    }
+
+    /**
+     * @return The latest args. Hold on to the returned instance to read several values that must be consistent with each
+     * other.
+     */
+    public T current() {
+        return current;
+    }
+
+    /**
+     * Reloads the args now, rather than waiting for a config file to change.
+     *
+     * @return The options whose values changed, in slot order, which is empty if the args were not replaced.
+     * @throws ParseException if the args can't be parsed, in which case the previous args are kept.
+     */
+    public synchronized List<Option> reload() throws ParseException {
+        T next = factory.get();
+        ParsedArgs parsed = next.parseSnapshot(args);
+
+        // The set of config files may depend on the values in the files, so keep watching whatever was just read.
+        watchFiles(next.configFilesRead());
+
+        T previous = current;
+        List<Option> changed = changedOptions(currentArgs, parsed);
+        if (changed.isEmpty())
+            return changed;
+
+        current = next;
+        currentArgs = parsed;
+        listener.onReloaded(previous, next, changed);
+        return changed;
+    }
+
+    /**
+     * Stops watching the config files. The current args can still be read.
+     */
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+        watcher.interrupt();
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = false;
+
+                // Drain any further events until the files settle, so one burst of writes causes one reload.
+                while (key != null) {
+                    changed |= isWatchedFileChanged(key);
+                    key.reset();
+                    key = watchService.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS);
+                }
+
+                if (changed)
+                    reloadQuietly();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ignored) {
+            // The reloader has been closed.
+        }
+    }
+
+    private boolean isWatchedFileChanged(WatchKey key) {
+        Path directory;
+        synchronized (watchedDirectories) {
+            directory = watchedDirectories.get(key);
+        }
+
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW)
+                changed = true;
+            else if ((directory != null) && watchedFiles.contains(directory.resolve((Path) event.context())))
+                changed = true;
+        }
+        return changed;
+    }
+
+    private void reloadQuietly() {
+        try {
+            reload();
+        } catch (VirtualMachineError e) {
+            // The JVM can't be relied on once it has run out of memory or stack, so these end the watching thread.
+            throw e;
+        } catch (ParseException | RuntimeException | Error e) {
+            // Anything else thrown while reloading, such as by the extraction or validation of the subclass, must not stop
+            // the watching thread, or the args would silently stop being reloaded.
+            listener.onReloadFailed(e);
+        }
+    }
+
+    private void watchFiles(List<Path> files) {
+        Set<Path> absoluteFiles = new HashSet<>();
+        Set<Path> directories = new HashSet<>();
+        for (Path file : files) {
+            Path absolute = file.toAbsolutePath().normalize();
+            absoluteFiles.add(absolute);
+            if (absolute.getParent() != null)
+                directories.add(absolute.getParent());
+        }
+
+        synchronized (watchedDirectories) {
+            Iterator<Map.Entry<WatchKey, Path>> iterator = watchedDirectories.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<WatchKey, Path> entry = iterator.next();
+                if (!directories.remove(entry.getValue())) {
+                    entry.getKey().cancel();
+                    iterator.remove();
+                }
+            }
+
+            for (Path directory : directories) {
+                try {
+                    WatchKey key = directory.register(
+                        watchService,
+                        StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY,
+                        StandardWatchEventKinds.ENTRY_DELETE
+                    );
+                    watchedDirectories.put(key, directory);
+                } catch (IOException | ClosedWatchServiceException ignored) {
+                    // A directory that can't be watched, e.g. because it was removed, leaves its files unwatched until the
+                    // next reload, which may be triggered by a file in another directory or by calling reload.
+                }
+            }
+        }
+
+        watchedFiles = absoluteFiles;
+    }
+
+    private static List<Option> changedOptions(ParsedArgs previous, ParsedArgs current) {
+        CmdArgsSchema schema = current.schema();
+        OptionValues previousValues = previous.values();
+        OptionValues currentValues = current.values();
+
+        List<Option> changed = new ArrayList<>();
+        for (int slot = 0; slot < schema.size(); ++slot) {
+            if (!currentValues.sameValues(slot, previousValues))
+                changed.add(schema.option(slot));
+        }
+        return changed;
+    }
+
+}
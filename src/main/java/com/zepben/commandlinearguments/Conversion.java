@@ -0,0 +1,31 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.zepben.commandlinearguments;
+
+/**
+ * The conversions performed by the typed getters. Each converted value is cached in {@link OptionValues} against the
+ * option slot and the conversion, so an option is only converted once per parse.
+ */
+enum Conversion {
+
+    INT,
+    LONG,
+    DOUBLE,
+    QUANTITY,
+    INT_LIST,
+    LONG_LIST,
+    DATE,
+    DATE_LIST,
+    DATE_TIME,
+    INSTANT,
+    DURATION;
+
+    static final int COUNT = values().length;
+
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.zepben.commandlinearguments;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import org.apache.commons.cli.ParseException;
+
+import javax.annotation.Nullable;
+import java.time.*;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Converts option values to dates, times and durations. The common ISO-8601 forms, such as {@code 2020-10-08},
+ * {@code 2020-10-08T13:45:30.5}, {@code 2020-10-08T13:45:30Z} and {@code PT1H30M}, are read in place. Anything else,
+ * including invalid values, is passed to the JDK parsers, so exactly the same values are accepted.
+ */
+@EverythingIsNonnullByDefault
+final class DateParser {
+
+    private static final int DATE_LENGTH = 10;
+    private static final int MINUTES_LENGTH = 16;
+    private static final int SECONDS_LENGTH = 19;
+
+    // Limits the digits of each duration component so the total can't overflow.
+    private static final int MAX_DURATION_DIGITS = 9;
+
+    static LocalDate parseDate(CharSequence value, String arg) throws ParseException {
+        LocalDate date = value.length() == DATE_LENGTH ? fastDate(value) : null;
+        if (date != null)
+            return date;
+
+        try {
+            return LocalDate.parse(value);
+        } catch (DateTimeParseException ignored) {
+            throw invalid(value, arg, "date");
+        }
+    }
+
+    static LocalDateTime parseDateTime(CharSequence value, String arg) throws ParseException {
+        LocalDateTime dateTime = fastDateTime(value, value.length(), false);
+        if (dateTime != null)
+            return dateTime;
+
+        try {
+            return LocalDateTime.parse(value);
+        } catch (DateTimeParseException ignored) {
+            throw invalid(value, arg, "date time");
+        }
+    }
+
+    static Instant parseInstant(CharSequence value, String arg) throws ParseException {
+        int length = value.length();
+        LocalDateTime dateTime = (length > 0) && (value.charAt(length - 1) == 'Z') ? fastDateTime(value, length - 1, true) : null;
+        if (dateTime != null)
+            return dateTime.toInstant(ZoneOffset.UTC);
+
+        try {
+            return Instant.parse(value);
+        } catch (DateTimeParseException ignored) {
+            throw invalid(value, arg, "instant");
+        }
+    }
+
+    static Duration parseDuration(CharSequence value, String arg) throws ParseException {
+        Duration duration = fastDuration(value);
+        if (duration != null)
+            return duration;
+
+        try {
+            return Duration.parse(value);
+        } catch (DateTimeParseException ignored) {
+            throw invalid(value, arg, "duration");
+        }
+    }
+
+    /**
+     * @return The date in a {@code yyyy-MM-dd} value, or null if it must be left to the JDK.
+     */
+    @Nullable
+    private static LocalDate fastDate(CharSequence value) {
+        if ((value.charAt(4) != '-') || (value.charAt(7) != '-'))
+            return null;
+
+        int year = digits(value, 0, 4);
+        int month = digits(value, 5, 7);
+        int day = digits(value, 8, 10);
+        if ((year < 0) || (month < 0) || (day < 0))
+            return null;
+
+        try {
+            return LocalDate.of(year, month, day);
+        } catch (DateTimeException ignored) {
+            return null;
+        }
+    }
+
+    /**
+     * @param end The end of the date time in the value.
+     * @param requireSeconds If the seconds must be given.
+     * @return The date time in a {@code yyyy-MM-ddTHH:mm[:ss[.fffffffff]]} value, or null if it must be left to the JDK.
+     */
+    @Nullable
+    private static LocalDateTime fastDateTime(CharSequence value, int end, boolean requireSeconds) {
+        if ((end < MINUTES_LENGTH) || (value.charAt(DATE_LENGTH) != 'T') || (value.charAt(13) != ':'))
+            return null;
+
+        int second = 0;
+        int nano = 0;
+        if (end > MINUTES_LENGTH) {
+            if ((end < SECONDS_LENGTH) || (value.charAt(MINUTES_LENGTH) != ':'))
+                return null;
+            second = digits(value, 17, SECONDS_LENGTH);
+
+            if (end > SECONDS_LENGTH) {
+                int fractionDigits = end - SECONDS_LENGTH - 1;
+                if ((value.charAt(SECONDS_LENGTH) != '.') || (fractionDigits < 1) || (fractionDigits > 9))
+                    return null;
+                nano = digits(value, SECONDS_LENGTH + 1, end);
+                for (int i = fractionDigits; i < 9; ++i)
+                    nano *= 10;
+            }
+        } else if (requireSeconds) {
+            return null;
+        }
+
+        LocalDate date = fastDate(value);
+        int hour = digits(value, 11, 13);
+        int minute = digits(value, 14, MINUTES_LENGTH);
+        if ((date == null) || (hour < 0) || (minute < 0) || (second < 0) || (nano < 0))
+            return null;
+
+        try {
+            return LocalDateTime.of(date, LocalTime.of(hour, minute, second, nano));
+        } catch (DateTimeException ignored) {
+            return null;
+        }
+    }
+
+    /**
+     * @return The duration in a {@code P[nD][T[nH][nM][n[.fffffffff]S]]} value, or null if it must be left to the JDK.
+     */
+    @Nullable
+    private static Duration fastDuration(CharSequence value) {
+        int length = value.length();
+        int index = 0;
+        boolean negative = (length > 0) && (value.charAt(0) == '-');
+        if (negative)
+            ++index;
+        if ((index >= length) || (value.charAt(index++) != 'P') || (index == length))
+            return null;
+
+        long seconds = 0;
+        int nano = 0;
+        boolean time = false;
+        boolean anyComponent = false;
+        // The units must appear in this order, each at most once.
+        String units = "DHMS";
+        int nextUnit = 0;
+        while (index < length) {
+            if (value.charAt(index) == 'T') {
+                if (time || (++index == length))
+                    return null;
+                time = true;
+                nextUnit = Math.max(nextUnit, 1);
+            }
+
+            int start = index;
+            long amount = 0;
+            for (; (index < length) && isDigit(value.charAt(index)); ++index)
+                amount = amount * 10 + (value.charAt(index) - '0');
+            if ((index == start) || (index - start > MAX_DURATION_DIGITS) || (index == length))
+                return null;
+
+            int fraction = -1;
+            if ((value.charAt(index) == '.') && time) {
+                int fractionStart = ++index;
+                while ((index < length) && isDigit(value.charAt(index)))
+                    ++index;
+                if ((index == fractionStart) || (index - fractionStart > 9) || (index == length) || (value.charAt(index) != 'S'))
+                    return null;
+                fraction = digits(value, fractionStart, index);
+                for (int i = index - fractionStart; i < 9; ++i)
+                    fraction *= 10;
+            }
+
+            int unit = units.indexOf(value.charAt(index++), nextUnit);
+            if ((unit < 0) || ((unit == 0) == time))
+                return null;
+            nextUnit = unit + 1;
+            anyComponent = true;
+
+            if (unit == 0)
+                seconds += amount * 86400;
+            else if (unit == 1)
+                seconds += amount * 3600;
+            else if (unit == 2)
+                seconds += amount * 60;
+            else
+                seconds += amount;
+            if (fraction >= 0)
+                nano = fraction;
+        }
+
+        if (!anyComponent)
+            return null;
+
+        Duration duration = Duration.ofSeconds(seconds, nano);
+        return negative ? duration.negated() : duration;
+    }
+
+    /**
+     * @return The value of the ASCII digits between the indexes, or -1 if there are any other characters.
+     */
+    private static int digits(CharSequence value, int start, int end) {
+        int result = 0;
+        for (int i = start; i < end; ++i) {
+            char c = value.charAt(i);
+            if (!isDigit(c))
+                return -1;
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+
+    private static boolean isDigit(char c) {
+        return (c >= '0') && (c <= '9');
+    }
+
+    private static OptionValueException invalid(CharSequence value, String arg, String type) {
+        String text = value.toString();
+        return new OptionValueException(arg, text, OptionValueException.Reason.INVALID, "Invalid %s '%s' for argument %s.", type, text, arg);
+    }
+
+    private DateParser() {
+    }
+
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.zepben.commandlinearguments;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import org.apache.commons.cli.Option;
+
+import javax.annotation.Nullable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The values used for options that are not given on the command line or in a config file. Each option can fall back to an
+ * environment variable, then a system property, then a default value, with the first of them that is set being used.
+ * <p>
+ * The fallbacks are compiled into the {@link CmdArgsSchema} along with the options, and are resolved once per parse into
+ * the same slots as the command line values. The getters can't tell the difference between them, other than through
+ * {@link ParsedArgs#sourceOf}.
+ * <p>
+ * An option that takes more than one value splits an environment variable or system property on its value separator, or
+ * on commas if it doesn't have one. An option that takes no value is set if the variable or property is {@code true},
+ * ignoring case.
+ */
+@EverythingIsNonnullByDefault
+@SuppressWarnings("WeakerAccess")
+public final class Fallbacks {
+
+    private final Map<String, Fallback> fallbacks = new LinkedHashMap<>();
+
+    /**
+     * @param name The short or long name of the option.
+     * @return The fallbacks of the option, which are added to if the option has been declared before.
+     */
+    public Fallback option(String name) {
+        return fallbacks.computeIfAbsent(CmdArgsSchema.stripLeadingHyphens(name), Fallback::new);
+    }
+
+    Map<String, Fallback> byName() {
+        return fallbacks;
+    }
+
+    /**
+     * Fills the slots of each option that doesn't have a value yet from its fallbacks. An option in a group is skipped if
+     * another option in the group has already been given, as they can't be used together.
+     *
+     * @return true if any environment variables or system properties were read, whether or not they were set.
+     */
+    static boolean resolve(CmdArgsSchema schema, OptionValues values, Map<String, String> environment) {
+        boolean readExternal = false;
+        for (int slot : schema.fallbackSlots()) {
+            if (values.has(slot) || isGroupSelected(schema, values, slot))
+                continue;
+
+            Fallback fallback = schema.fallback(slot);
+            Option option = schema.option(slot);
+            readExternal |= (fallback.environmentVariable != null) || (fallback.systemProperty != null);
+
+            String value = fallback.environmentVariable == null ? null : environment.get(fallback.environmentVariable);
+            if ((value != null) && !value.isEmpty()) {
+                addValue(option, values, slot, ValueSource.ENVIRONMENT, value);
+                continue;
+            }
+
+            value = fallback.systemProperty == null ? null : System.getProperty(fallback.systemProperty);
+            if ((value != null) && !value.isEmpty()) {
+                addValue(option, values, slot, ValueSource.SYSTEM_PROPERTY, value);
+                continue;
+            }
+
+            if (fallback.defaultValues != null) {
+                values.addFallback(slot, ValueSource.DEFAULT);
+                if (option.hasArg())
+                    for (String defaultValue : fallback.defaultValues)
+                        values.addValue(slot, defaultValue);
+            }
+        }
+        return readExternal;
+    }
+
+    private static void addValue(Option option, OptionValues values, int slot, ValueSource source, String value) {
+        if (!option.hasArg()) {
+            if (Boolean.parseBoolean(value))
+                values.addFallback(slot, source);
+            return;
+        }
+
+        values.addFallback(slot, source);
+        if (!option.hasArgs()) {
+            values.addValue(slot, value);
+            return;
+        }
+
+        char separator = option.hasValueSeparator() ? option.getValueSeparator() : ',';
+        int start = 0;
+        for (int end = value.indexOf(separator); end >= 0; end = value.indexOf(separator, start)) {
+            values.addValue(slot, value.substring(start, end));
+            start = end + 1;
+        }
+        values.addValue(slot, value.substring(start));
+    }
+
+    static boolean isGroupSelected(CmdArgsSchema schema, OptionValues values, int slot) {
+        int group = schema.groupOf(slot);
+        if (group == CmdArgsSchema.NO_MATCH)
+            return false;
+
+        for (int other = 0; other < values.slots(); ++other) {
+            if ((schema.groupOf(other) == group) && values.has(other))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * The fallbacks of one option. Once the schema has been compiled they must not be modified.
+     */
+    public static final class Fallback {
+
+        private final String name;
+        @Nullable private String environmentVariable = null;
+        @Nullable private String systemProperty = null;
+        @Nullable private String[] defaultValues = null;
+
+        private Fallback(String name) {
+            this.name = name;
+        }
+
+        /**
+         * @param name The environment variable to use if the option is not on the command line.
+         * @return This fallback.
+         */
+        public Fallback environmentVariable(String name) {
+            environmentVariable = name;
+            return this;
+        }
+
+        /**
+         * @param name The system property to use if the option is not on the command line or in the environment.
+         * @return This fallback.
+         */
+        public Fallback systemProperty(String name) {
+            systemProperty = name;
+            return this;
+        }
+
+        /**
+         * @param values The values to use if the option is not set anywhere else. Pass no values to set an option that
+         *               doesn't take any.
+         * @return This fallback.
+         */
+        public Fallback defaultValue(String... values) {
+            defaultValues = values.clone();
+            return this;
+        }
+
+        String name() {
+            return name;
+        }
+
+    }
+
+}
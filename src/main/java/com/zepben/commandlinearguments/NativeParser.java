@@ -0,0 +1,411 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.zepben.commandlinearguments;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import org.apache.commons.cli.*;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.zepben.commandlinearguments.CmdArgsSchema.AMBIGUOUS;
+import static com.zepben.commandlinearguments.CmdArgsSchema.NO_MATCH;
+import static com.zepben.commandlinearguments.CmdArgsSchema.stripLeadingHyphens;
+
+/**
+ * The {@link ParserEngine#NATIVE} parser. This follows the token handling of the commons-cli {@link DefaultParser} so the
+ * two engines accept the same command lines, but resolves options by slot and records the values into {@link OptionValues}.
+ * <p>
+ * An instance keeps its working state between parses so it can be reused without allocating, which means it is not
+ * thread safe.
+ */
+@EverythingIsNonnullByDefault
+final class NativeParser {
+
+    private static final int NONE = -1;
+
+    private final CmdArgsSchema schema;
+    private final int[] selectedInGroups;
+
+    private OptionValues into = new OptionValues();
+    private boolean skipParsing = false;
+    private int currentSlot = NONE;
+    private int currentCount = 0;
+
+    NativeParser(CmdArgsSchema schema) {
+        this.schema = schema;
+        selectedInGroups = new int[schema.groupCount()];
+    }
+
+    CmdArgsSchema schema() {
+        return schema;
+    }
+
+    /**
+     * @param args The command line args to be parsed.
+     * @param into Where to record the parsed values. It will be reset before parsing.
+     * @throws ParseException if the args cannot be parsed.
+     */
+    void parse(String[] args, OptionValues into) throws ParseException {
+        parse(args, into, false);
+    }
+
+    /**
+     * @param args The command line args to be parsed.
+     * @param into Where to record the parsed values. It will be reset before parsing.
+     * @param expandArgumentFiles If {@code @path} args should be replaced by the tokens in the file. The tokens are parsed
+     *                            as they are read, rather than being collected first.
+     * @throws ParseException if the args cannot be parsed.
+     */
+    void parse(String[] args, OptionValues into, boolean expandArgumentFiles) throws ParseException {
+        parse(args, into, expandArgumentFiles, Paths.get(""));
+    }
+
+    /**
+     * As per {@link #parse(String[], OptionValues, boolean)}, with relative argument file paths resolved against the working
+     * directory.
+     */
+    void parse(String[] args, OptionValues into, boolean expandArgumentFiles, Path workingDirectory) throws ParseException {
+        this.into = into;
+        into.reset(schema.size());
+        Arrays.fill(selectedInGroups, NONE);
+        skipParsing = false;
+        currentSlot = NONE;
+
+        for (String arg : args) {
+            if (!expandArgumentFiles)
+                handleToken(arg);
+            else if (ArgumentFile.isArgumentFile(arg))
+                ArgumentFile.read(arg, workingDirectory, this::handleToken);
+            else if (ArgumentFile.isEscaped(arg))
+                handleToken(arg.substring(1));
+            else
+                handleToken(arg);
+        }
+
+        checkRequiredArgs();
+        checkRequiredOptions();
+    }
+
+    private void handleToken(String token) throws ParseException {
+        if (skipParsing)
+            into.addArg(token);
+        else if ("--".equals(token))
+            skipParsing = true;
+        else if ((currentSlot != NONE) && acceptsArg() && isArgument(token))
+            addValueForProcessing(stripLeadingAndTrailingQuotes(token));
+        else if (token.startsWith("--"))
+            handleLongOption(token);
+        else if (token.startsWith("-") && !"-".equals(token))
+            handleShortAndLongOption(token);
+        else
+            handleUnknownToken(token);
+
+        if ((currentSlot != NONE) && !acceptsArg())
+            currentSlot = NONE;
+    }
+
+    private boolean isArgument(String token) {
+        return !isOption(token) || isNegativeNumber(token);
+    }
+
+    private boolean isNegativeNumber(String token) {
+        // Only hand off to parseDouble when it has a chance of succeeding, so option tokens don't throw.
+        if ((token.length() < 2) || (token.charAt(0) != '-'))
+            return false;
+
+        char first = token.charAt(1);
+        if (!Character.isDigit(first) && (first != '.'))
+            return false;
+
+        try {
+            Double.parseDouble(token);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private boolean isOption(String token) {
+        if (!token.startsWith("-") || (token.length() == 1))
+            return false;
+
+        return isShortOption(token) || isLongOption(token);
+    }
+
+    private boolean isShortOption(String token) {
+        return schema.shortSlot(token.charAt(1)) != NO_MATCH;
+    }
+
+    private boolean isLongOption(String token) {
+        if (schema.longTokenSlot(token) != NO_MATCH)
+            return true;
+
+        int pos = token.indexOf('=');
+        String t = pos == -1 ? token : token.substring(0, pos);
+
+        if (schema.matchLong(stripLeadingHyphens(t)) != NO_MATCH)
+            return true;
+        else
+            return !token.startsWith("--") && (longPrefix(token) != NO_MATCH);
+    }
+
+    private void handleUnknownToken(String token) throws ParseException {
+        if (token.startsWith("-") && (token.length() > 1))
+            throw new UnrecognizedOptionException("Unrecognized option: " + token, token);
+
+        into.addArg(token);
+    }
+
+    private void handleLongOption(String token) throws ParseException {
+        if (token.indexOf('=') == -1)
+            handleLongOptionWithoutEqual(token);
+        else
+            handleLongOptionWithEqual(token);
+    }
+
+    private void handleLongOptionWithoutEqual(String token) throws ParseException {
+        int slot = schema.longTokenSlot(token);
+        if (slot == NO_MATCH)
+            slot = matchLong(token, token);
+
+        if (slot == NO_MATCH)
+            handleUnknownToken(token);
+        else
+            handleOption(slot);
+    }
+
+    private void handleLongOptionWithEqual(String token) throws ParseException {
+        int pos = token.indexOf('=');
+        String opt = token.substring(0, pos);
+
+        int slot = matchLong(opt, opt);
+        if ((slot != NO_MATCH) && acceptsArg(schema.option(slot)))
+            handleOptionWithValue(slot, token.substring(pos + 1));
+        else
+            handleUnknownToken(token);
+    }
+
+    private void handleShortAndLongOption(String token) throws ParseException {
+        // Resolve the common -S and -SS forms without stripping the hyphen.
+        int slot = token.length() == 2 ? schema.shortSlot(token.charAt(1)) : schema.shortTokenSlot(token);
+        if (slot != NO_MATCH) {
+            handleOption(slot);
+            return;
+        } else if (token.length() == 2) {
+            handleUnknownToken(token);
+            return;
+        }
+
+        String t = token.substring(1);
+        int pos = t.indexOf('=');
+
+        if (pos == -1) {
+            if (schema.matchLong(t) != NO_MATCH) {
+                // -L or -l
+                handleLongOptionWithoutEqual(token);
+                return;
+            }
+
+            // -Xmx512m
+            int prefix = longPrefix(t);
+            if ((prefix != NO_MATCH) && acceptsArg(schema.option(prefix)))
+                handleOptionWithValue(prefix, t.substring(schema.option(prefix).getLongOpt().length()));
+            else if (isJavaProperty(t))
+                handleOptionWithValue(schema.slotOf(t.substring(0, 1)), t.substring(1));
+            else
+                handleConcatenatedOptions(token);
+        } else {
+            String opt = t.substring(0, pos);
+            String value = t.substring(pos + 1);
+
+            if (opt.length() == 1) {
+                // -S=V
+                slot = schema.slotOf(opt);
+                if ((slot != NO_MATCH) && acceptsArg(schema.option(slot)))
+                    handleOptionWithValue(slot, value);
+                else
+                    handleUnknownToken(token);
+            } else if (isJavaProperty(opt)) {
+                // -SV1=V2
+                int property = schema.slotOf(opt.substring(0, 1));
+                handleOption(property);
+                currentSlot = property;
+                addValueForProcessing(opt.substring(1));
+                addValueForProcessing(value);
+                currentSlot = NONE;
+            } else {
+                // -L=V or -l=V
+                handleLongOptionWithEqual(token);
+            }
+        }
+    }
+
+    private int matchLong(String token, String reportAs) throws AmbiguousOptionException {
+        String name = stripLeadingHyphens(token);
+        int slot = schema.matchLong(name);
+        if (slot == AMBIGUOUS)
+            throw new AmbiguousOptionException(reportAs, schema.matchingLongNames(name));
+        return slot;
+    }
+
+    private int longPrefix(String token) {
+        String t = stripLeadingHyphens(token);
+        for (int i = t.length() - 2; i > 1; --i) {
+            int slot = schema.longSlot(t.substring(0, i));
+            if (slot != NO_MATCH)
+                return slot;
+        }
+        return NO_MATCH;
+    }
+
+    private boolean isJavaProperty(String token) {
+        int slot = schema.slotOf(token.substring(0, 1));
+        if (slot == NO_MATCH)
+            return false;
+
+        int args = schema.option(slot).getArgs();
+        return (args >= 2) || (args == Option.UNLIMITED_VALUES);
+    }
+
+    private void handleConcatenatedOptions(String token) throws ParseException {
+        for (int i = 1; i < token.length(); ++i) {
+            int slot = schema.slotOf(String.valueOf(token.charAt(i)));
+            if (slot == NO_MATCH) {
+                handleUnknownToken(token);
+                break;
+            }
+
+            handleOption(slot);
+            if ((currentSlot != NONE) && (token.length() != i + 1)) {
+                addValueForProcessing(token.substring(i + 1));
+                break;
+            }
+        }
+    }
+
+    private void handleOption(int slot) throws ParseException {
+        checkRequiredArgs();
+
+        Option option = schema.option(slot);
+        updateGroups(slot, option);
+        into.addOccurrence(slot);
+
+        currentSlot = option.hasArg() ? slot : NONE;
+        currentCount = 0;
+    }
+
+    private void handleOptionWithValue(int slot, String value) throws ParseException {
+        handleOption(slot);
+        currentSlot = slot;
+        addValueForProcessing(value);
+        currentSlot = NONE;
+    }
+
+    private void updateGroups(int slot, Option option) throws AlreadySelectedException {
+        int group = schema.groupOf(slot);
+        if (group == NONE)
+            return;
+
+        int selected = selectedInGroups[group];
+        if ((selected != NONE) && (selected != slot)) {
+            throw new AlreadySelectedException(
+                "The option '" + keyOf(option) + "' was specified but an option from this group has already been selected: '" + keyOf(schema.option(selected)) + "'"
+            );
+        }
+
+        selectedInGroups[group] = slot;
+    }
+
+    private void addValueForProcessing(String value) {
+        Option option = schema.option(currentSlot);
+
+        if (option.hasValueSeparator()) {
+            char separator = option.getValueSeparator();
+            int index = value.indexOf(separator);
+            while (index != -1) {
+                if (currentCount == option.getArgs() - 1)
+                    break;
+
+                addValue(value.substring(0, index));
+                value = value.substring(index + 1);
+                index = value.indexOf(separator);
+            }
+        }
+
+        addValue(value);
+    }
+
+    private void addValue(String value) {
+        into.addValue(currentSlot, value);
+        ++currentCount;
+    }
+
+    private boolean acceptsArg() {
+        Option option = schema.option(currentSlot);
+        return acceptsArg(option) && ((option.getArgs() <= 0) || (currentCount < option.getArgs()));
+    }
+
+    private boolean acceptsArg(Option option) {
+        return option.hasArg() || option.hasArgs() || option.hasOptionalArg();
+    }
+
+    private boolean requiresArg() {
+        Option option = schema.option(currentSlot);
+        if (option.hasOptionalArg())
+            return false;
+        else if (option.getArgs() == Option.UNLIMITED_VALUES)
+            return currentCount == 0;
+        else
+            return acceptsArg();
+    }
+
+    private void checkRequiredArgs() throws MissingArgumentException {
+        if ((currentSlot != NONE) && requiresArg())
+            throw new MissingArgumentException(schema.option(currentSlot));
+    }
+
+    private void checkRequiredOptions() throws MissingOptionException {
+        List<Object> missing = null;
+
+        for (int slot : schema.requiredSlots()) {
+            if (!into.has(slot)) {
+                if (missing == null)
+                    missing = new ArrayList<>();
+                missing.add(keyOf(schema.option(slot)));
+            }
+        }
+
+        for (int group : schema.requiredGroups()) {
+            if (selectedInGroups[group] == NONE) {
+                if (missing == null)
+                    missing = new ArrayList<>();
+                missing.add(schema.group(group));
+            }
+        }
+
+        if (missing != null)
+            throw new MissingOptionException(missing);
+    }
+
+    private static String keyOf(Option option) {
+        return option.getOpt() != null ? option.getOpt() : option.getLongOpt();
+    }
+
+    private static String stripLeadingAndTrailingQuotes(String str) {
+        int length = str.length();
+        if ((length > 1) && str.startsWith("\"") && str.endsWith("\"") && (str.indexOf('"', 1) == length - 1))
+            return str.substring(1, length - 1);
+        return str;
+    }
+
+}
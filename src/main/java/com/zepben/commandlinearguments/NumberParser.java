@@ -0,0 +1,264 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.zepben.commandlinearguments;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import org.apache.commons.cli.ParseException;
+
+/**
+ * Converts option values to numbers by reading the characters in place. Nothing is allocated unless the value is invalid,
+ * in which case the {@link OptionValueException} is the only allocation and its message is not formatted until it is read.
+ * <p>
+ * Integers accept the same values as {@link Long#parseLong}. Quantities also accept underscores between digits, a
+ * {@code 0x} hex prefix, and an SI ({@code k}, {@code M}, {@code G}, {@code T}, {@code P}, {@code E}) or binary
+ * ({@code Ki}, {@code Mi}, {@code Gi}, {@code Ti}, {@code Pi}, {@code Ei}) suffix, optionally followed by {@code B}, such as
+ * {@code 10k} or {@code 512MiB}. Hex quantities can't have a suffix, as {@code B} and {@code E} are hex digits.
+ */
+@EverythingIsNonnullByDefault
+final class NumberParser {
+
+    // The powers of ten that are exact doubles, and the bound below which every mantissa is an exact double.
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    private static final String SI_PREFIXES = "kMGTPE";
+
+    static int parseInt(CharSequence value, String arg) throws ParseException {
+        return (int) parseDecimal(value, arg, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    static long parseLong(CharSequence value, String arg) throws ParseException {
+        return parseDecimal(value, arg, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    static long parseQuantity(CharSequence value, String arg) throws ParseException {
+        int length = value.length();
+        int index = 0;
+        boolean negative = false;
+        if ((length > 0) && ((value.charAt(0) == '-') || (value.charAt(0) == '+'))) {
+            negative = value.charAt(0) == '-';
+            ++index;
+        }
+
+        int radix = 10;
+        if ((index + 2 < length) && (value.charAt(index) == '0') && ((value.charAt(index + 1) == 'x') || (value.charAt(index + 1) == 'X'))) {
+            radix = 16;
+            index += 2;
+        }
+
+        // Accumulated as a negative number so Long.MIN_VALUE can be represented.
+        long result = 0;
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        int digits = 0;
+        boolean afterDigit = false;
+        for (; index < length; ++index) {
+            char c = value.charAt(index);
+            if (c == '_') {
+                if (!afterDigit)
+                    throw invalid(value, arg, "quantity");
+                afterDigit = false;
+                continue;
+            }
+
+            int digit = digitOf(c, radix);
+            if (digit < 0)
+                break;
+
+            if ((result < limit / radix) || (result * radix < limit + digit))
+                throw tooLarge(value, arg);
+            result = result * radix - digit;
+            afterDigit = true;
+            ++digits;
+        }
+
+        if ((digits == 0) || !afterDigit)
+            throw invalid(value, arg, "quantity");
+
+        long multiplier = 1;
+        if (index < length) {
+            if (radix == 16)
+                throw invalid(value, arg, "quantity");
+
+            char c = value.charAt(index);
+            int power = SI_PREFIXES.indexOf(c == 'K' ? 'k' : c) + 1;
+            if (power > 0) {
+                ++index;
+                boolean binary = (index < length) && (value.charAt(index) == 'i');
+                if (binary)
+                    ++index;
+                for (int i = 0; i < power; ++i)
+                    multiplier *= binary ? 1024 : 1000;
+            }
+
+            if ((index < length) && (value.charAt(index) == 'B'))
+                ++index;
+            if (index < length)
+                throw invalid(value, arg, "quantity");
+        }
+
+        if (result < limit / multiplier)
+            throw tooLarge(value, arg);
+        return negative ? result * multiplier : -result * multiplier;
+    }
+
+    static double parseDouble(CharSequence value, String arg) throws ParseException {
+        double parsed = parseSimpleDouble(value);
+        if (!Double.isNaN(parsed))
+            return parsed;
+
+        // Anything else, such as more digits than fit in a double or the special values, is left to the JDK once any
+        // underscores have been removed.
+        if (!hasValidUnderscores(value))
+            throw invalid(value, arg, "number");
+        try {
+            return Double.parseDouble(withoutUnderscores(value));
+        } catch (NumberFormatException ignored) {
+            throw invalid(value, arg, "number");
+        }
+    }
+
+    private static long parseDecimal(CharSequence value, String arg, long minimumValue, long maximumValue) throws ParseException {
+        int length = value.length();
+        int index = 0;
+        boolean negative = false;
+        if ((length > 0) && ((value.charAt(0) == '-') || (value.charAt(0) == '+'))) {
+            negative = value.charAt(0) == '-';
+            ++index;
+        }
+        if (index == length)
+            throw invalid(value, arg, "integer");
+
+        // Accumulated as a negative number so the minimum value can be represented.
+        long limit = negative ? minimumValue : -maximumValue;
+        long result = 0;
+        for (; index < length; ++index) {
+            int digit = Character.digit(value.charAt(index), 10);
+            if ((digit < 0) || (result < limit / 10) || (result * 10 < limit + digit))
+                throw invalid(value, arg, "integer");
+            result = result * 10 - digit;
+        }
+        return negative ? result : -result;
+    }
+
+    /**
+     * Parses decimals with at most 15 significant digits and a small exponent, which are exactly the product or quotient of
+     * two exact doubles, so the result is correctly rounded.
+     *
+     * @return The value, or NaN if it needs the full JDK parser.
+     */
+    private static double parseSimpleDouble(CharSequence value) {
+        int length = value.length();
+        int index = 0;
+        boolean negative = false;
+        if ((length > 0) && ((value.charAt(0) == '-') || (value.charAt(0) == '+'))) {
+            negative = value.charAt(0) == '-';
+            ++index;
+        }
+
+        long mantissa = 0;
+        int exponent = 0;
+        int digits = 0;
+        boolean anyDigit = false;
+        boolean afterDigit = false;
+        boolean fraction = false;
+        for (; index < length; ++index) {
+            char c = value.charAt(index);
+            if ((c >= '0') && (c <= '9')) {
+                mantissa = mantissa * 10 + (c - '0');
+                if (fraction)
+                    --exponent;
+                if ((mantissa > 0) && (++digits > 15))
+                    return Double.NaN;
+                anyDigit = true;
+                afterDigit = true;
+            } else if ((c == '_') && afterDigit && (index + 1 < length) && isDigit(value.charAt(index + 1))) {
+                afterDigit = false;
+            } else if ((c == '.') && !fraction) {
+                fraction = true;
+                afterDigit = false;
+            } else {
+                break;
+            }
+        }
+
+        if (!anyDigit)
+            return Double.NaN;
+
+        if ((index < length) && ((value.charAt(index) == 'e') || (value.charAt(index) == 'E'))) {
+            ++index;
+            boolean negativeExponent = false;
+            if ((index < length) && ((value.charAt(index) == '-') || (value.charAt(index) == '+'))) {
+                negativeExponent = value.charAt(index) == '-';
+                ++index;
+            }
+            int start = index;
+            int explicit = 0;
+            for (; (index < length) && isDigit(value.charAt(index)) && (explicit < 1000); ++index)
+                explicit = explicit * 10 + (value.charAt(index) - '0');
+            if (index == start)
+                return Double.NaN;
+            exponent += negativeExponent ? -explicit : explicit;
+        }
+
+        if ((index < length) || (mantissa >= MAX_EXACT_MANTISSA) || (exponent < -22) || (exponent > 22))
+            return Double.NaN;
+
+        double result = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+        return negative ? -result : result;
+    }
+
+    private static boolean hasValidUnderscores(CharSequence value) {
+        for (int i = 0; i < value.length(); ++i) {
+            if ((value.charAt(i) == '_') && ((i == 0) || (i + 1 == value.length()) || !isDigit(value.charAt(i - 1)) || !isDigit(value.charAt(i + 1))))
+                return false;
+        }
+        return true;
+    }
+
+    private static String withoutUnderscores(CharSequence value) {
+        StringBuilder builder = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); ++i) {
+            if (value.charAt(i) != '_')
+                builder.append(value.charAt(i));
+        }
+        return builder.toString();
+    }
+
+    private static boolean isDigit(char c) {
+        return (c >= '0') && (c <= '9');
+    }
+
+    private static int digitOf(char c, int radix) {
+        if ((c >= '0') && (c <= '9'))
+            return c - '0';
+        else if ((radix == 16) && (c >= 'a') && (c <= 'f'))
+            return c - 'a' + 10;
+        else if ((radix == 16) && (c >= 'A') && (c <= 'F'))
+            return c - 'A' + 10;
+        else
+            return -1;
+    }
+
+    private static OptionValueException invalid(CharSequence value, String arg, String type) {
+        String text = value.toString();
+        return new OptionValueException(arg, text, OptionValueException.Reason.INVALID, "Invalid %s '%s' for argument %s.", type, text, arg);
+    }
+
+    private static OptionValueException tooLarge(CharSequence value, String arg) {
+        String text = value.toString();
+        return new OptionValueException(arg, text, OptionValueException.Reason.OUT_OF_RANGE, "Quantity '%s' for argument %s is too large.", text, arg);
+    }
+
+    private NumberParser() {
+    }
+
+}
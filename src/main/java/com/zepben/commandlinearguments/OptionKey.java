@@ -0,0 +1,301 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.zepben.commandlinearguments;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+
+import javax.annotation.Nullable;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A typed handle to an option, used in place of its name with the getters of {@link CmdArgsBase} and {@link ParsedArgs}.
+ * <p>
+ * The option is resolved to its slot the first time the key is used with a schema, and its slot in each schema is
+ * remembered, so the getters index straight into the parsed values without any string handling. As the schema of a class
+ * is shared by all of its instances, keys are best declared as static constants alongside the options:
+ * <pre>{@code
+ * private static final OptionKey<Integer> PORT = OptionKey.intKey(Option.builder("p").longOpt("port").hasArg().build());
+ *
+ * protected void addCustomOptions(Options options) {
+ *     PORT.addTo(options);
+ * }
+ *
+ * protected void extractCustomOptions() throws ParseException {
+ *     port = getRequiredArg(PORT);
+ * }
+ * }</pre>
+ *
+ * @param <T> The type of the value of the option.
+ */
+@EverythingIsNonnullByDefault
+@SuppressWarnings("WeakerAccess")
+public final class OptionKey<T> {
+
+    @FunctionalInterface
+    private interface Getter<T> {
+
+        T get(ParsedArgs args, int slot, String name) throws ParseException;
+
+    }
+
+    private static final class Binding {
+
+        private final CmdArgsSchema schema;
+        private final int slot;
+
+        private Binding(CmdArgsSchema schema, int slot) {
+            this.schema = schema;
+            this.slot = slot;
+        }
+
+    }
+
+    private static final Binding[] NO_BINDINGS = new Binding[0];
+    private static final int MAXIMUM_BINDINGS = 8;
+
+    private final String name;
+    @Nullable private final Option option;
+    private final Getter<T> getter;
+    private final T placeholder;
+    // A key is usually used with one schema, or a few when it is shared by the schemas of several commands, so the slot in
+    // each schema is kept in a small array. The array is replaced rather than modified, so it can be read without locking.
+    private volatile Binding[] bindings = NO_BINDINGS;
+
+    private OptionKey(String name, @Nullable Option option, Getter<T> getter, T placeholder) {
+        this.name = name;
+        this.option = option;
+        this.getter = getter;
+        this.placeholder = placeholder;
+    }
+
+    /**
+     * @param name The short or long name of an option with a value.
+     */
+    public static OptionKey<String> stringKey(String name) {
+        return new OptionKey<>(name, null, ParsedArgs::requiredString, "");
+    }
+
+    public static OptionKey<String> stringKey(Option option) {
+        return new OptionKey<>(keyOf(option), option, ParsedArgs::requiredString, "");
+    }
+
+    /**
+     * @param name The short or long name of an option with any number of values.
+     */
+    public static OptionKey<List<String>> stringListKey(String name) {
+        return new OptionKey<>(name, null, ParsedArgs::requiredStringList, Collections.emptyList());
+    }
+
+    public static OptionKey<List<String>> stringListKey(Option option) {
+        return new OptionKey<>(keyOf(option), option, ParsedArgs::requiredStringList, Collections.emptyList());
+    }
+
+    /**
+     * @param name The short or long name of an option with a value.
+     */
+    public static OptionKey<Integer> intKey(String name) {
+        return new OptionKey<>(name, null, ParsedArgs::requiredInt, 0);
+    }
+
+    public static OptionKey<Integer> intKey(Option option) {
+        return new OptionKey<>(keyOf(option), option, ParsedArgs::requiredInt, 0);
+    }
+
+    /**
+     * @param name The short or long name of an option with a value.
+     * @param minimumValue The minimum accepted value.
+     * @param maximumValue The maximum accepted value.
+     */
+    public static OptionKey<Integer> intKey(String name, int minimumValue, int maximumValue) {
+        return new OptionKey<>(name, null, intInRange(minimumValue, maximumValue), 0);
+    }
+
+    public static OptionKey<Integer> intKey(Option option, int minimumValue, int maximumValue) {
+        return new OptionKey<>(keyOf(option), option, intInRange(minimumValue, maximumValue), 0);
+    }
+
+    /**
+     * @param name The short or long name of an option with a value.
+     */
+    public static OptionKey<Long> longKey(String name) {
+        return new OptionKey<>(name, null, ParsedArgs::requiredLong, 0L);
+    }
+
+    public static OptionKey<Long> longKey(Option option) {
+        return new OptionKey<>(keyOf(option), option, ParsedArgs::requiredLong, 0L);
+    }
+
+    /**
+     * @param name The short or long name of an option with a value. See {@link ParsedArgs#getRequiredDoubleArg(String)}.
+     */
+    public static OptionKey<Double> doubleKey(String name) {
+        return new OptionKey<>(name, null, ParsedArgs::requiredDouble, 0.0);
+    }
+
+    public static OptionKey<Double> doubleKey(Option option) {
+        return new OptionKey<>(keyOf(option), option, ParsedArgs::requiredDouble, 0.0);
+    }
+
+    /**
+     * @param name The short or long name of an option with a value. See {@link ParsedArgs#getRequiredQuantityArg(String)}.
+     */
+    public static OptionKey<Long> quantityKey(String name) {
+        return new OptionKey<>(name, null, ParsedArgs::requiredQuantity, 0L);
+    }
+
+    public static OptionKey<Long> quantityKey(Option option) {
+        return new OptionKey<>(keyOf(option), option, ParsedArgs::requiredQuantity, 0L);
+    }
+
+    /**
+     * @param name The short or long name of an option with any number of values. Each value is returned in a new array.
+     */
+    public static OptionKey<int[]> intListKey(String name) {
+        return new OptionKey<>(name, null, (args, slot, arg) -> args.requiredIntList(slot, arg).clone(), new int[0]);
+    }
+
+    public static OptionKey<int[]> intListKey(Option option) {
+        return new OptionKey<>(keyOf(option), option, (args, slot, arg) -> args.requiredIntList(slot, arg).clone(), new int[0]);
+    }
+
+    /**
+     * @param name The short or long name of an option with any number of values. Each value is returned in a new array.
+     */
+    public static OptionKey<long[]> longListKey(String name) {
+        return new OptionKey<>(name, null, (args, slot, arg) -> args.requiredLongList(slot, arg).clone(), new long[0]);
+    }
+
+    public static OptionKey<long[]> longListKey(Option option) {
+        return new OptionKey<>(keyOf(option), option, (args, slot, arg) -> args.requiredLongList(slot, arg).clone(), new long[0]);
+    }
+
+    /**
+     * @param name The short or long name of an option with a value.
+     */
+    public static OptionKey<LocalDate> dateKey(String name) {
+        return new OptionKey<>(name, null, ParsedArgs::requiredDate, LocalDate.MIN);
+    }
+
+    public static OptionKey<LocalDate> dateKey(Option option) {
+        return new OptionKey<>(keyOf(option), option, ParsedArgs::requiredDate, LocalDate.MIN);
+    }
+
+    /**
+     * @param name The short or long name of an option with any number of values. The values are returned in an
+     *             unmodifiable list.
+     */
+    public static OptionKey<List<LocalDate>> dateListKey(String name) {
+        return new OptionKey<>(name, null, ParsedArgs::requiredDateList, Collections.emptyList());
+    }
+
+    public static OptionKey<List<LocalDate>> dateListKey(Option option) {
+        return new OptionKey<>(keyOf(option), option, ParsedArgs::requiredDateList, Collections.emptyList());
+    }
+
+    /**
+     * @param name The short or long name of an option with a value.
+     */
+    public static OptionKey<LocalDateTime> dateTimeKey(String name) {
+        return new OptionKey<>(name, null, ParsedArgs::requiredDateTime, LocalDateTime.MIN);
+    }
+
+    public static OptionKey<LocalDateTime> dateTimeKey(Option option) {
+        return new OptionKey<>(keyOf(option), option, ParsedArgs::requiredDateTime, LocalDateTime.MIN);
+    }
+
+    /**
+     * @param name The short or long name of an option with a value.
+     */
+    public static OptionKey<Instant> instantKey(String name) {
+        return new OptionKey<>(name, null, ParsedArgs::requiredInstant, Instant.MIN);
+    }
+
+    public static OptionKey<Instant> instantKey(Option option) {
+        return new OptionKey<>(keyOf(option), option, ParsedArgs::requiredInstant, Instant.MIN);
+    }
+
+    /**
+     * @param name The short or long name of an option with a value.
+     */
+    public static OptionKey<Duration> durationKey(String name) {
+        return new OptionKey<>(name, null, ParsedArgs::requiredDuration, Duration.ZERO);
+    }
+
+    public static OptionKey<Duration> durationKey(Option option) {
+        return new OptionKey<>(keyOf(option), option, ParsedArgs::requiredDuration, Duration.ZERO);
+    }
+
+    /**
+     * @return The name of the option, as used in error messages.
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Adds the option the key was created with.
+     *
+     * @param options The options to add the option to.
+     * @return This key.
+     * @throws IllegalStateException if the key was created from a name rather than an {@link Option}.
+     */
+    public OptionKey<T> addTo(Options options) {
+        if (option == null)
+            throw new IllegalStateException(String.format("INTERNAL ERROR: The key for '%s' was not created from an option, so it has nothing to add.", name));
+
+        options.addOption(option);
+        return this;
+    }
+
+    int slotIn(CmdArgsSchema schema) {
+        Binding[] bound = bindings;
+        for (Binding binding : bound) {
+            if (binding.schema == schema)
+                return binding.slot;
+        }
+
+        // The most recent schemas are kept first, and the oldest are dropped so that a key used with schemas compiled over
+        // and over doesn't keep them all alive. A binding lost to a concurrent update is simply resolved again.
+        Binding binding = new Binding(schema, schema.slotOf(name));
+        int kept = Math.min(bound.length, MAXIMUM_BINDINGS - 1);
+        Binding[] updated = new Binding[kept + 1];
+        updated[0] = binding;
+        System.arraycopy(bound, 0, updated, 1, kept);
+        bindings = updated;
+        return binding.slot;
+    }
+
+    T get(ParsedArgs args, int slot) throws ParseException {
+        return getter.get(args, slot, name);
+    }
+
+    /**
+     * @return The value returned in place of an invalid value while errors are being collected.
+     */
+    T placeholder() {
+        return placeholder;
+    }
+
+    private static Getter<Integer> intInRange(int minimumValue, int maximumValue) {
+        return (args, slot, arg) -> ParsedArgs.checkRange(args.requiredInt(slot, arg), arg, minimumValue, maximumValue);
+    }
+
+    private static String keyOf(Option option) {
+        return option.getOpt() != null ? option.getOpt() : option.getLongOpt();
+    }
+
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.zepben.commandlinearguments;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import org.apache.commons.cli.ParseException;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.Optional;
+
+/**
+ * Thrown when the value of an option is missing or can't be used, identifying the option, the value and the reason.
+ * <p>
+ * The message is only formatted when it is first read, so collecting many of these is cheap.
+ */
+@EverythingIsNonnullByDefault
+@SuppressWarnings("WeakerAccess")
+public class OptionValueException extends ParseException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Why the value of an option couldn't be used.
+     */
+    public enum Reason {
+        MISSING,
+        INVALID,
+        OUT_OF_RANGE,
+        REJECTED
+    }
+
+    private final String option;
+    @Nullable private final String value;
+    private final Reason reason;
+    private final String format;
+    // The args can be anything, so the message is formatted before the exception is serialized rather than the args.
+    private final transient Object[] formatArgs;
+    @Nullable private String message = null;
+
+    /**
+     * @param option The name of the option.
+     * @param value The value of the option, or null if it doesn't have one.
+     * @param reason Why the value couldn't be used.
+     * @param format The message, or a {@link String#format} format string if there are any format args.
+     * @param formatArgs The args for the format string.
+     */
+    public OptionValueException(String option, @Nullable String value, Reason reason, String format, Object... formatArgs) {
+        super(null);
+        this.option = option;
+        this.value = value;
+        this.reason = reason;
+        this.format = format;
+        this.formatArgs = formatArgs;
+    }
+
+    static OptionValueException missing(String option) {
+        return new OptionValueException(option, null, Reason.MISSING, "Missing required option: %s.", option);
+    }
+
+    /**
+     * @return The name of the option, as passed to the getter.
+     */
+    public String option() {
+        return option;
+    }
+
+    /**
+     * @return The value of the option, or empty if the option doesn't have one.
+     */
+    public Optional<String> value() {
+        return Optional.ofNullable(value);
+    }
+
+    public Reason reason() {
+        return reason;
+    }
+
+    @Override
+    public String getMessage() {
+        if (message == null)
+            message = formatArgs.length == 0 ? format : String.format(format, formatArgs);
+        return message;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        getMessage();
+        out.defaultWriteObject();
+    }
+
+}
@@ -0,0 +1,343 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.zepben.commandlinearguments;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Option;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * The parsed values of each option, stored by schema slot in flat arrays.
+ * <p>
+ * Values are kept in the order they were parsed, with each value linked to the next value of the same slot. The arrays
+ * are only ever grown, so reusing an instance for the next parse with {@link #reset(int)} allocates nothing once it has
+ * been sized.
+ */
+@EverythingIsNonnullByDefault
+final class OptionValues {
+
+    static final int NONE = -1;
+
+    private int slots = 0;
+    private int generation = 0;
+    private int[] occurrences = new int[0];
+    private int[] counts = new int[0];
+    private int[] firstValues = new int[0];
+    private int[] lastValues = new int[0];
+    private ValueSource[] sources = new ValueSource[0];
+
+    private int valueCount = 0;
+    private String[] values = new String[16];
+    private int[] valueSlots = new int[16];
+    private int[] nextValues = new int[16];
+
+    private int argCount = 0;
+    private String[] args = new String[4];
+
+    // Values converted by the typed getters, indexed by slot then conversion. The values of a published snapshot are read
+    // by many threads, so the cached values need to be safely published to each other.
+    private AtomicReferenceArray<Object> converted = new AtomicReferenceArray<>(0);
+
+    /**
+     * Clears the previous values, ready for the next parse.
+     *
+     * @param slots The number of slots in the schema being parsed.
+     */
+    void reset(int slots) {
+        if (occurrences.length < slots) {
+            occurrences = new int[slots];
+            counts = new int[slots];
+            firstValues = new int[slots];
+            lastValues = new int[slots];
+            sources = new ValueSource[slots];
+            converted = new AtomicReferenceArray<>(slots * Conversion.COUNT);
+        }
+
+        this.slots = slots;
+        ++generation;
+        Arrays.fill(occurrences, 0, slots, 0);
+        Arrays.fill(counts, 0, slots, 0);
+        Arrays.fill(firstValues, 0, slots, NONE);
+        Arrays.fill(lastValues, 0, slots, NONE);
+        Arrays.fill(sources, 0, slots, ValueSource.COMMAND_LINE);
+        for (int i = 0; i < slots * Conversion.COUNT; ++i)
+            converted.lazySet(i, null);
+
+        // Release the references so the strings from the last parse can be collected.
+        Arrays.fill(values, 0, valueCount, null);
+        Arrays.fill(args, 0, argCount, null);
+        valueCount = 0;
+        argCount = 0;
+    }
+
+    /**
+     * Clears the values without changing the number of slots, so nothing from the last parse is kept alive while the
+     * instance is idle.
+     */
+    void clear() {
+        reset(slots);
+    }
+
+    /**
+     * Replaces the values with those parsed into a commons-cli {@link CommandLine}.
+     */
+    void reset(CmdArgsSchema schema, CommandLine cmd) {
+        reset(schema.size());
+
+        for (Option option : cmd.getOptions()) {
+            int slot = schema.slotOf(option.getOpt() != null ? option.getOpt() : option.getLongOpt());
+            addOccurrence(slot);
+            for (String value : option.getValuesList())
+                addValue(slot, value);
+        }
+
+        for (String arg : cmd.getArgList())
+            addArg(arg);
+    }
+
+    void addOccurrence(int slot) {
+        ++occurrences[slot];
+    }
+
+    /**
+     * Records an occurrence of an option that was not given on the command line. Its values are added as usual.
+     */
+    void addFallback(int slot, ValueSource source) {
+        ++occurrences[slot];
+        sources[slot] = source;
+    }
+
+    void addValue(int slot, String value) {
+        if (valueCount == values.length) {
+            int capacity = values.length * 2;
+            values = Arrays.copyOf(values, capacity);
+            valueSlots = Arrays.copyOf(valueSlots, capacity);
+            nextValues = Arrays.copyOf(nextValues, capacity);
+        }
+
+        int index = valueCount++;
+        values[index] = value;
+        valueSlots[index] = slot;
+        nextValues[index] = NONE;
+
+        if (lastValues[slot] == NONE)
+            firstValues[slot] = index;
+        else
+            nextValues[lastValues[slot]] = index;
+        lastValues[slot] = index;
+        ++counts[slot];
+    }
+
+    void addArg(String arg) {
+        if (argCount == args.length)
+            args = Arrays.copyOf(args, args.length * 2);
+        args[argCount++] = arg;
+    }
+
+    int slots() {
+        return slots;
+    }
+
+    boolean has(int slot) {
+        return occurrences[slot] > 0;
+    }
+
+    /**
+     * @return Where the values of the slot came from. Only meaningful if the slot {@link #has} values.
+     */
+    ValueSource source(int slot) {
+        return sources[slot];
+    }
+
+    int occurrences(int slot) {
+        return occurrences[slot];
+    }
+
+    int count(int slot) {
+        return counts[slot];
+    }
+
+    @Nullable
+    String first(int slot) {
+        int index = firstValues[slot];
+        return index == NONE ? null : values[index];
+    }
+
+    /**
+     * The values of a slot can be walked without copying them with {@link #firstIndex}, {@link #nextIndex} and
+     * {@link #valueAt}.
+     *
+     * @return The index of the first value of the slot, or {@link #NONE}.
+     */
+    int firstIndex(int slot) {
+        return firstValues[slot];
+    }
+
+    /**
+     * @return The index of the next value of the same slot, or {@link #NONE}.
+     */
+    int nextIndex(int index) {
+        return nextValues[index];
+    }
+
+    String valueAt(int index) {
+        return values[index];
+    }
+
+    /**
+     * @return A copy of the values for the slot, or null if there are no values, matching {@link CommandLine#getOptionValues}.
+     */
+    @Nullable
+    String[] values(int slot) {
+        if (counts[slot] == 0)
+            return null;
+
+        String[] result = new String[counts[slot]];
+        int i = 0;
+        for (int index = firstValues[slot]; index != NONE; index = nextValues[index])
+            result[i++] = values[index];
+        return result;
+    }
+
+    /**
+     * @return true if the slot has the same values, in the same order, in both sets of values.
+     */
+    boolean sameValues(int slot, OptionValues other) {
+        if ((has(slot) != other.has(slot)) || (counts[slot] != other.counts[slot]))
+            return false;
+
+        for (int index = firstValues[slot], otherIndex = other.firstValues[slot];
+             index != NONE;
+             index = nextValues[index], otherIndex = other.nextValues[otherIndex]) {
+            if (!values[index].equals(other.values[otherIndex]))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return The value previously cached for the slot by the conversion, or null if it has not been converted since the
+     * last reset.
+     */
+    @Nullable
+    <T> T converted(int slot, Conversion conversion, Class<T> type) {
+        return type.cast(converted.get(slot * Conversion.COUNT + conversion.ordinal()));
+    }
+
+    void cacheConverted(int slot, Conversion conversion, Object value) {
+        converted.set(slot * Conversion.COUNT + conversion.ordinal(), value);
+    }
+
+    /**
+     * The spliterator reads the values in place, so it must be consumed before the next reset, otherwise it will throw a
+     * {@link ConcurrentModificationException}.
+     *
+     * @return A spliterator over the values of the slot.
+     */
+    Spliterator<String> spliterator(int slot) {
+        if (counts[slot] == 0)
+            return Spliterators.emptySpliterator();
+
+        int first = firstValues[slot];
+        int last = lastValues[slot];
+        return new ValueSpliterator(slot, first, last + 1, last - first + 1 == counts[slot]);
+    }
+
+    /**
+     * @return A copy of the arguments that were not options or option values.
+     */
+    String[] args() {
+        return Arrays.copyOf(args, argCount);
+    }
+
+    /**
+     * Walks the range of value indexes spanned by a slot, skipping values from other slots. The range can be split in
+     * half for parallel streams. When the values of the slot are contiguous, which is the usual case of a single option
+     * followed by its values, no values are skipped and the size is exact.
+     */
+    private final class ValueSpliterator implements Spliterator<String> {
+
+        private static final int MINIMUM_SPLIT = 1024;
+
+        private final int slot;
+        private final int expectedGeneration = generation;
+        private final boolean contiguous;
+        private int index;
+        private final int end;
+
+        private ValueSpliterator(int slot, int index, int end, boolean contiguous) {
+            this.slot = slot;
+            this.index = index;
+            this.end = end;
+            this.contiguous = contiguous;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super String> action) {
+            checkGeneration();
+
+            while (index < end) {
+                int i = index++;
+                if (contiguous || (valueSlots[i] == slot)) {
+                    action.accept(values[i]);
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super String> action) {
+            checkGeneration();
+
+            for (; index < end; ++index) {
+                if (contiguous || (valueSlots[index] == slot))
+                    action.accept(values[index]);
+            }
+        }
+
+        @Nullable
+        @Override
+        public Spliterator<String> trySplit() {
+            if (end - index < MINIMUM_SPLIT)
+                return null;
+
+            int mid = (index + end) >>> 1;
+            Spliterator<String> prefix = new ValueSpliterator(slot, index, mid, contiguous);
+            index = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return end - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL | (contiguous ? SIZED | SUBSIZED : 0);
+        }
+
+        private void checkGeneration() {
+            if (generation != expectedGeneration)
+                throw new ConcurrentModificationException("The arguments have been parsed again since the values were streamed.");
+        }
+
+    }
+
+}
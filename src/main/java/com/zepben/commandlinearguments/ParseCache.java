@@ -0,0 +1,181 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.zepben.commandlinearguments;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+
+import javax.annotation.Nullable;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * A bounded cache of parsed args, for when the same command lines are parsed again and again, such as by a test suite or a
+ * batch launcher. Return one from {@link CmdArgsBase#parseCache()} to enable it.
+ * <p>
+ * The args are cached by the command line, and the identity of the schema they were parsed with and of the
+ * {@link CmdArgsBase#parseListener() listener} they report conversions to, so a cache can be shared by several classes,
+ * and by every instance of a class. A cached parse is immutable, like a
+ * {@link CmdArgsBase#parseSnapshot snapshot}, and keeps the values converted by the typed getters, so reusing it skips
+ * the parse and makes {@link CmdArgsBase#extractCustomOptions()} a copy of values that are already converted.
+ * <p>
+ * The least recently used args are evicted once the cache is full, and args are parsed again once they are older than the
+ * maximum age. Args that read a config file, or looked up an environment variable or system property for a
+ * {@link Fallbacks fallback}, are never cached, as those can change between parses of the same command line. As the
+ * {@link CmdArgsBase#configFiles config files} can depend on more than the command line, they are still looked up on a
+ * hit, and if there are now any the command line is parsed again, which reads them. A hit still notifies the listener,
+ * with the time spent looking up the args as tokenization.
+ */
+@EverythingIsNonnullByDefault
+@SuppressWarnings("WeakerAccess")
+public final class ParseCache {
+
+    private final int maximumSize;
+    private final long maximumAgeNanos;
+    private final LongSupplier nanoTime;
+    private final LinkedHashMap<Key, CachedArgs> entries;
+
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * @param maximumSize The most command lines to keep.
+     * @param maximumAge How long a parse can be reused.
+     */
+    public ParseCache(int maximumSize, Duration maximumAge) {
+        this(maximumSize, maximumAge, System::nanoTime);
+    }
+
+    ParseCache(int maximumSize, Duration maximumAge, LongSupplier nanoTime) {
+        if (maximumSize < 1)
+            throw new IllegalArgumentException(String.format("INTERNAL ERROR: The cache must hold at least 1 command line, not %d.", maximumSize));
+        if (maximumAge.isNegative() || maximumAge.isZero())
+            throw new IllegalArgumentException(String.format("INTERNAL ERROR: The maximum age of the cache must be positive, not %s.", maximumAge));
+
+        this.maximumSize = maximumSize;
+        maximumAgeNanos = maximumAge.toNanos();
+        this.nanoTime = nanoTime;
+        entries = new LinkedHashMap<Key, CachedArgs>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, CachedArgs> eldest) {
+                return size() > ParseCache.this.maximumSize;
+            }
+        };
+    }
+
+    /**
+     * @return The number of command lines in the cache, including any that are too old to be reused.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return The number of parses that reused cached args.
+     */
+    public synchronized long hits() {
+        return hits;
+    }
+
+    /**
+     * @return The number of parses that weren't in the cache and were then added to it. Parses that can't be cached, such
+     * as those that fail or read a config file, are neither hits nor misses, so {@code hits / (hits + misses)} is the hit
+     * ratio of the command lines the cache can hold.
+     */
+    public synchronized long misses() {
+        return misses;
+    }
+
+    /**
+     * Removes every command line from the cache.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * @return The args parsed from the command line with the schema, or null if they aren't cached or are too old.
+     */
+    @Nullable
+    synchronized ParsedArgs get(CmdArgsSchema schema, ParseListener listener, String[] args) {
+        Key key = new Key(schema, listener, args);
+        CachedArgs cached = entries.get(key);
+        if ((cached != null) && (nanoTime.getAsLong() - cached.cachedAt > maximumAgeNanos)) {
+            entries.remove(key);
+            cached = null;
+        }
+
+        return cached == null ? null : cached.parsedArgs;
+    }
+
+    /**
+     * Counts a hit, once the args returned by {@link #get} are known to be usable.
+     */
+    synchronized void hit() {
+        ++hits;
+    }
+
+    /**
+     * Caches the args parsed from the command line after they weren't found by {@link #get}. The args must never be parsed
+     * into again.
+     */
+    synchronized void put(CmdArgsSchema schema, ParseListener listener, String[] args, ParsedArgs parsedArgs) {
+        ++misses;
+        entries.put(new Key(schema, listener, args.clone()), new CachedArgs(parsedArgs, nanoTime.getAsLong()));
+    }
+
+    private static final class Key {
+
+        private final CmdArgsSchema schema;
+        private final ParseListener listener;
+        private final String[] args;
+        private final int hash;
+
+        private Key(CmdArgsSchema schema, ParseListener listener, String[] args) {
+            this.schema = schema;
+            this.listener = listener;
+            this.args = args;
+
+            // Strings cache their own hash, so this is cheap for the same command line parsed repeatedly.
+            hash = 31 * (31 * System.identityHashCode(schema) + System.identityHashCode(listener)) + Arrays.hashCode(args);
+        }
+
+        @Override
+        public boolean equals(@Nullable Object other) {
+            if (!(other instanceof Key))
+                return false;
+
+            Key key = (Key) other;
+            return (hash == key.hash) && (schema == key.schema) && (listener == key.listener) && Arrays.equals(args, key.args);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+    }
+
+    private static final class CachedArgs {
+
+        private final ParsedArgs parsedArgs;
+        private final long cachedAt;
+
+        private CachedArgs(ParsedArgs parsedArgs, long cachedAt) {
+            this.parsedArgs = parsedArgs;
+            this.cachedAt = cachedAt;
+        }
+
+    }
+
+}
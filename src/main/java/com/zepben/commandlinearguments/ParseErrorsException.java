@@ -0,0 +1,78 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.zepben.commandlinearguments;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import org.apache.commons.cli.ParseException;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Thrown by {@link CmdArgsBase#parse} when it collects errors rather than stopping at the first one. See
+ * {@link CmdArgsBase#collectErrors()}.
+ */
+@EverythingIsNonnullByDefault
+@SuppressWarnings("WeakerAccess")
+public class ParseErrorsException extends ParseException {
+
+    private static final long serialVersionUID = 1L;
+
+    // Always an unmodifiable ArrayList, which is serializable.
+    @SuppressWarnings("serial")
+    private final List<ParseException> errors;
+    @Nullable private String message = null;
+
+    /**
+     * @param errors The errors, in the order they were found. Any {@link ParseErrorsException} is replaced by its errors.
+     */
+    public ParseErrorsException(List<? extends ParseException> errors) {
+        super(null);
+
+        List<ParseException> flattened = new ArrayList<>();
+        for (ParseException error : errors)
+            addTo(flattened, error);
+        this.errors = Collections.unmodifiableList(flattened);
+    }
+
+    /**
+     * @return The errors, in the order they were found.
+     */
+    public List<ParseException> errors() {
+        return errors;
+    }
+
+    /**
+     * @return The message of the only error, or the messages of all of the errors, one per line.
+     */
+    @Override
+    public String getMessage() {
+        if (message == null) {
+            if (errors.size() == 1) {
+                message = errors.get(0).getMessage();
+            } else {
+                StringBuilder builder = new StringBuilder(String.format("Found %d errors in the command line arguments:", errors.size()));
+                for (ParseException error : errors)
+                    builder.append(System.lineSeparator()).append("  ").append(error.getMessage());
+                message = builder.toString();
+            }
+        }
+        return message;
+    }
+
+    static void addTo(List<ParseException> errors, ParseException error) {
+        if (error instanceof ParseErrorsException)
+            errors.addAll(((ParseErrorsException) error).errors);
+        else
+            errors.add(error);
+    }
+
+}
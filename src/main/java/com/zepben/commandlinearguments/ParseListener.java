@@ -0,0 +1,102 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.zepben.commandlinearguments;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import org.apache.commons.cli.Option;
+
+/**
+ * Receives the time spent in each stage of parsing the command line. Return an instance from
+ * {@link CmdArgsBase#parseListener()} to enable it.
+ * <p>
+ * The callbacks are made on the thread doing the work, so they should be quick. Conversions can be reported from any
+ * thread reading a snapshot, so the listener must be thread safe if snapshots are shared.
+ */
+@EverythingIsNonnullByDefault
+@SuppressWarnings("unused")
+public interface ParseListener {
+
+    /**
+     * A listener that ignores everything. Nothing is timed when this listener is used.
+     */
+    ParseListener NONE = new ParseListener() {
+    };
+
+    /**
+     * Called when parsing starts, before the command line is looked up in any {@link ParseCache}. It is followed by
+     * {@link #onParsed} if the command line is parsed successfully.
+     *
+     * @param type The class parsing the command line.
+     */
+    default void onParseStarted(Class<?> type) {
+    }
+
+    /**
+     * Called after the command line has been parsed successfully, before any config files and fallbacks are resolved.
+     * <p>
+     * {@link ParserEngine#NATIVE} resolves each option as it reads the tokens, so all of its time is reported as
+     * tokenization. Command lines found in a {@link ParseCache} are reported with the time spent looking them up as
+     * tokenization, and no resolve time.
+     *
+     * @param type The class that parsed the command line.
+     * @param engine The engine that parsed the command line.
+     * @param tokenizeNanos The time spent splitting the tokens into options and values.
+     * @param resolveNanos The time spent resolving the options into schema slots.
+     */
+    default void onParsed(Class<?> type, ParserEngine engine, long tokenizeNanos, long resolveNanos) {
+    }
+
+    /**
+     * Called after {@link #onParsed}, once any config files have been read and the {@link Fallbacks} have been
+     * resolved, unless the command line was found in a {@link ParseCache} or help was requested.
+     *
+     * @param type The class that parsed the command line.
+     * @param durationNanos The time spent reading the config files and resolving the fallbacks.
+     */
+    default void onFallbacksResolved(Class<?> type, long durationNanos) {
+    }
+
+    /**
+     * Called when a typed getter starts converting a value that isn't already cached, and followed by
+     * {@link #onConverted} if the value is converted successfully.
+     *
+     * @param option The option being converted.
+     */
+    default void onConversionStarted(Option option) {
+    }
+
+    /**
+     * Called after a value has been converted by a typed getter. Conversions are cached, so this is called at most once
+     * per option and type for each parse.
+     *
+     * @param option The option that was converted.
+     * @param convertedType The type the value was converted to.
+     * @param durationNanos The time spent converting the value.
+     */
+    default void onConverted(Option option, Class<?> convertedType, long durationNanos) {
+    }
+
+    /**
+     * Called before {@link CmdArgsBase#extractCustomOptions()}, which is always followed by {@link #onExtracted}.
+     *
+     * @param type The class extracting the options.
+     */
+    default void onExtractStarted(Class<?> type) {
+    }
+
+    /**
+     * Called after {@link CmdArgsBase#extractCustomOptions()} returns, whether or not it succeeded.
+     *
+     * @param type The class that extracted the options.
+     * @param durationNanos The time spent extracting the options.
+     */
+    default void onExtracted(Class<?> type, long durationNanos) {
+    }
+
+}
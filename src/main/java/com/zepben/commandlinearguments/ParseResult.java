@@ -0,0 +1,71 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.zepben.commandlinearguments;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import org.apache.commons.cli.ParseException;
+
+import javax.annotation.Nullable;
+import java.util.Optional;
+
+/**
+ * The outcome of parsing one command line in a batch, which is either the parsed args or the exception that stopped them
+ * being parsed.
+ */
+@EverythingIsNonnullByDefault
+@SuppressWarnings("WeakerAccess")
+public final class ParseResult {
+
+    private final String[] args;
+    @Nullable private final ParsedArgs parsedArgs;
+    @Nullable private final ParseException exception;
+
+    private ParseResult(String[] args, @Nullable ParsedArgs parsedArgs, @Nullable ParseException exception) {
+        this.args = args;
+        this.parsedArgs = parsedArgs;
+        this.exception = exception;
+    }
+
+    static ParseResult success(String[] args, ParsedArgs parsedArgs) {
+        return new ParseResult(args, parsedArgs, null);
+    }
+
+    static ParseResult failure(String[] args, ParseException exception) {
+        return new ParseResult(args, null, exception);
+    }
+
+    /**
+     * @return The command line that was parsed.
+     */
+    public String[] args() {
+        return args;
+    }
+
+    /**
+     * @return If the command line was parsed successfully.
+     */
+    public boolean isSuccess() {
+        return parsedArgs != null;
+    }
+
+    /**
+     * @return The parsed args, or empty if the command line could not be parsed.
+     */
+    public Optional<ParsedArgs> parsedArgs() {
+        return Optional.ofNullable(parsedArgs);
+    }
+
+    /**
+     * @return The reason the command line could not be parsed, or empty if it was parsed successfully.
+     */
+    public Optional<ParseException> exception() {
+        return Optional.ofNullable(exception);
+    }
+
+}
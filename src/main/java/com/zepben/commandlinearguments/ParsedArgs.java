@@ -0,0 +1,642 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.zepben.commandlinearguments;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.ParseException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * The parsed command line args, with the typed getters used to read them.
+ * <p>
+ * Args returned by {@link CmdArgsBase#parseSnapshot} or a {@link BatchParser} are immutable and safely published, so they
+ * can be read by any number of threads without locking, including while the args are parsed again. Converted values are
+ * cached the first time they are read and shared by every thread.
+ */
+@EverythingIsNonnullByDefault
+@SuppressWarnings("WeakerAccess")
+public final class ParsedArgs {
+
+    private final CmdArgsSchema schema;
+    private final OptionValues values;
+    private final ParseListener listener;
+
+    ParsedArgs(CmdArgsSchema schema, OptionValues values) {
+        this(schema, values, ParseListener.NONE);
+    }
+
+    ParsedArgs(CmdArgsSchema schema, OptionValues values, ParseListener listener) {
+        this.schema = schema;
+        this.values = values;
+        this.listener = listener;
+    }
+
+    /**
+     * @return The schema the args were parsed with.
+     */
+    public CmdArgsSchema schema() {
+        return schema;
+    }
+
+    /**
+     * @return The command the args were parsed for, or empty if there wasn't one. See {@link CmdArgsBase#commands()}.
+     */
+    public Optional<String> command() {
+        return schema.command();
+    }
+
+    /**
+     * @return If help was requested.
+     */
+    public boolean isHelpRequested() {
+        return hasArg("h");
+    }
+
+    public boolean hasArg(String arg) {
+        return has(schema.slotOf(arg));
+    }
+
+    /**
+     * @return Where the option was set, or empty if it was not set at all.
+     */
+    public Optional<ValueSource> sourceOf(String arg) {
+        int slot = schema.slotOf(arg);
+        return has(slot) ? Optional.of(values.source(slot)) : Optional.empty();
+    }
+
+    public String getRequiredStringArg(String arg) throws ParseException {
+        return requiredString(schema.slotOf(arg), arg);
+    }
+
+    public Optional<String> getOptionalStringArg(String arg) throws ParseException {
+        int slot = schema.slotOf(arg);
+        return has(slot) ? Optional.of(requiredString(slot, arg)) : Optional.empty();
+    }
+
+    public List<String> getRequiredStringArgList(String arg) throws ParseException {
+        return requiredStringList(schema.slotOf(arg), arg);
+    }
+
+    public Optional<List<String>> getOptionalStringArgList(String arg) throws ParseException {
+        int slot = schema.slotOf(arg);
+        return has(slot) ? Optional.of(requiredStringList(slot, arg)) : Optional.empty();
+    }
+
+    /**
+     * Streams the values of the option without copying them. The stream is lazy and reads the parsed values in place, so
+     * unless these args are a snapshot it must be consumed before the next parse. It can be made parallel, in which case
+     * the values are split by range.
+     *
+     * @return The values of the option, or an empty stream if the option was not specified.
+     */
+    public Stream<String> streamStringArg(String arg) {
+        int slot = schema.slotOf(arg);
+        return StreamSupport.stream(slot < 0 ? Spliterators.emptySpliterator() : values.spliterator(slot), false);
+    }
+
+    /**
+     * @return An iterator over the values of the option, with the same restrictions as {@link #streamStringArg}.
+     */
+    public Iterator<String> iterateStringArg(String arg) {
+        int slot = schema.slotOf(arg);
+        return Spliterators.iterator(slot < 0 ? Spliterators.<String>emptySpliterator() : values.spliterator(slot));
+    }
+
+    /**
+     * Streams the values of the option, converting each value as it is consumed. As the values are converted lazily, an
+     * invalid value is reported by throwing an {@link UncheckedParseException} from the terminal operation.
+     *
+     * @return The values of the option, or an empty stream if the option was not specified.
+     */
+    public IntStream streamIntArg(String arg) {
+        return streamStringArg(arg).mapToInt(value -> {
+            try {
+                return NumberParser.parseInt(value, arg);
+            } catch (ParseException e) {
+                throw new UncheckedParseException(e);
+            }
+        });
+    }
+
+    /**
+     * @return The values of the option, or an empty stream if the option was not specified. See {@link #streamIntArg}.
+     */
+    public LongStream streamLongArg(String arg) {
+        return streamStringArg(arg).mapToLong(value -> {
+            try {
+                return NumberParser.parseLong(value, arg);
+            } catch (ParseException e) {
+                throw new UncheckedParseException(e);
+            }
+        });
+    }
+
+    public int getRequiredIntArg(String arg) throws ParseException {
+        return requiredInt(schema.slotOf(arg), arg);
+    }
+
+    public int getRequiredIntArg(String arg, int minimumValue) throws ParseException {
+        return checkMinimum(requiredInt(schema.slotOf(arg), arg), arg, minimumValue);
+    }
+
+    public int getRequiredIntArg(String arg, int minimumValue, int maximumValue) throws ParseException {
+        return checkRange(requiredInt(schema.slotOf(arg), arg), arg, minimumValue, maximumValue);
+    }
+
+    public Optional<Integer> getOptionalIntArg(String arg) throws ParseException {
+        int slot = schema.slotOf(arg);
+        return has(slot) ? Optional.of(requiredInt(slot, arg)) : Optional.empty();
+    }
+
+    public Optional<Integer> getOptionalIntArg(String arg, int minimumValue) throws ParseException {
+        int slot = schema.slotOf(arg);
+        return has(slot) ? Optional.of(checkMinimum(requiredInt(slot, arg), arg, minimumValue)) : Optional.empty();
+    }
+
+    public Optional<Integer> getOptionalIntArg(String arg, int minimumValue, int maximumValue) throws ParseException {
+        int slot = schema.slotOf(arg);
+        return has(slot) ? Optional.of(checkRange(requiredInt(slot, arg), arg, minimumValue, maximumValue)) : Optional.empty();
+    }
+
+    /**
+     * @return The values of the option converted to a new array, without boxing.
+     */
+    public int[] getRequiredIntArgList(String arg) throws ParseException {
+        return requiredIntList(schema.slotOf(arg), arg).clone();
+    }
+
+    public int[] getRequiredIntArgList(String arg, int minimumValue) throws ParseException {
+        return checkMinimum(requiredIntList(schema.slotOf(arg), arg), arg, minimumValue).clone();
+    }
+
+    public int[] getRequiredIntArgList(String arg, int minimumValue, int maximumValue) throws ParseException {
+        return checkRange(requiredIntList(schema.slotOf(arg), arg), arg, minimumValue, maximumValue).clone();
+    }
+
+    public Optional<int[]> getOptionalIntArgList(String arg) throws ParseException {
+        int slot = schema.slotOf(arg);
+        return has(slot) ? Optional.of(requiredIntList(slot, arg).clone()) : Optional.empty();
+    }
+
+    public Optional<int[]> getOptionalIntArgList(String arg, int minimumValue) throws ParseException {
+        int slot = schema.slotOf(arg);
+        return has(slot) ? Optional.of(checkMinimum(requiredIntList(slot, arg), arg, minimumValue).clone()) : Optional.empty();
+    }
+
+    public Optional<int[]> getOptionalIntArgList(String arg, int minimumValue, int maximumValue) throws ParseException {
+        int slot = schema.slotOf(arg);
+        return has(slot) ? Optional.of(checkRange(requiredIntList(slot, arg), arg, minimumValue, maximumValue).clone()) : Optional.empty();
+    }
+
+    public long getRequiredLongArg(String arg) throws ParseException {
+        return requiredLong(schema.slotOf(arg), arg);
+    }
+
+    public long getRequiredLongArg(String arg, long minimumValue, long maximumValue) throws ParseException {
+        return checkRange(requiredLong(schema.slotOf(arg), arg), arg, minimumValue, maximumValue);
+    }
+
+    public Optional<Long> getOptionalLongArg(String arg) throws ParseException {
+        int slot = schema.slotOf(arg);
+        return has(slot) ? Optional.of(requiredLong(slot, arg)) : Optional.empty();
+    }
+
+    public Optional<Long> getOptionalLongArg(String arg, long minimumValue, long maximumValue) throws ParseException {
+        int slot = schema.slotOf(arg);
+        return has(slot) ? Optional.of(checkRange(requiredLong(slot, arg), arg, minimumValue, maximumValue)) : Optional.empty();
+    }
+
+    /**
+     * @return The value of the option, which may use underscores between digits, or anything accepted by
+     * {@link Double#parseDouble}.
+     */
+    public double getRequiredDoubleArg(String arg) throws ParseException {
+        return requiredDouble(schema.slotOf(arg), arg);
+    }
+
+    public double getRequiredDoubleArg(String arg, double minimumValue, double maximumValue) throws ParseException {
+        return checkRange(requiredDouble(schema.slotOf(arg), arg), arg, minimumValue, maximumValue);
+    }
+
+    public Optional<Double> getOptionalDoubleArg(String arg) throws ParseException {
+        int slot = schema.slotOf(arg);
+        return has(slot) ? Optional.of(requiredDouble(slot, arg)) : Optional.empty();
+    }
+
+    public Optional<Double> getOptionalDoubleArg(String arg, double minimumValue, double maximumValue) throws ParseException {
+        int slot = schema.slotOf(arg);
+        return has(slot) ? Optional.of(checkRange(requiredDouble(slot, arg), arg, minimumValue, maximumValue)) : Optional.empty();
+    }
+
+    /**
+     * @return The value of the option, which is a whole number that may use underscores between digits, a {@code 0x} hex
+     * prefix, or an SI or binary suffix such as {@code 10k} or {@code 512MiB}.
+     */
+    public long getRequiredQuantityArg(String arg) throws ParseException {
+        return requiredQuantity(schema.slotOf(arg), arg);
+    }
+
+    public long getRequiredQuantityArg(String arg, long minimumValue, long maximumValue) throws ParseException {
+        return checkRange(requiredQuantity(schema.slotOf(arg), arg), arg, minimumValue, maximumValue);
+    }
+
+    public Optional<Long> getOptionalQuantityArg(String arg) throws ParseException {
+        int slot = schema.slotOf(arg);
+        return has(slot) ? Optional.of(requiredQuantity(slot, arg)) : Optional.empty();
+    }
+
+    public Optional<Long> getOptionalQuantityArg(String arg, long minimumValue, long maximumValue) throws ParseException {
+        int slot = schema.slotOf(arg);
+        return has(slot) ? Optional.of(checkRange(requiredQuantity(slot, arg), arg, minimumValue, maximumValue)) : Optional.empty();
+    }
+
+    /**
+     * @return The values of the option converted to a new array, without boxing.
+     */
+    public long[] getRequiredLongArgList(String arg) throws ParseException {
+        return requiredLongList(schema.slotOf(arg), arg).clone();
+    }
+
+    public long[] getRequiredLongArgList(String arg, long minimumValue) throws ParseException {
+        return checkMinimum(requiredLongList(schema.slotOf(arg), arg), arg, minimumValue).clone();
+    }
+
+    public long[] getRequiredLongArgList(String arg, long minimumValue, long maximumValue) throws ParseException {
+        return checkRange(requiredLongList(schema.slotOf(arg), arg), arg, minimumValue, maximumValue).clone();
+    }
+
+    public Optional<long[]> getOptionalLongArgList(String arg) throws ParseException {
+        int slot = schema.slotOf(arg);
+        return has(slot) ? Optional.of(requiredLongList(slot, arg).clone()) : Optional.empty();
+    }
+
+    public Optional<long[]> getOptionalLongArgList(String arg, long minimumValue) throws ParseException {
+        int slot = schema.slotOf(arg);
+        return has(slot) ? Optional.of(checkMinimum(requiredLongList(slot, arg), arg, minimumValue).clone()) : Optional.empty();
+    }
+
+    public Optional<long[]> getOptionalLongArgList(String arg, long minimumValue, long maximumValue) throws ParseException {
+        int slot = schema.slotOf(arg);
+        return has(slot) ? Optional.of(checkRange(requiredLongList(slot, arg), arg, minimumValue, maximumValue).clone()) : Optional.empty();
+    }
+
+    public LocalDate getRequiredDateArg(String arg) throws ParseException {
+        return requiredDate(schema.slotOf(arg), arg);
+    }
+
+    public Optional<LocalDate> getOptionalDateArg(String arg) throws ParseException {
+        int slot = schema.slotOf(arg);
+        return has(slot) ? Optional.of(requiredDate(slot, arg)) : Optional.empty();
+    }
+
+    /**
+     * @return The values of the option, in an unmodifiable list.
+     */
+    public List<LocalDate> getRequiredDateArgList(String arg) throws ParseException {
+        return requiredDateList(schema.slotOf(arg), arg);
+    }
+
+    public Optional<List<LocalDate>> getOptionalDateArgList(String arg) throws ParseException {
+        int slot = schema.slotOf(arg);
+        return has(slot) ? Optional.of(requiredDateList(slot, arg)) : Optional.empty();
+    }
+
+    /**
+     * @return The value of the option, as accepted by {@link LocalDateTime#parse(CharSequence)}.
+     */
+    public LocalDateTime getRequiredDateTimeArg(String arg) throws ParseException {
+        return requiredDateTime(schema.slotOf(arg), arg);
+    }
+
+    public Optional<LocalDateTime> getOptionalDateTimeArg(String arg) throws ParseException {
+        int slot = schema.slotOf(arg);
+        return has(slot) ? Optional.of(requiredDateTime(slot, arg)) : Optional.empty();
+    }
+
+    /**
+     * @return The value of the option, as accepted by {@link Instant#parse(CharSequence)}.
+     */
+    public Instant getRequiredInstantArg(String arg) throws ParseException {
+        return requiredInstant(schema.slotOf(arg), arg);
+    }
+
+    public Optional<Instant> getOptionalInstantArg(String arg) throws ParseException {
+        int slot = schema.slotOf(arg);
+        return has(slot) ? Optional.of(requiredInstant(slot, arg)) : Optional.empty();
+    }
+
+    /**
+     * @return The value of the option, as accepted by {@link Duration#parse(CharSequence)}.
+     */
+    public Duration getRequiredDurationArg(String arg) throws ParseException {
+        return requiredDuration(schema.slotOf(arg), arg);
+    }
+
+    public Optional<Duration> getOptionalDurationArg(String arg) throws ParseException {
+        int slot = schema.slotOf(arg);
+        return has(slot) ? Optional.of(requiredDuration(slot, arg)) : Optional.empty();
+    }
+
+    public boolean hasArg(OptionKey<?> key) {
+        return has(key.slotIn(schema));
+    }
+
+    public <T> T getRequiredArg(OptionKey<T> key) throws ParseException {
+        return key.get(this, key.slotIn(schema));
+    }
+
+    public <T> Optional<T> getOptionalArg(OptionKey<T> key) throws ParseException {
+        int slot = key.slotIn(schema);
+        return has(slot) ? Optional.of(key.get(this, slot)) : Optional.empty();
+    }
+
+    // The slot based getters are for code generated from the schema, which already knows the slot of each option.
+
+    /**
+     * @param slot The slot of the option in the {@link #schema()}.
+     */
+    public boolean hasArg(int slot) {
+        return has(slot);
+    }
+
+    public String getRequiredStringArg(int slot) throws ParseException {
+        return requiredString(slot, keyOf(slot));
+    }
+
+    public List<String> getRequiredStringArgList(int slot) throws ParseException {
+        return requiredStringList(slot, keyOf(slot));
+    }
+
+    public int getRequiredIntArg(int slot, int minimumValue, int maximumValue) throws ParseException {
+        String arg = keyOf(slot);
+        return checkRange(requiredInt(slot, arg), arg, minimumValue, maximumValue);
+    }
+
+    public int[] getRequiredIntArgList(int slot, int minimumValue, int maximumValue) throws ParseException {
+        String arg = keyOf(slot);
+        return checkRange(requiredIntList(slot, arg), arg, minimumValue, maximumValue).clone();
+    }
+
+    public long[] getRequiredLongArgList(int slot) throws ParseException {
+        return requiredLongList(slot, keyOf(slot)).clone();
+    }
+
+    public LocalDate getRequiredDateArg(int slot) throws ParseException {
+        return requiredDate(slot, keyOf(slot));
+    }
+
+    private boolean has(int slot) {
+        return (slot >= 0) && values.has(slot);
+    }
+
+    String requiredString(int slot, String arg) throws ParseException {
+        String value = slot < 0 ? null : values.first(slot);
+        if (value == null)
+            throw OptionValueException.missing(arg);
+        return value;
+    }
+
+    List<String> requiredStringList(int slot, String arg) throws ParseException {
+        String[] argValues = slot < 0 ? null : values.values(slot);
+        if (argValues == null)
+            throw OptionValueException.missing(arg);
+        return Arrays.asList(argValues);
+    }
+
+    int requiredInt(int slot, String arg) throws ParseException {
+        String value = requiredString(slot, arg);
+
+        Integer cached = values.converted(slot, Conversion.INT, Integer.class);
+        if (cached != null)
+            return cached;
+
+        long start = conversionStart(slot);
+        return cacheConverted(slot, Conversion.INT, NumberParser.parseInt(value, arg), start);
+    }
+
+    long requiredLong(int slot, String arg) throws ParseException {
+        String value = requiredString(slot, arg);
+
+        Long cached = values.converted(slot, Conversion.LONG, Long.class);
+        if (cached != null)
+            return cached;
+
+        long start = conversionStart(slot);
+        return cacheConverted(slot, Conversion.LONG, NumberParser.parseLong(value, arg), start);
+    }
+
+    double requiredDouble(int slot, String arg) throws ParseException {
+        String value = requiredString(slot, arg);
+
+        Double cached = values.converted(slot, Conversion.DOUBLE, Double.class);
+        if (cached != null)
+            return cached;
+
+        long start = conversionStart(slot);
+        return cacheConverted(slot, Conversion.DOUBLE, NumberParser.parseDouble(value, arg), start);
+    }
+
+    long requiredQuantity(int slot, String arg) throws ParseException {
+        String value = requiredString(slot, arg);
+
+        Long cached = values.converted(slot, Conversion.QUANTITY, Long.class);
+        if (cached != null)
+            return cached;
+
+        long start = conversionStart(slot);
+        return cacheConverted(slot, Conversion.QUANTITY, NumberParser.parseQuantity(value, arg), start);
+    }
+
+    // The cached arrays are shared by every call, so they must be copied before being returned.
+    int[] requiredIntList(int slot, String arg) throws ParseException {
+        int[] cached = slot < 0 ? null : values.converted(slot, Conversion.INT_LIST, int[].class);
+        if (cached != null)
+            return cached;
+
+        if ((slot < 0) || (values.count(slot) == 0))
+            throw OptionValueException.missing(arg);
+
+        long start = conversionStart(slot);
+        int[] converted = new int[values.count(slot)];
+        int i = 0;
+        for (int index = values.firstIndex(slot); index != OptionValues.NONE; index = values.nextIndex(index))
+            converted[i++] = NumberParser.parseInt(values.valueAt(index), arg);
+
+        return cacheConverted(slot, Conversion.INT_LIST, converted, start);
+    }
+
+    long[] requiredLongList(int slot, String arg) throws ParseException {
+        long[] cached = slot < 0 ? null : values.converted(slot, Conversion.LONG_LIST, long[].class);
+        if (cached != null)
+            return cached;
+
+        if ((slot < 0) || (values.count(slot) == 0))
+            throw OptionValueException.missing(arg);
+
+        long start = conversionStart(slot);
+        long[] converted = new long[values.count(slot)];
+        int i = 0;
+        for (int index = values.firstIndex(slot); index != OptionValues.NONE; index = values.nextIndex(index))
+            converted[i++] = NumberParser.parseLong(values.valueAt(index), arg);
+
+        return cacheConverted(slot, Conversion.LONG_LIST, converted, start);
+    }
+
+    private String keyOf(int slot) {
+        Option option = schema.option(slot);
+        return option.getOpt() != null ? option.getOpt() : option.getLongOpt();
+    }
+
+    private long conversionStart(int slot) {
+        if (listener == ParseListener.NONE)
+            return 0;
+
+        listener.onConversionStarted(schema.option(slot));
+        return System.nanoTime();
+    }
+
+    private <T> T cacheConverted(int slot, Conversion conversion, T converted, long start) {
+        values.cacheConverted(slot, conversion, converted);
+        if (listener != ParseListener.NONE)
+            listener.onConverted(schema.option(slot), converted.getClass(), System.nanoTime() - start);
+        return converted;
+    }
+
+    LocalDate requiredDate(int slot, String arg) throws ParseException {
+        String value = requiredString(slot, arg);
+
+        LocalDate cached = values.converted(slot, Conversion.DATE, LocalDate.class);
+        if (cached != null)
+            return cached;
+
+        long start = conversionStart(slot);
+        return cacheConverted(slot, Conversion.DATE, DateParser.parseDate(value, arg), start);
+    }
+
+    // The cached list is unmodifiable, so it can be shared by every call.
+    @SuppressWarnings("unchecked")
+    List<LocalDate> requiredDateList(int slot, String arg) throws ParseException {
+        List<LocalDate> cached = slot < 0 ? null : values.converted(slot, Conversion.DATE_LIST, List.class);
+        if (cached != null)
+            return cached;
+
+        if ((slot < 0) || (values.count(slot) == 0))
+            throw OptionValueException.missing(arg);
+
+        long start = conversionStart(slot);
+        LocalDate[] converted = new LocalDate[values.count(slot)];
+        int i = 0;
+        for (int index = values.firstIndex(slot); index != OptionValues.NONE; index = values.nextIndex(index))
+            converted[i++] = DateParser.parseDate(values.valueAt(index), arg);
+
+        return cacheConverted(slot, Conversion.DATE_LIST, Collections.unmodifiableList(Arrays.asList(converted)), start);
+    }
+
+    LocalDateTime requiredDateTime(int slot, String arg) throws ParseException {
+        String value = requiredString(slot, arg);
+
+        LocalDateTime cached = values.converted(slot, Conversion.DATE_TIME, LocalDateTime.class);
+        if (cached != null)
+            return cached;
+
+        long start = conversionStart(slot);
+        return cacheConverted(slot, Conversion.DATE_TIME, DateParser.parseDateTime(value, arg), start);
+    }
+
+    Instant requiredInstant(int slot, String arg) throws ParseException {
+        String value = requiredString(slot, arg);
+
+        Instant cached = values.converted(slot, Conversion.INSTANT, Instant.class);
+        if (cached != null)
+            return cached;
+
+        long start = conversionStart(slot);
+        return cacheConverted(slot, Conversion.INSTANT, DateParser.parseInstant(value, arg), start);
+    }
+
+    Duration requiredDuration(int slot, String arg) throws ParseException {
+        String value = requiredString(slot, arg);
+
+        Duration cached = values.converted(slot, Conversion.DURATION, Duration.class);
+        if (cached != null)
+            return cached;
+
+        long start = conversionStart(slot);
+        return cacheConverted(slot, Conversion.DURATION, DateParser.parseDuration(value, arg), start);
+    }
+
+    private static int checkMinimum(int value, String arg, int minimumValue) throws ParseException {
+        checkMinimum((long) value, arg, minimumValue);
+        return value;
+    }
+
+    static int checkRange(int value, String arg, int minimumValue, int maximumValue) throws ParseException {
+        checkRange((long) value, arg, minimumValue, maximumValue);
+        return value;
+    }
+
+    private static int[] checkMinimum(int[] values, String arg, int minimumValue) throws ParseException {
+        for (int value : values)
+            checkMinimum((long) value, arg, minimumValue);
+        return values;
+    }
+
+    static int[] checkRange(int[] values, String arg, int minimumValue, int maximumValue) throws ParseException {
+        for (int value : values)
+            checkRange((long) value, arg, minimumValue, maximumValue);
+        return values;
+    }
+
+    private static long[] checkMinimum(long[] values, String arg, long minimumValue) throws ParseException {
+        for (long value : values)
+            checkMinimum(value, arg, minimumValue);
+        return values;
+    }
+
+    private static long[] checkRange(long[] values, String arg, long minimumValue, long maximumValue) throws ParseException {
+        for (long value : values)
+            checkRange(value, arg, minimumValue, maximumValue);
+        return values;
+    }
+
+    private static void checkMinimum(long value, String arg, long minimumValue) throws ParseException {
+        if (value < minimumValue)
+            throw new OptionValueException(arg, Long.toString(value), OptionValueException.Reason.OUT_OF_RANGE,
+                "Integer %s for argument %s is out of range. Value must be at least %d.", value, arg, minimumValue);
+    }
+
+    static long checkRange(long value, String arg, long minimumValue, long maximumValue) throws ParseException {
+        if ((value < minimumValue) || (value > maximumValue))
+            throw new OptionValueException(arg, Long.toString(value), OptionValueException.Reason.OUT_OF_RANGE,
+                "Integer %s for argument %s is out of range. Expected value in range %d..%d.", value, arg, minimumValue, maximumValue);
+        return value;
+    }
+
+    static double checkRange(double value, String arg, double minimumValue, double maximumValue) throws ParseException {
+        if (!(value >= minimumValue) || !(value <= maximumValue))
+            throw new OptionValueException(arg, Double.toString(value), OptionValueException.Reason.OUT_OF_RANGE,
+                "Number %s for argument %s is out of range. Expected value in range %s..%s.", value, arg, minimumValue, maximumValue);
+        return value;
+    }
+
+    OptionValues values() {
+        return values;
+    }
+
+}
@@ -0,0 +1,28 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.zepben.commandlinearguments;
+
+/**
+ * The engines that can be used by {@link CmdArgsBase} to parse the command line.
+ */
+public enum ParserEngine {
+
+    /**
+     * The commons-cli {@link org.apache.commons.cli.DefaultParser}.
+     */
+    COMMONS_CLI,
+
+    /**
+     * A single pass parser that resolves options through the compiled {@link CmdArgsSchema} and records the values
+     * directly into reused flat arrays. It accepts the same syntax as {@link #COMMONS_CLI}, but does not allocate the
+     * intermediate {@link org.apache.commons.cli.Option} clones or {@link org.apache.commons.cli.CommandLine}.
+     */
+    NATIVE
+
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.zepben.commandlinearguments;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.ParseException;
+
+import java.util.List;
+
+/**
+ * Notified by a {@link ConfigReloader} when the args are reloaded. The methods are called on the thread that reloaded the
+ * args, which for changes to the config files is the watching thread, so they should return quickly.
+ *
+ * @param <T> The type of the reloaded args.
+ */
+@EverythingIsNonnullByDefault
+@FunctionalInterface
+public interface ReloadListener<T extends CmdArgsBase> {
+
+    /**
+     * Called after the reloaded args have replaced the previous args, but only if the value of at least one option changed.
+     *
+     * @param previous The args that were replaced.
+     * @param current The reloaded args.
+     * @param changed The options whose values changed, in slot order.
+     */
+    void onReloaded(T previous, T current, List<Option> changed);
+
+    /**
+     * Called when the args could not be reloaded, in which case the previous args are kept.
+     *
+     * @param exception Why the args could not be reloaded. This is usually a {@link ParseException}, but is whatever was
+     * thrown while reloading after a config file changed, including unchecked exceptions and errors other than a
+     * {@link VirtualMachineError}.
+     */
+    default void onReloadFailed(Throwable exception) {
+    }
+
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.zepben.commandlinearguments;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import org.apache.commons.cli.ParseException;
+
+/**
+ * Wraps a {@link ParseException} thrown from somewhere that can't throw checked exceptions, such as a lazily evaluated
+ * stream.
+ */
+@EverythingIsNonnullByDefault
+public class UncheckedParseException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public UncheckedParseException(ParseException cause) {
+        super(cause.getMessage(), cause);
+    }
+
+    @Override
+    public synchronized ParseException getCause() {
+        return (ParseException) super.getCause();
+    }
+
+}
@@ -0,0 +1,23 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.zepben.commandlinearguments;
+
+/**
+ * Where the value of an option came from, in order of precedence. See {@link CmdArgsBase#configFiles} and
+ * {@link Fallbacks}.
+ */
+public enum ValueSource {
+
+    COMMAND_LINE,
+    CONFIG_FILE,
+    ENVIRONMENT,
+    SYSTEM_PROPERTY,
+    DEFAULT
+
+}
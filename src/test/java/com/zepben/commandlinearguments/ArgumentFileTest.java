@@ -0,0 +1,126 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.zepben.commandlinearguments;
+
+import org.apache.commons.cli.ParseException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.zepben.testutils.exception.ExpectException.expect;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class ArgumentFileTest {
+
+    @TempDir
+    public Path tempDir;
+
+    @Test
+    public void splitsOnWhitespace() throws Exception {
+        assertThat(read("-a one\n-b\ttwo  three\r\n\n"), contains("-a", "one", "-b", "two", "three"));
+    }
+
+    @Test
+    public void supportsQuotes() throws Exception {
+        assertThat(read("-a \"one two\" '\"three\"' --name=\"a b\" \"\""), contains("-a", "one two", "\"three\"", "--name=a b", ""));
+    }
+
+    @Test
+    public void supportsComments() throws Exception {
+        assertThat(read("# a comment\n-a one # trailing\n-b a#b"), contains("-a", "one", "-b", "a#b"));
+    }
+
+    @Test
+    public void decodesUtf8() throws Exception {
+        assertThat(read("-a café über"), contains("-a", "café", "über"));
+    }
+
+    @Test
+    public void tokensCanSpanBufferReads() throws Exception {
+        Path file = write("-a some-long-token \"quoted across the buffer\" café");
+
+        List<String> tokens = new ArrayList<>();
+        ArgumentFile.read(file, tokens::add, 3);
+
+        assertThat(tokens, contains("-a", "some-long-token", "quoted across the buffer", "café"));
+    }
+
+    @Test
+    public void streamsLargeFiles() throws Exception {
+        Path file = tempDir.resolve("large.args");
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            writer.write("-b");
+            for (int i = 0; i < 100_000; ++i) {
+                writer.write(' ');
+                writer.write(Integer.toString(i));
+            }
+        }
+
+        AtomicInteger count = new AtomicInteger();
+        ArgumentFile.read("@" + file, token -> count.incrementAndGet());
+
+        assertThat(count.get(), equalTo(100_001));
+    }
+
+    @Test
+    public void expandsArgs() throws Exception {
+        Path file = write("-b 1 2");
+        String[] args = {"-a", "x"};
+
+        assertThat(ArgumentFile.expand(args), sameInstance(args));
+        assertThat(ArgumentFile.expand(new String[]{"-a", "x", "@" + file, "@@literal", "@"}), arrayContaining("-a", "x", "-b", "1", "2", "@literal", "@"));
+    }
+
+    @Test
+    public void resolvesRelativePathsAgainstTheWorkingDirectory() throws Exception {
+        Path file = write("-b 1");
+        List<String> tokens = new ArrayList<>();
+
+        ArgumentFile.read("@" + file.getFileName(), tempDir, tokens::add);
+
+        assertThat(tokens, contains("-b", "1"));
+        assertThat(ArgumentFile.expand(new String[]{"@" + file.getFileName()}, tempDir), arrayContaining("-b", "1"));
+    }
+
+    @Test
+    public void reportsErrors() throws Exception {
+        Path missing = tempDir.resolve("missing.args");
+        expect(() -> ArgumentFile.read("@" + missing, token -> {
+        }))
+            .toThrow(ParseException.class)
+            .withMessage("Unable to read argument file '" + missing + "': " + missing);
+
+        Path unterminated = write("-a \"one");
+        expect(() -> ArgumentFile.read("@" + unterminated, token -> {
+        }))
+            .toThrow(ParseException.class)
+            .withMessage("Unterminated quote in argument file '" + unterminated + "'.");
+    }
+
+    private List<String> read(String contents) throws Exception {
+        List<String> tokens = new ArrayList<>();
+        ArgumentFile.read("@" + write(contents), tokens::add);
+        return tokens;
+    }
+
+    private Path write(String contents) throws Exception {
+        Path file = Files.createTempFile(tempDir, "test", ".args");
+        Files.write(file, contents.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.zepben.commandlinearguments;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import static com.zepben.testutils.exception.ExpectException.expect;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class AsyncValidatorsTest {
+
+    @Test
+    public void runsValidatorsConcurrently() throws Exception {
+        // Each check waits for the other to start, so they only pass if they run at the same time.
+        CountDownLatch started = new CountDownLatch(2);
+        AsyncArgsValidator check = AsyncArgsValidator.blocking(args -> {
+            started.countDown();
+            try {
+                if (!started.await(10, TimeUnit.SECONDS))
+                    throw new ParseException("The checks did not run concurrently.");
+            } catch (InterruptedException e) {
+                throw new ParseException("Interrupted.");
+            }
+        });
+
+        AsyncCmdArgs cmdArgs = new AsyncCmdArgs(false, check, check);
+        cmdArgs.parse(new String[]{"--path", "a"});
+
+        assertThat(started.getCount(), equalTo(0L));
+    }
+
+    @Test
+    public void reportsTheFirstFailure() {
+        AsyncCmdArgs cmdArgs = new AsyncCmdArgs(false, pathMustExist(), (args, executor) -> CompletableFuture.completedFuture(null));
+
+        expect(() -> cmdArgs.parse(new String[]{"--path", "missing"}))
+            .toThrow(OptionValueException.class)
+            .withMessage("The path 'missing' does not exist.");
+    }
+
+    @Test
+    public void stopsWaitingAtTheFirstFailure() {
+        CompletableFuture<?> never = new CompletableFuture<>();
+        AsyncCmdArgs cmdArgs = new AsyncCmdArgs(false, (args, executor) -> never, pathMustExist());
+        cmdArgs.timeout = Duration.ofMinutes(10);
+
+        expect(() -> cmdArgs.parse(new String[]{"--path", "missing"}))
+            .toThrow(OptionValueException.class)
+            .withMessage("The path 'missing' does not exist.");
+        assertThat(never.isCancelled(), equalTo(true));
+    }
+
+    @Test
+    public void neverReusesArgsThatCancelledValidatorsMayRead() throws Exception {
+        AtomicReference<ParsedArgs> validated = new AtomicReference<>();
+        AsyncCmdArgs cmdArgs = new AsyncCmdArgs(false, (args, executor) -> {
+            if (validated.compareAndSet(null, args))
+                return new CompletableFuture<>();
+            return CompletableFuture.completedFuture(null);
+        });
+        cmdArgs.timeout = Duration.ofMillis(50);
+
+        expect(() -> cmdArgs.parse(new String[]{"--path", "a"})).toThrow(ParseException.class);
+
+        for (int i = 0; i < 3; ++i) {
+            cmdArgs.parse(new String[]{"--path", "b" + i});
+            assertThat(cmdArgs.parsedArgs(), not(sameInstance(validated.get())));
+        }
+        assertThat(validated.get().getRequiredStringArg("path"), equalTo("a"));
+    }
+
+    @Test
+    public void collectsEveryFailure() {
+        AsyncCmdArgs cmdArgs = new AsyncCmdArgs(
+            true,
+            pathMustExist(),
+            (args, executor) -> failed(new IOException("Connection refused")),
+            (args, executor) -> CompletableFuture.completedFuture(null)
+        );
+
+        try {
+            cmdArgs.parse(new String[]{"--path", "missing", "--port", "x"});
+            throw new AssertionError("Expected the parse to fail.");
+        } catch (ParseErrorsException e) {
+            assertThat(e.errors().stream().map(ParseException::getMessage).collect(Collectors.toList()), contains(
+                "Invalid integer 'x' for argument port.",
+                "The path 'missing' does not exist.",
+                "Unable to validate the command line arguments: java.io.IOException: Connection refused"
+            ));
+        } catch (ParseException e) {
+            throw new AssertionError("Expected the errors to be collected.", e);
+        }
+    }
+
+    @Test
+    public void enforcesTheDeadline() {
+        CompletableFuture<?> never = new CompletableFuture<>();
+        AsyncCmdArgs cmdArgs = new AsyncCmdArgs(false, (args, executor) -> never);
+        cmdArgs.timeout = Duration.ofMillis(50);
+
+        expect(() -> cmdArgs.parse(new String[]{"--path", "a"}))
+            .toThrow(ParseException.class)
+            .withMessage("The command line arguments were not validated within 50 ms.");
+        assertThat(never.isCancelled(), equalTo(true));
+    }
+
+    @Test
+    public void skipsValidationWhenHelpIsRequested() throws Exception {
+        List<String> validated = new ArrayList<>();
+        AsyncCmdArgs cmdArgs = new AsyncCmdArgs(false, (args, executor) -> {
+            validated.add("called");
+            return CompletableFuture.completedFuture(null);
+        });
+
+        cmdArgs.parse(new String[]{"-h"});
+        assertThat(validated, empty());
+
+        cmdArgs.parse(new String[]{"--path", "a"});
+        assertThat(validated, contains("called"));
+    }
+
+    @Test
+    public void neverReusesArgsReadByValidatorsCancelledByAnUncheckedFailure() throws Exception {
+        CountDownLatch reparsed = new CountDownLatch(1);
+        CompletableFuture<String> seen = new CompletableFuture<>();
+        AtomicReference<ParsedArgs> first = new AtomicReference<>();
+        AsyncArgsValidator slow = (args, executor) -> {
+            if (!first.compareAndSet(null, args))
+                return CompletableFuture.completedFuture(null);
+
+            // The work is started on its own thread, as cancelling the returned future can't stop it once it has started.
+            CompletableFuture<?> validated = new CompletableFuture<>();
+            new Thread(() -> {
+                try {
+                    reparsed.await(10, TimeUnit.SECONDS);
+                    seen.complete(args.getRequiredStringArg("path"));
+                } catch (InterruptedException | ParseException e) {
+                    seen.completeExceptionally(e);
+                }
+                validated.complete(null);
+            }).start();
+            return validated;
+        };
+        AsyncArgsValidator crashing = (args, executor) -> {
+            if (first.get() == args)
+                throw new IllegalStateException("Crashed.");
+            return CompletableFuture.completedFuture(null);
+        };
+
+        AsyncCmdArgs cmdArgs = new AsyncCmdArgs(false, slow, crashing);
+        expect(() -> cmdArgs.parse(new String[]{"--path", "first"}))
+            .toThrow(IllegalStateException.class)
+            .withMessage("Crashed.");
+
+        cmdArgs.parse(new String[]{"--path", "second"});
+        cmdArgs.parse(new String[]{"--path", "third"});
+        reparsed.countDown();
+
+        assertThat(seen.get(10, TimeUnit.SECONDS), equalTo("first"));
+        assertThat(cmdArgs.parsedArgs(), not(sameInstance(first.get())));
+    }
+
+    private static AsyncArgsValidator pathMustExist() {
+        return AsyncArgsValidator.blocking(args -> {
+            String path = args.getRequiredStringArg("path");
+            if (!"a".equals(path))
+                throw new OptionValueException("path", path, OptionValueException.Reason.REJECTED, "The path '%s' does not exist.", path);
+        });
+    }
+
+    private static CompletableFuture<?> failed(Throwable throwable) {
+        CompletableFuture<?> future = new CompletableFuture<>();
+        future.completeExceptionally(throwable);
+        return future;
+    }
+
+    @EverythingIsNonnullByDefault
+    private static class AsyncCmdArgs extends CmdArgsBase {
+
+        private final boolean collect;
+        private final List<AsyncArgsValidator> validators;
+        private Duration timeout = Duration.ofSeconds(10);
+
+        AsyncCmdArgs(boolean collect, AsyncArgsValidator... validators) {
+            this.collect = collect;
+            this.validators = Arrays.asList(validators);
+        }
+
+        @Override
+        protected void addCustomOptions(Options options) {
+            options.addOption(Option.builder().longOpt("path").hasArg().build());
+            options.addOption(Option.builder().longOpt("port").hasArg().build());
+        }
+
+        @Override
+        protected void extractCustomOptions() throws ParseException {
+            getOptionalIntArg("port");
+        }
+
+        @Override
+        protected boolean collectErrors() {
+            return collect;
+        }
+
+        @Override
+        protected List<AsyncArgsValidator> asyncValidators() {
+            return validators;
+        }
+
+        @Override
+        protected Duration validationTimeout() {
+            return timeout;
+        }
+
+    }
+
+}
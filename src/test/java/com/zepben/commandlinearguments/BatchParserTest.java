@@ -0,0 +1,128 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.zepben.commandlinearguments;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import org.apache.commons.cli.MissingArgumentException;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.UnrecognizedOptionException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+import static com.github.npathai.hamcrestopt.OptionalMatchers.isEmpty;
+import static com.github.npathai.hamcrestopt.OptionalMatchers.isPresentAnd;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class BatchParserTest {
+
+    private final TestCmdArgs cmdArgs = new TestCmdArgs();
+
+    @Test
+    public void parsesEveryCommandLine() throws Exception {
+        List<String[]> commandLines = new ArrayList<>();
+        for (int i = 0; i < 1000; ++i) {
+            if (i % 3 == 0)
+                commandLines.add(new String[]{"-z", Integer.toString(i)});
+            else if (i % 3 == 1)
+                commandLines.add(new String[]{"-a"});
+            else
+                commandLines.add(new String[]{"-a", Integer.toString(i), "-b", "1", "2"});
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            List<ParseResult> results = new BatchParser(cmdArgs.schema(), pool, false).parseAll(commandLines);
+
+            assertThat(results, hasSize(1000));
+            for (int i = 0; i < 1000; ++i) {
+                ParseResult result = results.get(i);
+                assertThat(result.args(), sameInstance(commandLines.get(i)));
+
+                if (i % 3 == 0) {
+                    assertThat(result.isSuccess(), equalTo(false));
+                    assertThat(result.parsedArgs(), isEmpty());
+                    assertThat(result.exception(), isPresentAnd(instanceOf(UnrecognizedOptionException.class)));
+                } else if (i % 3 == 1) {
+                    assertThat(result.exception(), isPresentAnd(instanceOf(MissingArgumentException.class)));
+                } else {
+                    assertThat(result.isSuccess(), equalTo(true));
+                    assertThat(result.exception(), isEmpty());
+                    ParsedArgs parsedArgs = result.parsedArgs().orElseThrow(AssertionError::new);
+                    assertThat(parsedArgs.getRequiredIntArg("a"), equalTo(i));
+                    assertThat(parsedArgs.getRequiredIntArgList("b"), equalTo(new int[]{1, 2}));
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void parsesStreams() throws Exception {
+        List<ParseResult> results = cmdArgs.batchParser().parseAll(Stream.of(new String[]{"-a", "1"}, new String[]{"-h"}, new String[0]));
+
+        assertThat(results, hasSize(3));
+        assertThat(results.get(0).parsedArgs().orElseThrow(AssertionError::new).getRequiredStringArg("a"), equalTo("1"));
+        assertThat(results.get(1).parsedArgs().orElseThrow(AssertionError::new).isHelpRequested(), equalTo(true));
+        assertThat(Arrays.asList(results.get(2).args()), empty());
+        assertThat(results.get(2).isSuccess(), equalTo(true));
+    }
+
+    @Test
+    public void resolvesFallbacksFromTheEnvironmentOfTheArgs() throws Exception {
+        EnvironmentCmdArgs environmentCmdArgs = new EnvironmentCmdArgs(Collections.singletonMap("BATCH_PORT", "8080"));
+
+        List<ParseResult> results = environmentCmdArgs.batchParser().parseAll(Stream.of(new String[0], new String[]{"--port", "1"}));
+
+        ParsedArgs fromEnvironment = results.get(0).parsedArgs().orElseThrow(AssertionError::new);
+        assertThat(fromEnvironment.getRequiredIntArg("port"), equalTo(8080));
+        assertThat(fromEnvironment.sourceOf("port"), isPresentAnd(equalTo(ValueSource.ENVIRONMENT)));
+        assertThat(results.get(1).parsedArgs().orElseThrow(AssertionError::new).getRequiredIntArg("port"), equalTo(1));
+    }
+
+    @EverythingIsNonnullByDefault
+    private static class EnvironmentCmdArgs extends CmdArgsBase {
+
+        private final Map<String, String> environment;
+
+        EnvironmentCmdArgs(Map<String, String> environment) {
+            this.environment = environment;
+        }
+
+        @Override
+        protected void addCustomOptions(Options options) {
+            options.addOption(Option.builder().longOpt("port").hasArg().build());
+        }
+
+        @Override
+        protected void addFallbacks(Fallbacks fallbacks) {
+            fallbacks.option("port").environmentVariable("BATCH_PORT");
+        }
+
+        @Override
+        protected void extractCustomOptions() {
+        }
+
+        @Override
+        protected Map<String, String> environment() {
+            return environment;
+        }
+
+    }
+
+}
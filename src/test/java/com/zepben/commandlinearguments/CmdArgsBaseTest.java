@@ -9,11 +9,24 @@
 package com.zepben.commandlinearguments;
 
 import com.zepben.annotations.EverythingIsNonnullByDefault;
+import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static com.github.npathai.hamcrestopt.OptionalMatchers.isEmpty;
 import static com.github.npathai.hamcrestopt.OptionalMatchers.isPresentAnd;
@@ -49,6 +62,33 @@ public class CmdArgsBaseTest {
         assertThat(cmdArgs.options().getOption("b"), notNullValue());
     }
 
+    @Test
+    public void schemaIsSharedBetweenInstances() {
+        CountingCmdArgs.created.set(0);
+
+        CmdArgsSchema schema = new CountingCmdArgs().schema();
+        assertThat(new CountingCmdArgs().schema(), sameInstance(schema));
+        assertThat(new CountingCmdArgs().options(), not(sameInstance(new CountingCmdArgs().options())));
+
+        assertThat(CountingCmdArgs.created.get(), equalTo(1));
+        assertThat(new TestCmdArgs().schema(), not(sameInstance(schema)));
+    }
+
+    @Test
+    public void schemaCanBePerInstance() {
+        @EverythingIsNonnullByDefault
+        class UnsharedCmdArgs extends TestCmdArgs {
+            @Override
+            protected boolean isSchemaShared() {
+                return false;
+            }
+        }
+
+        UnsharedCmdArgs unshared = new UnsharedCmdArgs();
+        assertThat(unshared.schema(), sameInstance(unshared.schema()));
+        assertThat(new UnsharedCmdArgs().schema(), not(sameInstance(unshared.schema())));
+    }
+
     @Test
     public void extractsCustomOptionsCalledOnlyWithNoHelpRequested() throws Exception {
         verify(cmdArgs, never()).extractCustomOptions();
@@ -71,6 +111,160 @@ public class CmdArgsBaseTest {
         assertThat(cmdArgs.isHelpRequested(), equalTo(false));
     }
 
+    @Test
+    public void supportsNativeEngine() throws Exception {
+        @EverythingIsNonnullByDefault
+        class NativeCmdArgs extends TestCmdArgs {
+            @Override
+            protected ParserEngine parserEngine() {
+                return ParserEngine.NATIVE;
+            }
+        }
+
+        NativeCmdArgs nativeCmdArgs = new NativeCmdArgs();
+        nativeCmdArgs.parse(new String[]{"-a", "abc", "-b", "123", "-b", "456"});
+
+        assertThat(nativeCmdArgs.isHelpRequested(), equalTo(false));
+        assertThat(nativeCmdArgs.getRequiredStringArg("a"), equalTo("abc"));
+        assertThat(nativeCmdArgs.getRequiredStringArgList("b"), contains("123", "456"));
+        assertThat(nativeCmdArgs.getRequiredIntArg("b"), equalTo(123));
+        assertThat(nativeCmdArgs.hasArg("c"), equalTo(false));
+
+        nativeCmdArgs.parse(new String[]{"--help"});
+        assertThat(nativeCmdArgs.isHelpRequested(), equalTo(true));
+    }
+
+    @Test
+    public void expandsArgumentFiles(@TempDir Path tempDir) throws Exception {
+        Path file = tempDir.resolve("test.args");
+        Files.write(file, "-a \"a b\"\n-b 1 2 3".getBytes(StandardCharsets.UTF_8));
+
+        for (ParserEngine engine : ParserEngine.values()) {
+            @EverythingIsNonnullByDefault
+            class ArgumentFileCmdArgs extends TestCmdArgs {
+                @Override
+                protected ParserEngine parserEngine() {
+                    return engine;
+                }
+
+                @Override
+                protected boolean expandArgumentFiles() {
+                    return true;
+                }
+            }
+
+            ArgumentFileCmdArgs argumentFileCmdArgs = new ArgumentFileCmdArgs();
+            argumentFileCmdArgs.parse(new String[]{"@" + file, "4"});
+            assertThat(argumentFileCmdArgs.getRequiredStringArg("a"), equalTo("a b"));
+            assertThat(argumentFileCmdArgs.getRequiredIntArgList("b"), equalTo(new int[]{1, 2, 3, 4}));
+
+            argumentFileCmdArgs.parse(new String[]{"-a", "@@" + file});
+            assertThat(argumentFileCmdArgs.getRequiredStringArg("a"), equalTo("@" + file));
+        }
+
+        cmdArgs.parse(new String[]{"-a", "@" + file});
+        assertThat(cmdArgs.getRequiredStringArg("a"), equalTo("@" + file));
+    }
+
+    @Test
+    public void notifiesParseListener() throws Exception {
+        List<String> events = new ArrayList<>();
+        ParseListener listener = new ParseListener() {
+            @Override
+            public void onParseStarted(Class<?> type) {
+                events.add("parse started " + type.getSimpleName());
+            }
+
+            @Override
+            public void onParsed(Class<?> type, ParserEngine engine, long tokenizeNanos, long resolveNanos) {
+                // The native engine resolves the options while it reads the tokens, so it has no separate resolve time.
+                boolean resolveTimed = (engine == ParserEngine.NATIVE) ? (resolveNanos == 0) : (resolveNanos >= 0);
+                events.add("parsed " + engine + " " + (tokenizeNanos >= 0) + " " + resolveTimed);
+            }
+
+            @Override
+            public void onFallbacksResolved(Class<?> type, long durationNanos) {
+                events.add("fallbacks resolved " + (durationNanos >= 0));
+            }
+
+            @Override
+            public void onConversionStarted(Option option) {
+                events.add("conversion started " + option.getOpt());
+            }
+
+            @Override
+            public void onConverted(Option option, Class<?> convertedType, long durationNanos) {
+                events.add("converted " + option.getOpt() + " " + convertedType.getSimpleName());
+            }
+
+            @Override
+            public void onExtractStarted(Class<?> type) {
+                events.add("extract started " + type.getSimpleName());
+            }
+
+            @Override
+            public void onExtracted(Class<?> type, long durationNanos) {
+                events.add("extracted " + type.getSimpleName());
+            }
+        };
+
+        for (ParserEngine engine : ParserEngine.values()) {
+            @EverythingIsNonnullByDefault
+            class ListenedCmdArgs extends TestCmdArgs {
+                @Override
+                protected ParserEngine parserEngine() {
+                    return engine;
+                }
+
+                @Override
+                protected ParseListener parseListener() {
+                    return listener;
+                }
+            }
+
+            events.clear();
+            ListenedCmdArgs listenedCmdArgs = new ListenedCmdArgs();
+            listenedCmdArgs.parse(new String[]{"-a", "2018-12-03", "-b", "123", "-b", "456"});
+            listenedCmdArgs.getRequiredDateArg("a");
+            listenedCmdArgs.getRequiredIntArg("b");
+            listenedCmdArgs.getRequiredIntArg("b");
+            listenedCmdArgs.getRequiredIntArgList("b");
+            listenedCmdArgs.parse(new String[]{"-h"});
+
+            assertThat(events, contains(
+                "parse started ListenedCmdArgs",
+                "parsed " + engine + " true true",
+                "fallbacks resolved true",
+                "extract started ListenedCmdArgs",
+                "extracted ListenedCmdArgs",
+                "conversion started a",
+                "converted a LocalDate",
+                "conversion started b",
+                "converted b Integer",
+                "conversion started b",
+                "converted b int[]",
+                "parse started ListenedCmdArgs",
+                "parsed " + engine + " true true"
+            ));
+        }
+    }
+
+    @Test
+    public void failedParseKeepsPreviousValues() throws Exception {
+        parseArgs("abc");
+
+        expect(() -> cmdArgs.parse(new String[]{"-z"})).toThrow(ParseException.class);
+
+        assertThat(cmdArgs.getRequiredStringArg("a"), equalTo("abc"));
+    }
+
+    @Test
+    public void gettersRequireParsing() {
+        expect(() -> new TestCmdArgs().hasArg("a"))
+            .toThrow(ParseException.class)
+            .withMessage("You must parse the command line arguments before they can be used.");
+    }
+
     @Test
     public void ensureOptionInitialisedWorks() {
         cmdArgs.ensureOptionInitialised("value");
@@ -219,6 +413,132 @@ public class CmdArgsBaseTest {
         assertThat(cmdArgs.getOptionalIntArg("c"), isEmpty());
     }
 
+    @Test
+    public void getRequiredIntArgListHelperWorks() throws Exception {
+        parseArgs("abc");
+
+        assertThat(cmdArgs.getRequiredIntArgList("b"), equalTo(new int[]{123, 456}));
+        assertThat(cmdArgs.getRequiredIntArgList("b", 100), equalTo(new int[]{123, 456}));
+        assertThat(cmdArgs.getRequiredIntArgList("b", 100, 500), equalTo(new int[]{123, 456}));
+        expect(() -> cmdArgs.getRequiredIntArgList("a"))
+            .toThrow(ParseException.class)
+            .withMessage("Invalid integer 'abc' for argument a.");
+        expect(() -> cmdArgs.getRequiredIntArgList("b", 200))
+            .toThrow(ParseException.class)
+            .withMessage("Integer 123 for argument b is out of range. Value must be at least 200.");
+        expect(() -> cmdArgs.getRequiredIntArgList("b", 100, 200))
+            .toThrow(ParseException.class)
+            .withMessage("Integer 456 for argument b is out of range. Expected value in range 100..200.");
+        expect(() -> cmdArgs.getRequiredIntArgList("c"))
+            .toThrow(ParseException.class)
+            .withMessage("Missing required option: c.");
+
+        cmdArgs.getRequiredIntArgList("b")[0] = 0;
+        assertThat(cmdArgs.getRequiredIntArgList("b"), equalTo(new int[]{123, 456}));
+    }
+
+    @Test
+    public void getOptionalIntArgListHelperWorks() throws Exception {
+        parseArgs("abc");
+
+        assertThat(cmdArgs.getOptionalIntArgList("b").map(Arrays::toString), isPresentAnd(equalTo("[123, 456]")));
+        assertThat(cmdArgs.getOptionalIntArgList("b", 100).map(Arrays::toString), isPresentAnd(equalTo("[123, 456]")));
+        assertThat(cmdArgs.getOptionalIntArgList("b", 100, 500).map(Arrays::toString), isPresentAnd(equalTo("[123, 456]")));
+        expect(() -> cmdArgs.getOptionalIntArgList("b", 200, 500))
+            .toThrow(ParseException.class)
+            .withMessage("Integer 123 for argument b is out of range. Expected value in range 200..500.");
+        assertThat(cmdArgs.getOptionalIntArgList("c"), isEmpty());
+        assertThat(cmdArgs.getOptionalIntArgList("c", 100), isEmpty());
+        assertThat(cmdArgs.getOptionalIntArgList("c", 100, 200), isEmpty());
+    }
+
+    @Test
+    public void getRequiredLongArgListHelperWorks() throws Exception {
+        cmdArgs.parse(new String[]{"-a", "abc", "-b", "123", "-b", "12345678901"});
+
+        assertThat(cmdArgs.getRequiredLongArgList("b"), equalTo(new long[]{123, 12345678901L}));
+        assertThat(cmdArgs.getRequiredLongArgList("b", 100), equalTo(new long[]{123, 12345678901L}));
+        assertThat(cmdArgs.getRequiredLongArgList("b", 100, 12345678901L), equalTo(new long[]{123, 12345678901L}));
+        expect(() -> cmdArgs.getRequiredLongArgList("a"))
+            .toThrow(ParseException.class)
+            .withMessage("Invalid integer 'abc' for argument a.");
+        expect(() -> cmdArgs.getRequiredLongArgList("b", 200))
+            .toThrow(ParseException.class)
+            .withMessage("Integer 123 for argument b is out of range. Value must be at least 200.");
+        expect(() -> cmdArgs.getRequiredLongArgList("b", 100, 200))
+            .toThrow(ParseException.class)
+            .withMessage("Integer 12345678901 for argument b is out of range. Expected value in range 100..200.");
+        expect(() -> cmdArgs.getRequiredIntArgList("b"))
+            .toThrow(ParseException.class)
+            .withMessage("Invalid integer '12345678901' for argument b.");
+        expect(() -> cmdArgs.getRequiredLongArgList("c"))
+            .toThrow(ParseException.class)
+            .withMessage("Missing required option: c.");
+    }
+
+    @Test
+    public void getOptionalLongArgListHelperWorks() throws Exception {
+        parseArgs("abc");
+
+        assertThat(cmdArgs.getOptionalLongArgList("b").map(Arrays::toString), isPresentAnd(equalTo("[123, 456]")));
+        assertThat(cmdArgs.getOptionalLongArgList("b", 100).map(Arrays::toString), isPresentAnd(equalTo("[123, 456]")));
+        assertThat(cmdArgs.getOptionalLongArgList("b", 100, 500).map(Arrays::toString), isPresentAnd(equalTo("[123, 456]")));
+        expect(() -> cmdArgs.getOptionalLongArgList("b", 500))
+            .toThrow(ParseException.class)
+            .withMessage("Integer 123 for argument b is out of range. Value must be at least 500.");
+        assertThat(cmdArgs.getOptionalLongArgList("c"), isEmpty());
+        assertThat(cmdArgs.getOptionalLongArgList("c", 100), isEmpty());
+        assertThat(cmdArgs.getOptionalLongArgList("c", 100, 200), isEmpty());
+    }
+
+    @Test
+    public void streamArgsHelpersWork() throws Exception {
+        cmdArgs.parse(new String[]{"-b", "1", "-a", "abc", "-b", "2", "3"});
+
+        assertThat(cmdArgs.streamStringArg("b").collect(Collectors.toList()), contains("1", "2", "3"));
+        assertThat(cmdArgs.streamIntArg("b").toArray(), equalTo(new int[]{1, 2, 3}));
+        assertThat(cmdArgs.streamLongArg("b").sum(), equalTo(6L));
+        assertThat(cmdArgs.streamStringArg("c").count(), equalTo(0L));
+
+        Iterator<String> iterator = cmdArgs.iterateStringArg("b");
+        assertThat(iterator.next(), equalTo("1"));
+        assertThat(iterator.next(), equalTo("2"));
+        assertThat(iterator.next(), equalTo("3"));
+        assertThat(iterator.hasNext(), equalTo(false));
+        assertThat(cmdArgs.iterateStringArg("c").hasNext(), equalTo(false));
+
+        expect(() -> cmdArgs.streamIntArg("a").sum())
+            .toThrow(UncheckedParseException.class)
+            .withMessage("Invalid integer 'abc' for argument a.");
+    }
+
+    @Test
+    public void streamArgsCanBeSplit() throws Exception {
+        String[] args = new String[20001];
+        args[0] = "-b";
+        for (int i = 1; i < args.length; ++i)
+            args[i] = Integer.toString(i);
+        cmdArgs.parse(args);
+
+        assertThat(cmdArgs.streamLongArg("b").parallel().sum(), equalTo(20000L * 20001L / 2));
+        assertThat(cmdArgs.streamStringArg("b").parallel().skip(9999).findFirst(), isPresentAnd(equalTo("10000")));
+    }
+
+    @Test
+    public void streamArgsDetectReparsing() throws Exception {
+        parseArgs("abc");
+        Stream<String> stream = cmdArgs.streamStringArg("b");
+        Iterator<String> iterator = cmdArgs.iterateStringArg("b");
+        iterator.next();
+
+        // The values of a failed parse are kept, so the values being streamed are only reused by the parse after next.
+        parseArgs("def");
+        parseArgs("ghi");
+
+        expect(() -> stream.collect(Collectors.toList())).toThrow(ConcurrentModificationException.class);
+        expect(iterator::next).toThrow(ConcurrentModificationException.class);
+    }
+
     @Test
     public void getRequiredDateArgsHelperWorks() throws Exception {
         parseArgs("2018-12-03");
@@ -243,8 +563,38 @@ public class CmdArgsBaseTest {
         assertThat(cmdArgs.getOptionalDateArg("c"), isEmpty());
     }
 
+    @Test
+    public void typedValuesAreConvertedOncePerParse() throws Exception {
+        parseArgs("2018-12-03");
+
+        LocalDate date = cmdArgs.getRequiredDateArg("a");
+        assertThat(cmdArgs.getRequiredDateArg("a"), sameInstance(date));
+        assertThat(cmdArgs.getOptionalDateArg("a"), isPresentAnd(sameInstance(date)));
+
+        parseArgs("2018-12-03");
+        assertThat(cmdArgs.getRequiredDateArg("a"), not(sameInstance(date)));
+
+        parseArgs("2019-01-01");
+        assertThat(cmdArgs.getRequiredDateArg("a"), equalTo(LocalDate.of(2019, 1, 1)));
+        assertThat(cmdArgs.getRequiredIntArg("b", 100, 200), equalTo(123));
+        assertThat(cmdArgs.getRequiredIntArg("b"), equalTo(123));
+    }
+
     private void parseArgs(String argA) throws Exception {
         cmdArgs.parse(new String[]{"-a", argA, "-b", "123", "-b", "456"});
     }
 
+    @EverythingIsNonnullByDefault
+    private static class CountingCmdArgs extends TestCmdArgs {
+
+        private static final AtomicInteger created = new AtomicInteger();
+
+        @Override
+        protected void addCustomOptions(Options options) {
+            created.incrementAndGet();
+            super.addCustomOptions(options);
+        }
+
+    }
+
 }
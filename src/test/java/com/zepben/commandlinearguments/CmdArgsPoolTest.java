@@ -0,0 +1,180 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.zepben.commandlinearguments;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.zepben.testutils.exception.ExpectException.expect;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class CmdArgsPoolTest {
+
+    @Test
+    public void resetClearsTheParsedArgs() throws Exception {
+        JobCmdArgs cmdArgs = new JobCmdArgs(ParserEngine.NATIVE);
+        cmdArgs.parse(new String[]{"--job", "a"});
+
+        cmdArgs.reset();
+
+        assertThat(cmdArgs.job, equalTo(""));
+        assertThat(cmdArgs.isHelpRequested(), equalTo(true));
+        expect(() -> cmdArgs.getRequiredStringArg("job"))
+            .toThrow(ParseException.class)
+            .withMessage("You must parse the command line arguments before they can be used.");
+
+        cmdArgs.parse(new String[]{"--job", "b"});
+        assertThat(cmdArgs.job, equalTo("b"));
+    }
+
+    @Test
+    public void resetKeepsTheBuffersForTheNextParse() throws Exception {
+        for (ParserEngine engine : ParserEngine.values()) {
+            JobCmdArgs cmdArgs = new JobCmdArgs(engine);
+            cmdArgs.parse(new String[]{"--job", "a"});
+            ParsedArgs buffers = cmdArgs.parsedArgs();
+
+            for (int i = 0; i < 5; ++i) {
+                cmdArgs.reset();
+                cmdArgs.parse(new String[]{"--job", "job" + i});
+
+                assertThat(cmdArgs.parsedArgs(), sameInstance(buffers));
+                assertThat(cmdArgs.job, equalTo("job" + i));
+            }
+        }
+    }
+
+    @Test
+    public void resetLeavesSnapshotsIntact() throws Exception {
+        JobCmdArgs cmdArgs = new JobCmdArgs(ParserEngine.NATIVE);
+        ParsedArgs snapshot = cmdArgs.parseSnapshot(new String[]{"--job", "a"});
+
+        cmdArgs.reset();
+        assertThat(cmdArgs.snapshot(), nullValue());
+
+        cmdArgs.parse(new String[]{"--job", "b"});
+        assertThat(cmdArgs.parsedArgs(), not(sameInstance(snapshot)));
+        assertThat(snapshot.getRequiredStringArg("job"), equalTo("a"));
+    }
+
+    @Test
+    public void poolReusesReleasedInstances() throws Exception {
+        CmdArgsPool<JobCmdArgs> pool = new CmdArgsPool<>(() -> new JobCmdArgs(ParserEngine.NATIVE), 2);
+
+        JobCmdArgs first = pool.acquire();
+        JobCmdArgs second = pool.acquire();
+        JobCmdArgs third = pool.acquire();
+        pool.release(first);
+        pool.release(second);
+        pool.release(third);
+
+        assertThat(pool.idleCount(), equalTo(2));
+        assertThat(pool.acquire(), sameInstance(first));
+        assertThat(pool.parse(new String[]{"--job", "x"}, args -> args.job), equalTo("x"));
+        assertThat(pool.acquire(), sameInstance(second));
+    }
+
+    @Test
+    public void snapshotsOutliveTheirPooledInstance() throws Exception {
+        CmdArgsPool<JobCmdArgs> pool = new CmdArgsPool<>(() -> new JobCmdArgs(ParserEngine.NATIVE), 1);
+
+        JobCmdArgs instance = pool.acquire();
+        ParsedArgs snapshot = instance.parseSnapshot(new String[]{"--job", "kept"});
+        pool.release(instance);
+
+        assertThat(pool.parse(new String[]{"--job", "next"}, args -> args.job), equalTo("next"));
+        assertThat(snapshot.getRequiredStringArg("job"), equalTo("kept"));
+    }
+
+    @Test
+    public void poolReleasesInstancesThatFailToParse() {
+        CmdArgsPool<JobCmdArgs> pool = new CmdArgsPool<>(() -> new JobCmdArgs(ParserEngine.COMMONS_CLI), 1);
+
+        expect(() -> pool.parse(new String[]{"--unknown"}, args -> args.job)).toThrow(ParseException.class);
+
+        assertThat(pool.idleCount(), equalTo(1));
+    }
+
+    @Test
+    public void poolCanBeSharedByThreads() throws Exception {
+        CmdArgsPool<JobCmdArgs> pool = new CmdArgsPool<>(() -> new JobCmdArgs(ParserEngine.NATIVE), 4);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int worker = 0; worker < 4; ++worker) {
+                String prefix = "worker" + worker + "-";
+                workers.add(executor.submit(() -> {
+                    for (int i = 0; i < 500; ++i) {
+                        String job = prefix + i;
+                        assertThat(pool.parse(new String[]{"--job", job}, args -> args.job), equalTo(job));
+                    }
+                    return null;
+                }));
+            }
+
+            for (Future<?> worker : workers)
+                worker.get(30, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(pool.idleCount(), lessThanOrEqualTo(4));
+    }
+
+    @Test
+    public void poolMustKeepAnInstance() {
+        expect(() -> new CmdArgsPool<>(() -> new JobCmdArgs(ParserEngine.NATIVE), 0))
+            .toThrow(IllegalArgumentException.class)
+            .withMessage("INTERNAL ERROR: The pool must keep at least 1 idle instance, not 0.");
+    }
+
+    @EverythingIsNonnullByDefault
+    private static class JobCmdArgs extends CmdArgsBase {
+
+        private final ParserEngine engine;
+        private String job = "";
+
+        JobCmdArgs(ParserEngine engine) {
+            this.engine = engine;
+        }
+
+        @Override
+        protected void addCustomOptions(Options options) {
+            options.addOption(Option.builder().longOpt("job").hasArg().build());
+        }
+
+        @Override
+        protected void extractCustomOptions() throws ParseException {
+            job = getRequiredStringArg("job");
+        }
+
+        @Override
+        protected void resetCustomOptions() {
+            job = "";
+        }
+
+        @Override
+        protected ParserEngine parserEngine() {
+            return engine;
+        }
+
+    }
+
+}
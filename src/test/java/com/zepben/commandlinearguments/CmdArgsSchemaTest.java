@@ -0,0 +1,141 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.zepben.commandlinearguments;
+
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.OptionGroup;
+import org.apache.commons.cli.Options;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class CmdArgsSchemaTest {
+
+    private final Options options = new Options()
+        .addOption(Option.builder("a").longOpt("alpha").hasArg().build())
+        .addOption(Option.builder("b").hasArgs().build())
+        .addOption(Option.builder().longOpt("charlie").build());
+
+    private final CmdArgsSchema schema = CmdArgsSchema.compile(options);
+
+    @Test
+    public void assignsSlotsInRegistrationOrder() {
+        assertThat(schema.size(), equalTo(3));
+        assertThat(schema.option(0).getOpt(), equalTo("a"));
+        assertThat(schema.option(1).getOpt(), equalTo("b"));
+        assertThat(schema.option(2).getLongOpt(), equalTo("charlie"));
+    }
+
+    @Test
+    public void optionsAreCopied() {
+        CmdArgsSchema schema = CmdArgsSchema.compile(new Options()
+            .addOption(Option.builder("a").hasArg().build())
+            .addOptionGroup(new OptionGroup()
+                .addOption(Option.builder("b").build())
+                .addOption(Option.builder("c").build()))
+            .addOption(Option.builder("d").required().build()));
+
+        Options copy = schema.options();
+        assertThat(copy, not(sameInstance(schema.options())));
+        assertThat(copy.getOptions().stream().map(Option::getOpt).toArray(), arrayContaining("a", "b", "c", "d"));
+        assertThat(copy.getOption("a"), not(sameInstance(schema.option(0))));
+        assertThat(copy.getOptionGroup(copy.getOption("b")), sameInstance(copy.getOptionGroup(copy.getOption("c"))));
+        assertThat(copy.getOptionGroup(copy.getOption("b")), not(sameInstance(schema.group(0))));
+        assertThat(copy.getRequiredOptions(), equalTo(Collections.singletonList("d")));
+
+        copy.addOption(Option.builder("e").build());
+        copy.getOption("a").setArgs(2);
+        copy.getOption("d").setRequired(false);
+
+        assertThat(schema.options().getOptions(), hasSize(4));
+        assertThat(schema.option("a").getArgs(), equalTo(1));
+        assertThat(schema.option("d").isRequired(), equalTo(true));
+    }
+
+    @Test
+    public void indexesShortAndLongNames() {
+        assertThat(schema.slotOf("a"), equalTo(0));
+        assertThat(schema.slotOf("alpha"), equalTo(0));
+        assertThat(schema.slotOf("b"), equalTo(1));
+        assertThat(schema.slotOf("charlie"), equalTo(2));
+
+        assertThat(schema.option("alpha"), sameInstance(schema.option(0)));
+    }
+
+    @Test
+    public void ignoresLeadingHyphens() {
+        assertThat(schema.slotOf("-a"), equalTo(0));
+        assertThat(schema.slotOf("--alpha"), equalTo(0));
+        assertThat(schema.slotOf("--charlie"), equalTo(2));
+    }
+
+    @Test
+    public void unknownNames() {
+        assertThat(schema.slotOf("d"), equalTo(-1));
+        assertThat(schema.slotOf("alp"), equalTo(-1));
+        assertThat(schema.option("d"), nullValue());
+    }
+
+    @Test
+    public void matchesLongNamePrefixes() {
+        CmdArgsSchema schema = CmdArgsSchema.compile(new Options()
+            .addOption(Option.builder().longOpt("ver").build())
+            .addOption(Option.builder().longOpt("verbose").build())
+            .addOption(Option.builder().longOpt("version").build())
+            .addOption(Option.builder().longOpt("output").build()));
+
+        assertThat(schema.matchLong("ver"), equalTo(0));
+        assertThat(schema.matchLong("verb"), equalTo(1));
+        assertThat(schema.matchLong("vers"), equalTo(2));
+        assertThat(schema.matchLong("o"), equalTo(3));
+        assertThat(schema.matchLong("ve"), equalTo(CmdArgsSchema.AMBIGUOUS));
+        assertThat(schema.matchLong(""), equalTo(CmdArgsSchema.AMBIGUOUS));
+        assertThat(schema.matchLong("verbosely"), equalTo(CmdArgsSchema.NO_MATCH));
+        assertThat(schema.matchLong("x"), equalTo(CmdArgsSchema.NO_MATCH));
+        assertThat(schema.matchingLongNames("vers"), contains("version"));
+
+        CmdArgsSchema single = CmdArgsSchema.compile(new Options()
+            .addOption(Option.builder("a").build())
+            .addOption(Option.builder().longOpt("only").build()));
+        assertThat(single.matchLong("on"), equalTo(1));
+        assertThat(single.matchLong(""), equalTo(1));
+        assertThat(single.matchLong("a"), equalTo(CmdArgsSchema.NO_MATCH));
+        assertThat(single.matchLong("onlyx"), equalTo(CmdArgsSchema.NO_MATCH));
+    }
+
+    @Test
+    public void matchesLongNamesLikeCommonsCli() {
+        Options options = new Options();
+        for (int i = 0; i < 300; ++i)
+            options.addOption(Option.builder().longOpt("option-" + Integer.toString(i, 7)).build());
+        CmdArgsSchema schema = CmdArgsSchema.compile(options);
+
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 400; ++i) {
+            String name = "option-" + Integer.toString(i, 7);
+            for (int length = 0; length <= name.length(); ++length)
+                names.add(name.substring(0, length));
+        }
+
+        for (String name : names) {
+            List<String> matching = options.getMatchingOptions(name);
+            int expected = matching.isEmpty() ? CmdArgsSchema.NO_MATCH
+                : matching.size() > 1 ? CmdArgsSchema.AMBIGUOUS
+                : schema.slotOf(matching.get(0));
+
+            assertThat(name, schema.matchLong(name), equalTo(expected));
+        }
+    }
+
+}
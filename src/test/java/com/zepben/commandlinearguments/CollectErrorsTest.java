@@ -0,0 +1,218 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.zepben.commandlinearguments;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.github.npathai.hamcrestopt.OptionalMatchers.isEmpty;
+import static com.github.npathai.hamcrestopt.OptionalMatchers.isPresentAnd;
+import static com.zepben.testutils.exception.ExpectException.expect;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class CollectErrorsTest {
+
+    private static final String[] INVALID_ARGS = {"--port", "0", "--count", "x", "--date", "2020-13-01", "--ids", "1", "y"};
+
+    @Test
+    public void collectsEveryError() {
+        ParseErrorsException exception = parseErrors(new ValidatingCmdArgs(true), INVALID_ARGS);
+
+        assertThat(messages(exception), contains(
+            "Integer 0 for argument port is out of range. Expected value in range 1..65535.",
+            "Invalid integer 'x' for argument count.",
+            "Invalid date '2020-13-01' for argument date.",
+            "Invalid integer 'y' for argument ids.",
+            "Missing required option: name.",
+            "Integer 0 for argument port is out of range. Value must be at least 1."
+        ));
+        assertThat(exception.getMessage(), startsWith("Found 6 errors in the command line arguments:" + System.lineSeparator()
+            + "  Integer 0 for argument port is out of range."));
+    }
+
+    @Test
+    public void errorsIdentifyTheOption() {
+        List<ParseException> errors = parseErrors(new ValidatingCmdArgs(true), INVALID_ARGS).errors();
+
+        OptionValueException outOfRange = (OptionValueException) errors.get(0);
+        assertThat(outOfRange.option(), equalTo("port"));
+        assertThat(outOfRange.value(), isPresentAnd(equalTo("0")));
+        assertThat(outOfRange.reason(), equalTo(OptionValueException.Reason.OUT_OF_RANGE));
+
+        OptionValueException invalid = (OptionValueException) errors.get(1);
+        assertThat(invalid.option(), equalTo("count"));
+        assertThat(invalid.value(), isPresentAnd(equalTo("x")));
+        assertThat(invalid.reason(), equalTo(OptionValueException.Reason.INVALID));
+
+        OptionValueException missing = (OptionValueException) errors.get(4);
+        assertThat(missing.option(), equalTo("name"));
+        assertThat(missing.value(), isEmpty());
+        assertThat(missing.reason(), equalTo(OptionValueException.Reason.MISSING));
+    }
+
+    @Test
+    public void extractionCanAddErrors() {
+        ParseErrorsException exception = parseErrors(new ValidatingCmdArgs(true), "--port", "80", "--count", "1");
+
+        assertThat(messages(exception), contains(
+            "Missing required option: name.",
+            "The port must be above 1024 to run unprivileged.",
+            "The count and ids must be given together."
+        ));
+    }
+
+    @Test
+    public void singleErrorKeepsItsMessage() {
+        ParseErrorsException exception = parseErrors(new ValidatingCmdArgs(true), "--port", "2000", "--name", "abc", "--count", "x", "--ids", "1");
+
+        assertThat(exception.getMessage(), equalTo("Invalid integer 'x' for argument count."));
+    }
+
+    @Test
+    public void errorsCanBeSerialized() throws Exception {
+        ParseErrorsException exception = new ParseErrorsException(Arrays.asList(
+            new OptionValueException("port", "0", OptionValueException.Reason.OUT_OF_RANGE, "Port %s is not in %s.", "0", new Object() {
+                @Override
+                public String toString() {
+                    return "1..65535";
+                }
+            }),
+            new ParseException("Second.")
+        ));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(exception);
+        }
+        ParseErrorsException copy;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            copy = (ParseErrorsException) in.readObject();
+        }
+
+        assertThat(messages(copy), contains("Port 0 is not in 1..65535.", "Second."));
+        assertThat(((OptionValueException) copy.errors().get(0)).option(), equalTo("port"));
+    }
+
+    @Test
+    public void stopsAtTheFirstErrorByDefault() {
+        expect(() -> new ValidatingCmdArgs(false).parse(INVALID_ARGS))
+            .toThrow(OptionValueException.class)
+            .withMessage("Integer 0 for argument port is out of range. Expected value in range 1..65535.");
+        expect(() -> new ValidatingCmdArgs(false).parse(new String[]{"--port", "80", "--name", "abc"}))
+            .toThrow(ParseException.class)
+            .withMessage("The port must be above 1024 to run unprivileged.");
+    }
+
+    @Test
+    public void validArgsAreExtracted() throws Exception {
+        for (boolean collect : Arrays.asList(false, true)) {
+            ValidatingCmdArgs cmdArgs = new ValidatingCmdArgs(collect);
+            cmdArgs.parse(new String[]{"--port", "2000", "--name", "abc", "--count", "2", "--ids", "1", "2", "--date", "2020-10-08"});
+
+            assertThat(cmdArgs.port, equalTo(2000));
+            assertThat(cmdArgs.name, equalTo("abc"));
+            assertThat(cmdArgs.count, equalTo(2));
+            assertThat(cmdArgs.ids, equalTo(new int[]{1, 2}));
+            assertThat(cmdArgs.date, equalTo(LocalDate.of(2020, 10, 8)));
+        }
+    }
+
+    @Test
+    public void gettersThrowOutsideOfParsing() throws Exception {
+        ValidatingCmdArgs cmdArgs = new ValidatingCmdArgs(true);
+        cmdArgs.parse(new String[]{"--port", "2000", "--name", "abc"});
+
+        expect(() -> cmdArgs.getRequiredIntArg("count"))
+            .toThrow(OptionValueException.class)
+            .withMessage("Missing required option: count.");
+    }
+
+    private static ParseErrorsException parseErrors(CmdArgsBase cmdArgs, String... args) {
+        try {
+            cmdArgs.parse(args);
+        } catch (ParseErrorsException e) {
+            return e;
+        } catch (ParseException e) {
+            throw new AssertionError("Expected the errors to be collected.", e);
+        }
+        throw new AssertionError("Expected the parse to fail.");
+    }
+
+    private static List<String> messages(ParseErrorsException exception) {
+        return exception.errors().stream().map(ParseException::getMessage).collect(Collectors.toList());
+    }
+
+    @EverythingIsNonnullByDefault
+    private static class ValidatingCmdArgs extends CmdArgsBase {
+
+        private final boolean collect;
+
+        private int port = 0;
+        private String name = "";
+        private int count = 0;
+        private int[] ids = new int[0];
+        private LocalDate date = LocalDate.MIN;
+
+        ValidatingCmdArgs(boolean collect) {
+            this.collect = collect;
+        }
+
+        @Override
+        protected void addCustomOptions(Options options) {
+            options.addOption(Option.builder().longOpt("port").hasArg().build());
+            options.addOption(Option.builder().longOpt("name").hasArg().build());
+            options.addOption(Option.builder().longOpt("count").hasArg().build());
+            options.addOption(Option.builder().longOpt("ids").hasArgs().build());
+            options.addOption(Option.builder().longOpt("date").hasArg().build());
+        }
+
+        @Override
+        protected void extractCustomOptions() throws ParseException {
+            port = getRequiredIntArg("port", 1, 65535);
+            count = getOptionalIntArg("count").orElse(0);
+            date = getOptionalDateArg("date").orElse(LocalDate.MIN);
+            ids = getOptionalIntArgList("ids").orElse(new int[0]);
+            name = getRequiredStringArg("name");
+
+            if ((port > 0) && (port <= 1024))
+                addError(new OptionValueException("port", Integer.toString(port), OptionValueException.Reason.REJECTED, "The port must be above 1024 to run unprivileged."));
+        }
+
+        @Override
+        protected boolean collectErrors() {
+            return collect;
+        }
+
+        @Override
+        protected List<ArgsValidator> validators() {
+            return Arrays.asList(
+                args -> {
+                    if (args.hasArg("count") != args.hasArg("ids"))
+                        throw new ParseException("The count and ids must be given together.");
+                },
+                args -> args.getOptionalIntArg("port", 1)
+            );
+        }
+
+    }
+
+}
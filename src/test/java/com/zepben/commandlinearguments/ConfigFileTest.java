@@ -0,0 +1,268 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.zepben.commandlinearguments;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.github.npathai.hamcrestopt.OptionalMatchers.isPresentAnd;
+import static com.zepben.testutils.exception.ExpectException.expect;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class ConfigFileTest {
+
+    @TempDir
+    public Path tempDir;
+
+    @Test
+    public void readsKeyValuePairs() throws Exception {
+        Path config = write("a.conf",
+            "# A comment",
+            "port = 8080",
+            "  name: \"café: über\"  ",
+            "",
+            "tags: a, 'b, c' ,\"d,\" , 'e",
+            "verbose = TRUE",
+            "ids:",
+            "  - 1",
+            "  # A comment between items",
+            "  -   2",
+            "pairs = x=y");
+
+        for (ParserEngine engine : ParserEngine.values()) {
+            ConfigCmdArgs cmdArgs = new ConfigCmdArgs(engine);
+            cmdArgs.parse(new String[]{"--config", config.toString()});
+
+            assertThat(cmdArgs.getRequiredIntArg("port"), equalTo(8080));
+            assertThat(cmdArgs.getRequiredStringArg("name"), equalTo("café: über"));
+            assertThat(cmdArgs.getRequiredStringArgList("tags"), contains("a", "b, c", "d,", "'e"));
+            assertThat(cmdArgs.hasArg("verbose"), equalTo(true));
+            assertThat(cmdArgs.getRequiredIntArgList("ids"), equalTo(new int[]{1, 2}));
+            assertThat(cmdArgs.getRequiredStringArgList("pairs"), contains("x", "y"));
+            assertThat(cmdArgs.sourceOf("port"), isPresentAnd(equalTo(ValueSource.CONFIG_FILE)));
+            assertThat(cmdArgs.sourceOf("config"), isPresentAnd(equalTo(ValueSource.COMMAND_LINE)));
+        }
+    }
+
+    @Test
+    public void mergesBelowTheCommandLine() throws Exception {
+        Path first = write("first.conf", "port = 1", "name = first", "ids:", "  - 1", "verbose = true");
+        Path second = write("second.conf", "name = second", "tags = x");
+
+        ConfigCmdArgs cmdArgs = new ConfigCmdArgs(ParserEngine.NATIVE);
+        cmdArgs.parse(new String[]{"--config", first.toString(), second.toString(), "--port", "2", "--ids", "3"});
+
+        assertThat(cmdArgs.getRequiredIntArg("port"), equalTo(2));
+        assertThat(cmdArgs.sourceOf("port"), isPresentAnd(equalTo(ValueSource.COMMAND_LINE)));
+        assertThat(cmdArgs.getRequiredStringArg("name"), equalTo("second"));
+        assertThat(cmdArgs.getRequiredStringArgList("tags"), contains("x"));
+        assertThat(cmdArgs.getRequiredIntArgList("ids"), equalTo(new int[]{3}));
+        assertThat(cmdArgs.hasArg("verbose"), equalTo(true));
+        assertThat(cmdArgs.getRequiredStringArg("mode"), equalTo("fallback"));
+        assertThat(cmdArgs.sourceOf("mode"), isPresentAnd(equalTo(ValueSource.DEFAULT)));
+    }
+
+    @Test
+    public void readsLargeFiles() throws Exception {
+        Path config = tempDir.resolve("large.conf");
+        try (BufferedWriter writer = Files.newBufferedWriter(config)) {
+            writer.write("ids:\n");
+            for (int i = 0; i < 200_000; ++i)
+                writer.write("  - " + i + "\n");
+            writer.write("tags = ");
+            for (int i = 0; i < 200_000; ++i)
+                writer.write(i == 0 ? "t0" : ", t" + i);
+            writer.write("\n");
+        }
+
+        ConfigCmdArgs cmdArgs = new ConfigCmdArgs(ParserEngine.NATIVE);
+        cmdArgs.parse(new String[]{"--config", config.toString()});
+
+        assertThat(cmdArgs.getRequiredIntArgList("ids").length, equalTo(200_000));
+        assertThat(cmdArgs.getRequiredIntArgList("ids")[199_999], equalTo(199_999));
+        assertThat(cmdArgs.getRequiredStringArgList("tags").size(), equalTo(200_000));
+        assertThat(cmdArgs.getRequiredStringArgList("tags").get(199_999), equalTo("t199999"));
+    }
+
+    @Test
+    public void readsLinesAcrossTheBuffer() throws Exception {
+        Path config = write("small.conf", "port = 8080\r", "name: \"café: über\"", "ids:", "  - 1", "  - 22");
+        Options options = new Options();
+        options.addOption(Option.builder().longOpt("port").hasArg().build());
+        options.addOption(Option.builder().longOpt("name").hasArg().build());
+        options.addOption(Option.builder().longOpt("ids").hasArgs().build());
+        CmdArgsSchema schema = CmdArgsSchema.compile(options);
+
+        for (int bufferSize = 1; bufferSize <= 8; ++bufferSize) {
+            OptionValues values = new OptionValues();
+            values.reset(schema.size());
+            ConfigFile.read(config, schema, values, bufferSize);
+
+            assertThat(values.first(schema.slotOf("port")), equalTo("8080"));
+            assertThat(values.first(schema.slotOf("name")), equalTo("café: über"));
+            assertThat(values.values(schema.slotOf("ids")), arrayContaining("1", "22"));
+        }
+    }
+
+    @Test
+    public void splitsOnNonAsciiValueSeparators() throws Exception {
+        Path config = write("arrows.conf", "route = a→b→ ‒c ");
+
+        for (ParserEngine engine : ParserEngine.values()) {
+            ConfigCmdArgs cmdArgs = new ConfigCmdArgs(engine);
+            cmdArgs.parse(new String[]{"--config", config.toString()});
+
+            assertThat(cmdArgs.getRequiredStringArgList("route"), contains("a", "b", "‒c"));
+        }
+    }
+
+    @Test
+    public void splitsQuotedItemsOnlyOutsideTheirQuotes() throws Exception {
+        Path config = write("quoted.conf", "tags = \"a,b\", c, 'd, \"e\"', \"f\" g, h", "pairs = 'x=y'=z");
+
+        for (ParserEngine engine : ParserEngine.values()) {
+            ConfigCmdArgs cmdArgs = new ConfigCmdArgs(engine);
+            cmdArgs.parse(new String[]{"--config", config.toString()});
+
+            assertThat(cmdArgs.getRequiredStringArgList("tags"), contains("a,b", "c", "d, \"e\"", "\"f\" g", "h"));
+            assertThat(cmdArgs.getRequiredStringArgList("pairs"), contains("x=y", "z"));
+        }
+    }
+
+    @Test
+    public void readsFlags() throws Exception {
+        for (String value : Arrays.asList("false", "FALSE", "'False'")) {
+            ConfigCmdArgs cmdArgs = new ConfigCmdArgs(ParserEngine.NATIVE);
+            cmdArgs.parse(new String[]{"--config", write("off.conf", "verbose = " + value).toString()});
+            assertThat(value, cmdArgs.hasArg("verbose"), equalTo(false));
+        }
+
+        for (String value : Arrays.asList("true", "True", "\"TRUE\"")) {
+            ConfigCmdArgs cmdArgs = new ConfigCmdArgs(ParserEngine.NATIVE);
+            cmdArgs.parse(new String[]{"--config", write("on.conf", "verbose = " + value).toString()});
+            assertThat(value, cmdArgs.hasArg("verbose"), equalTo(true));
+        }
+    }
+
+    @Test
+    public void reportsInvalidLines() throws Exception {
+        assertError("Unrecognised option 'other' on line 2 of config file '%s'.", "port = 1", "other = 2");
+        assertError("Option 'port' is set more than once on line 2 of config file '%s'.", "port = 1", "port: 2");
+        assertError("Expected 'key = value' on line 1 of config file '%s'.", "port");
+        assertError("List item without an option on line 2 of config file '%s'.", "port = 1", "- 2");
+        assertError("Expected true or false for option 'verbose', not 'yes' on line 2 of config file '%s'.", "port = 1", "verbose = yes");
+        assertError("Expected true or false for option 'verbose', not '' on line 1 of config file '%s'.", "verbose:");
+
+        // A bad flag is reported even when the command line already sets it.
+        Path config = write("flag.conf", "verbose = 1");
+        expect(() -> new ConfigCmdArgs(ParserEngine.NATIVE).parse(new String[]{"--verbose", "--config", config.toString()}))
+            .toThrow(ParseException.class)
+            .withMessage(String.format("Expected true or false for option 'verbose', not '1' on line 1 of config file '%s'.", config));
+
+        Path missing = tempDir.resolve("missing.conf");
+        expect(() -> new ConfigCmdArgs(ParserEngine.NATIVE).parse(new String[]{"--config", missing.toString()}))
+            .toThrow(ParseException.class)
+            .withMessage(String.format("Unable to read config file '%s': %s", missing, missing));
+    }
+
+    @Test
+    public void resolvesConfigFilesAgainstTheWorkingDirectory() throws Exception {
+        write("relative.conf", "port = 3");
+
+        for (ParserEngine engine : ParserEngine.values()) {
+            ConfigCmdArgs cmdArgs = new ConfigCmdArgs(engine);
+            cmdArgs.parse(new String[]{"--config", "relative.conf"}, tempDir);
+
+            assertThat(cmdArgs.getRequiredIntArg("port"), equalTo(3));
+            assertThat(cmdArgs.configFilesRead(), contains(tempDir.resolve("relative.conf")));
+        }
+    }
+
+    @Test
+    public void ignoresConfigFilesWhenHelpIsRequested() throws Exception {
+        ConfigCmdArgs cmdArgs = new ConfigCmdArgs(ParserEngine.NATIVE);
+        cmdArgs.parse(new String[]{"-h", "--config", tempDir.resolve("missing.conf").toString()});
+
+        assertThat(cmdArgs.isHelpRequested(), equalTo(true));
+    }
+
+    private void assertError(String message, String... lines) throws Exception {
+        Path config = write("invalid.conf", lines);
+        expect(() -> new ConfigCmdArgs(ParserEngine.NATIVE).parse(new String[]{"--config", config.toString()}))
+            .toThrow(ParseException.class)
+            .withMessage(String.format(message, config));
+    }
+
+    private Path write(String name, String... lines) throws Exception {
+        Path file = tempDir.resolve(name);
+        Files.write(file, String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    @EverythingIsNonnullByDefault
+    private static class ConfigCmdArgs extends CmdArgsBase {
+
+        private final ParserEngine engine;
+
+        ConfigCmdArgs(ParserEngine engine) {
+            this.engine = engine;
+        }
+
+        @Override
+        protected void addCustomOptions(Options options) {
+            options.addOption(Option.builder().longOpt("config").hasArgs().build());
+            options.addOption(Option.builder().longOpt("port").hasArg().build());
+            options.addOption(Option.builder().longOpt("name").hasArg().build());
+            options.addOption(Option.builder().longOpt("mode").hasArg().build());
+            options.addOption(Option.builder().longOpt("tags").hasArgs().build());
+            options.addOption(Option.builder().longOpt("ids").hasArgs().build());
+            options.addOption(Option.builder().longOpt("pairs").hasArgs().valueSeparator('=').build());
+            options.addOption(Option.builder().longOpt("route").hasArgs().valueSeparator('→').build());
+            options.addOption(Option.builder().longOpt("verbose").build());
+        }
+
+        @Override
+        protected void addFallbacks(Fallbacks fallbacks) {
+            fallbacks.option("name").defaultValue("fallback");
+            fallbacks.option("mode").defaultValue("fallback");
+        }
+
+        @Override
+        protected void extractCustomOptions() {
+        }
+
+        @Override
+        protected ParserEngine parserEngine() {
+            return engine;
+        }
+
+        @Override
+        protected List<Path> configFiles(ParsedArgs commandLine) throws ParseException {
+            return commandLine.hasArg("config")
+                ? commandLine.getRequiredStringArgList("config").stream().map(Paths::get).collect(Collectors.toList())
+                : super.configFiles(commandLine);
+        }
+
+    }
+
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.zepben.commandlinearguments;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.zepben.testutils.exception.ExpectException.expect;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class ConfigReloaderTest {
+
+    @TempDir
+    public Path tempDir;
+
+    private final BlockingQueue<List<String>> reloads = new LinkedBlockingQueue<>();
+    private final BlockingQueue<Throwable> failures = new LinkedBlockingQueue<>();
+
+    private final ReloadListener<ReloadCmdArgs> listener = new ReloadListener<ReloadCmdArgs>() {
+        @Override
+        public void onReloaded(ReloadCmdArgs previous, ReloadCmdArgs current, List<Option> changed) {
+            reloads.add(changed.stream().map(Option::getLongOpt).collect(Collectors.toList()));
+        }
+
+        @Override
+        public void onReloadFailed(Throwable exception) {
+            failures.add(exception);
+        }
+    };
+
+    @Test
+    public void reloadsChangedOptions() throws Exception {
+        Path config = write("port = 80", "name = abc");
+
+        try (ConfigReloader<ReloadCmdArgs> reloader = start(config)) {
+            ReloadCmdArgs initial = reloader.current();
+            assertThat(initial.port, equalTo(80));
+
+            assertThat(reloader.reload(), empty());
+            assertThat(reloader.current(), sameInstance(initial));
+
+            write("port = 81", "name = abc");
+            assertThat(reloader.reload().stream().map(Option::getLongOpt).collect(Collectors.toList()), contains("port"));
+            assertThat(reloader.current().port, equalTo(81));
+            assertThat(initial.port, equalTo(80));
+        }
+    }
+
+    @Test
+    public void keepsThePreviousArgsWhenInvalid() throws Exception {
+        Path config = write("port = 80");
+
+        try (ConfigReloader<ReloadCmdArgs> reloader = start(config)) {
+            ReloadCmdArgs initial = reloader.current();
+
+            write("port = 0");
+            expect(reloader::reload)
+                .toThrow(ParseException.class)
+                .withMessage("Integer 0 for argument port is out of range. Expected value in range 1..65535.");
+
+            write("port = 80", "other = 1");
+            expect(reloader::reload)
+                .toThrow(ParseException.class)
+                .withMessage(String.format("Unrecognised option 'other' on line 2 of config file '%s'.", config));
+
+            assertThat(reloader.current(), sameInstance(initial));
+        }
+    }
+
+    @Test
+    public void reloadsAfterTheCurrentArgsAreReused() throws Exception {
+        Path config = write("port = 80");
+
+        try (ConfigReloader<ReloadCmdArgs> reloader = start(config)) {
+            reloader.current().reset();
+            assertThat(reloader.reload(), empty());
+
+            reloader.current().parse(new String[]{"--config", config.toString(), "--port", "90"});
+            assertThat(reloader.reload(), empty());
+
+            write("port = 81");
+            assertThat(reloader.reload().stream().map(Option::getLongOpt).collect(Collectors.toList()), contains("port"));
+            assertThat(reloader.current().port, equalTo(81));
+        }
+    }
+
+    @Test
+    public void watchesTheConfigFiles() throws Exception {
+        Path config = write("port = 80", "name = abc");
+
+        try (ConfigReloader<ReloadCmdArgs> reloader = start(config)) {
+            write("port = 80", "name = def");
+            assertThat(reloads.poll(10, TimeUnit.SECONDS), contains("name"));
+            assertThat(reloader.current().name, equalTo("def"));
+
+            write("port = 0", "name = def");
+            assertThat(failures.poll(10, TimeUnit.SECONDS), notNullValue());
+            assertThat(reloader.current().name, equalTo("def"));
+
+            // Other files in the directory are ignored.
+            Files.write(tempDir.resolve("other.conf"), Collections.singletonList("x"));
+            write("port = 82", "name = def");
+            assertThat(reloads.poll(10, TimeUnit.SECONDS), contains("port"));
+            assertThat(reloads, empty());
+        }
+    }
+
+    @Test
+    public void keepsWatchingAfterUnexpectedFailures() throws Exception {
+        Path config = write("port = 80", "name = abc");
+
+        try (ConfigReloader<ReloadCmdArgs> reloader = start(config)) {
+            write("port = 80", "name = crash");
+            assertThat(failures.poll(10, TimeUnit.SECONDS), instanceOf(IllegalStateException.class));
+            assertThat(reloader.current().name, equalTo("abc"));
+
+            write("port = 80", "name = def");
+            assertThat(reloads.poll(10, TimeUnit.SECONDS), contains("name"));
+            assertThat(reloader.current().name, equalTo("def"));
+        }
+    }
+
+    private ConfigReloader<ReloadCmdArgs> start(Path config) throws Exception {
+        return ConfigReloader.start(ReloadCmdArgs::new, new String[]{"--config", config.toString()}, listener);
+    }
+
+    private Path write(String... lines) throws Exception {
+        Path file = tempDir.resolve("reload.conf");
+        Files.write(file, String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    @EverythingIsNonnullByDefault
+    private static class ReloadCmdArgs extends CmdArgsBase {
+
+        private int port = 0;
+        private String name = "";
+
+        @Override
+        protected void addCustomOptions(Options options) {
+            options.addOption(Option.builder().longOpt("config").hasArg().build());
+            options.addOption(Option.builder().longOpt("port").hasArg().build());
+            options.addOption(Option.builder().longOpt("name").hasArg().build());
+        }
+
+        @Override
+        protected void extractCustomOptions() throws ParseException {
+            port = getRequiredIntArg("port", 1, 65535);
+            name = getOptionalStringArg("name").orElse("");
+            if (name.equals("crash"))
+                throw new IllegalStateException("Crashed while extracting the name.");
+        }
+
+        @Override
+        protected List<Path> configFiles(ParsedArgs commandLine) throws ParseException {
+            return Collections.singletonList(Paths.get(commandLine.getRequiredStringArg("config")));
+        }
+
+    }
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.zepben.commandlinearguments;
+
+import com.zepben.testutils.exception.ExpectException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.github.npathai.hamcrestopt.OptionalMatchers.isEmpty;
+import static com.zepben.testutils.exception.ExpectException.expect;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class DateParserTest {
+
+    @Test
+    public void datesMatchTheJdk() throws Exception {
+        for (String value : Arrays.asList("2020-10-08", "0000-01-01", "9999-12-31", "2020-02-29", "+12020-01-01", "-0001-06-15"))
+            assertThat(value, DateParser.parseDate(value, "d"), equalTo(LocalDate.parse(value)));
+
+        for (String value : Arrays.asList("", "2020-13-01", "2019-02-29", "2020-1-01", "2020/10/08", "2020-10-0a", "20201008", "2020-10-08T00:00"))
+            expectInvalid(() -> DateParser.parseDate(value, "d"), value, "date", "d");
+    }
+
+    @Test
+    public void dateTimesMatchTheJdk() throws Exception {
+        for (String value : Arrays.asList("2020-10-08T13:45", "2020-10-08T13:45:30", "2020-10-08T13:45:30.5", "2020-10-08T00:00:00.123456789",
+            "2020-10-08t13:45", "2020-10-08T13:45:30."))
+            assertThat(value, DateParser.parseDateTime(value, "d"), equalTo(LocalDateTime.parse(value)));
+
+        for (String value : Arrays.asList("2020-10-08", "2020-10-08T24:00", "2020-10-08T13:60", "2020-10-08T13:45:30.1234567890", "2020-10-08 13:45"))
+            expectInvalid(() -> DateParser.parseDateTime(value, "d"), value, "date time", "d");
+    }
+
+    @Test
+    public void instantsMatchTheJdk() throws Exception {
+        for (String value : Arrays.asList("2020-10-08T13:45:30Z", "1970-01-01T00:00:00Z", "2020-10-08T13:45:30.000001Z", "2016-12-31T23:59:60Z"))
+            assertThat(value, DateParser.parseInstant(value, "i"), equalTo(Instant.parse(value)));
+
+        for (String value : Arrays.asList("2020-10-08T13:45:30", "2020-10-08Z", "Z", ""))
+            expectInvalid(() -> DateParser.parseInstant(value, "i"), value, "instant", "i");
+    }
+
+    @Test
+    public void durationsMatchTheJdk() throws Exception {
+        for (String value : Arrays.asList("PT1H30M", "P2D", "P1DT2H3M4S", "PT0.5S", "-PT1.5S", "PT15M", "PT123456789S", "pt1s", "+PT1S",
+            "PT-5S", "P-1DT2H", "PT1,5S"))
+            assertThat(value, DateParser.parseDuration(value, "t"), equalTo(Duration.parse(value)));
+
+        for (String value : Arrays.asList("", "P", "PT", "P1D T1H", "PT1M1H", "P1H", "PT1D", "P1.5D", "PT1S1S", "P1DT", "1h"))
+            expectInvalid(() -> DateParser.parseDuration(value, "t"), value, "duration", "t");
+    }
+
+    @Test
+    public void gettersConvertAndCache() throws Exception {
+        ParsedArgs parsed = new TestCmdArgs().parseSnapshot(new String[]{"-a", "PT5M", "-b", "2020-10-08", "2020-10-09"});
+
+        List<LocalDate> dates = parsed.getRequiredDateArgList("b");
+        assertThat(dates, contains(LocalDate.of(2020, 10, 8), LocalDate.of(2020, 10, 9)));
+        assertThat(parsed.getRequiredDateArgList("b"), sameInstance(dates));
+        assertThat(parsed.getRequiredArg(OptionKey.dateListKey("b")), sameInstance(dates));
+        expect(() -> dates.add(LocalDate.MIN)).toThrow(UnsupportedOperationException.class);
+
+        assertThat(parsed.getRequiredDurationArg("a"), equalTo(Duration.ofMinutes(5)));
+        assertThat(parsed.getRequiredArg(OptionKey.durationKey("a")), equalTo(Duration.ofMinutes(5)));
+        assertThat(parsed.getOptionalDateTimeArg("c"), isEmpty());
+        assertThat(parsed.getOptionalInstantArg("c"), isEmpty());
+        expect(() -> parsed.getRequiredInstantArg("a"))
+            .toThrow(OptionValueException.class)
+            .withMessage("Invalid instant 'PT5M' for argument a.");
+    }
+
+    private static void expectInvalid(ExpectException.RunWithException func, String value, String type, String arg) {
+        expect(func)
+            .toThrow(OptionValueException.class)
+            .withMessage(String.format("Invalid %s '%s' for argument %s.", type, value, arg));
+    }
+
+}
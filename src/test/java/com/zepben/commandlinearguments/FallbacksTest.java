@@ -0,0 +1,191 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.zepben.commandlinearguments;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.OptionGroup;
+import org.apache.commons.cli.Options;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.github.npathai.hamcrestopt.OptionalMatchers.isEmpty;
+import static com.github.npathai.hamcrestopt.OptionalMatchers.isPresentAnd;
+import static com.zepben.testutils.exception.ExpectException.expect;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class FallbacksTest {
+
+    private static final String PORT_PROPERTY = "fallbacks.test.port";
+
+    @AfterEach
+    public void clearProperties() {
+        System.clearProperty(PORT_PROPERTY);
+    }
+
+    @Test
+    public void resolvesInOrderOfPrecedence() throws Exception {
+        for (ParserEngine engine : ParserEngine.values()) {
+            System.clearProperty(PORT_PROPERTY);
+            assertPrecedence(engine);
+        }
+    }
+
+    @Test
+    public void convertsByOptionType() throws Exception {
+        for (ParserEngine engine : ParserEngine.values())
+            assertConversions(engine);
+    }
+
+    @Test
+    public void skipsOptionsInASelectedGroup() throws Exception {
+        FallbackCmdArgs cmdArgs = new FallbackCmdArgs(ParserEngine.NATIVE);
+
+        cmdArgs.parse(new String[0]);
+        assertThat(cmdArgs.getRequiredStringArg("json"), equalTo("out.json"));
+        assertThat(cmdArgs.hasArg("csv"), equalTo(false));
+
+        cmdArgs.parse(new String[]{"--csv", "out.csv"});
+        assertThat(cmdArgs.hasArg("json"), equalTo(false));
+    }
+
+    @Test
+    public void batchParserResolvesFallbacks() {
+        List<ParseResult> results = new FallbackCmdArgs(ParserEngine.NATIVE).batchParser().parseAll(Collections.singletonList(new String[0]));
+
+        ParsedArgs parsedArgs = results.get(0).parsedArgs().orElseThrow(AssertionError::new);
+        assertThat(parsedArgs.sourceOf("json"), isPresentAnd(equalTo(ValueSource.DEFAULT)));
+    }
+
+    @Test
+    public void validatesDeclarations() {
+        Options options = new Options();
+        options.addOption(Option.builder("a").longOpt("all").build());
+        options.addOption(Option.builder("r").required().build());
+
+        expect(() -> CmdArgsSchema.compile(options, withFallback("b")))
+            .toThrow(IllegalStateException.class)
+            .withMessage("INTERNAL ERROR: There is no option 'b' to fall back for.");
+        expect(() -> CmdArgsSchema.compile(options, withFallback("r")))
+            .toThrow(IllegalStateException.class)
+            .withMessage("INTERNAL ERROR: Option 'r' is required, so its fallbacks would never be used.");
+        expect(() -> CmdArgsSchema.compile(options, withFallback("a", "--all")))
+            .toThrow(IllegalStateException.class)
+            .withMessage("INTERNAL ERROR: Option 'all' has fallbacks declared under both of its names.");
+    }
+
+    private void assertPrecedence(ParserEngine engine) throws Exception {
+        FallbackCmdArgs cmdArgs = new FallbackCmdArgs(engine);
+
+        cmdArgs.parse(new String[0]);
+        assertThat(cmdArgs.getRequiredIntArg("port"), equalTo(8080));
+        assertThat(cmdArgs.sourceOf("port"), isPresentAnd(equalTo(ValueSource.DEFAULT)));
+        assertThat(cmdArgs.sourceOf("name"), isEmpty());
+
+        System.setProperty(PORT_PROPERTY, "81");
+        cmdArgs.parse(new String[0]);
+        assertThat(cmdArgs.getRequiredIntArg("port"), equalTo(81));
+        assertThat(cmdArgs.sourceOf("port"), isPresentAnd(equalTo(ValueSource.SYSTEM_PROPERTY)));
+
+        cmdArgs.environment.put("TEST_PORT", "82");
+        cmdArgs.parse(new String[0]);
+        assertThat(cmdArgs.getRequiredIntArg("port"), equalTo(82));
+        assertThat(cmdArgs.sourceOf("port"), isPresentAnd(equalTo(ValueSource.ENVIRONMENT)));
+
+        cmdArgs.parse(new String[]{"--port", "83"});
+        assertThat(cmdArgs.getRequiredIntArg("port"), equalTo(83));
+        assertThat(cmdArgs.sourceOf("port"), isPresentAnd(equalTo(ValueSource.COMMAND_LINE)));
+
+        // An empty variable is treated as not being set.
+        cmdArgs.environment.put("TEST_PORT", "");
+        cmdArgs.parse(new String[0]);
+        assertThat(cmdArgs.sourceOf("port"), isPresentAnd(equalTo(ValueSource.SYSTEM_PROPERTY)));
+    }
+
+    private void assertConversions(ParserEngine engine) throws Exception {
+        FallbackCmdArgs cmdArgs = new FallbackCmdArgs(engine);
+        cmdArgs.environment.put("TEST_TAGS", "a,b,,c");
+        cmdArgs.environment.put("TEST_PAIRS", "x=y");
+        cmdArgs.environment.put("TEST_VERBOSE", "TRUE");
+
+        cmdArgs.parse(new String[0]);
+        assertThat(cmdArgs.getRequiredStringArgList("tags"), contains("a", "b", "", "c"));
+        assertThat(cmdArgs.getRequiredStringArgList("pairs"), contains("x", "y"));
+        assertThat(cmdArgs.hasArg("verbose"), equalTo(true));
+
+        cmdArgs.environment.put("TEST_VERBOSE", "no");
+        cmdArgs.environment.remove("TEST_TAGS");
+        cmdArgs.parse(new String[0]);
+        assertThat(cmdArgs.hasArg("verbose"), equalTo(false));
+        assertThat(cmdArgs.getRequiredStringArgList("tags"), contains("d", "e"));
+    }
+
+    private static Fallbacks withFallback(String... names) {
+        Fallbacks fallbacks = new Fallbacks();
+        for (String name : names)
+            fallbacks.option(name).defaultValue();
+        return fallbacks;
+    }
+
+    @EverythingIsNonnullByDefault
+    private static class FallbackCmdArgs extends CmdArgsBase {
+
+        private final ParserEngine engine;
+        private final Map<String, String> environment = new HashMap<>();
+
+        FallbackCmdArgs(ParserEngine engine) {
+            this.engine = engine;
+        }
+
+        @Override
+        protected void addCustomOptions(Options options) {
+            options.addOption(Option.builder().longOpt("port").hasArg().build());
+            options.addOption(Option.builder().longOpt("name").hasArg().build());
+            options.addOption(Option.builder().longOpt("tags").hasArgs().build());
+            options.addOption(Option.builder().longOpt("pairs").hasArgs().valueSeparator('=').build());
+            options.addOption(Option.builder().longOpt("verbose").build());
+
+            OptionGroup output = new OptionGroup();
+            output.addOption(Option.builder().longOpt("csv").hasArg().build());
+            output.addOption(Option.builder().longOpt("json").hasArg().build());
+            options.addOptionGroup(output);
+        }
+
+        @Override
+        protected void addFallbacks(Fallbacks fallbacks) {
+            fallbacks.option("port").environmentVariable("TEST_PORT").systemProperty(PORT_PROPERTY).defaultValue("8080");
+            fallbacks.option("--tags").environmentVariable("TEST_TAGS").defaultValue("d", "e");
+            fallbacks.option("pairs").environmentVariable("TEST_PAIRS");
+            fallbacks.option("verbose").environmentVariable("TEST_VERBOSE");
+            fallbacks.option("json").defaultValue("out.json");
+        }
+
+        @Override
+        protected void extractCustomOptions() {
+        }
+
+        @Override
+        protected ParserEngine parserEngine() {
+            return engine;
+        }
+
+        @Override
+        protected Map<String, String> environment() {
+            return environment;
+        }
+
+    }
+
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.zepben.commandlinearguments;
+
+import org.apache.commons.cli.*;
+import org.junit.jupiter.api.Test;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class NativeParserTest {
+
+    private final CmdArgsSchema schema = CmdArgsSchema.compile(new Options()
+        .addOption(Option.builder("a").hasArg().build())
+        .addOption(Option.builder("b").hasArgs().build())
+        .addOption(Option.builder("c").numberOfArgs(2).build())
+        .addOption(Option.builder("f").build())
+        .addOption(Option.builder("g").build())
+        .addOption(Option.builder("o").optionalArg(true).numberOfArgs(1).build())
+        .addOption(Option.builder("D").hasArgs().valueSeparator('=').build())
+        .addOption(Option.builder().longOpt("alpha").hasArg().build())
+        .addOption(Option.builder().longOpt("alphabet").build())
+        .addOption(Option.builder().longOpt("Xmx").hasArg().build())
+        .addOptionGroup(new OptionGroup()
+            .addOption(Option.builder("x").build())
+            .addOption(Option.builder("y").build())));
+
+    private final CmdArgsSchema requiredSchema = CmdArgsSchema.compile(new Options()
+        .addOption(Option.builder("r").required().hasArg().build())
+        .addOption(Option.builder().longOpt("required").required().build())
+        .addOptionGroup(required(new OptionGroup()
+            .addOption(Option.builder("x").build())
+            .addOption(Option.builder("y").build()))));
+
+    @Test
+    public void shortOptions() {
+        assertSameAsCommonsCli("-a", "1", "-f", "-b", "2", "3", "-b", "4", "positional");
+        assertSameAsCommonsCli("-a1", "-a=2", "-c", "3", "4", "5");
+        assertSameAsCommonsCli("-fg", "-fa", "value", "-fga5");
+    }
+
+    @Test
+    public void longOptions() {
+        assertSameAsCommonsCli("--alpha", "1", "--alphabet", "--alpha=2", "-alpha", "3", "-alpha=4");
+        assertSameAsCommonsCli("--alphab", "--alp=5");
+        assertSameAsCommonsCli("-Xmx512m");
+    }
+
+    @Test
+    public void values() {
+        assertSameAsCommonsCli("-b", "-1", "-2.5", "-f");
+        assertSameAsCommonsCli("-a", "\"quoted\"", "-b", "\"a\"b\"");
+        assertSameAsCommonsCli("-a", "-", "-b", "--", "-f", "--alpha");
+        assertSameAsCommonsCli("-o", "-f", "-o", "value");
+        assertSameAsCommonsCli("-Dkey=value", "-D", "other=thing", "-Dflag");
+    }
+
+    @Test
+    public void groups() {
+        assertSameAsCommonsCli("-x", "-x");
+        assertSameAsCommonsCli("-x", "-y");
+    }
+
+    @Test
+    public void errors() {
+        assertSameAsCommonsCli("-z");
+        assertSameAsCommonsCli("--zulu");
+        assertSameAsCommonsCli("--alpha");
+        assertSameAsCommonsCli("-a");
+        assertSameAsCommonsCli("--alp");
+        assertSameAsCommonsCli("--alphabet=1");
+        assertSameAsCommonsCli("-c", "1");
+    }
+
+    @Test
+    public void requiredOptions() {
+        assertSameAsCommonsCli(requiredSchema, "-r", "1", "--required", "-y");
+        assertSameAsCommonsCli(requiredSchema);
+        assertSameAsCommonsCli(requiredSchema, "-r", "1");
+        assertSameAsCommonsCli(requiredSchema, "--required", "-x");
+    }
+
+    @Test
+    public void reusesValuesBetweenParses() throws Exception {
+        NativeParser parser = new NativeParser(schema);
+        OptionValues values = new OptionValues();
+
+        parser.parse(new String[]{"arg", "-a", "1", "-b", "2", "3"}, values);
+        assertThat(values.first(0), equalTo("1"));
+        assertThat(values.values(1), arrayContaining("2", "3"));
+        assertThat(values.args(), arrayContaining("arg"));
+
+        parser.parse(new String[]{"-f"}, values);
+        assertThat(values.has(0), equalTo(false));
+        assertThat(values.first(0), nullValue());
+        assertThat(values.values(1), nullValue());
+        assertThat(values.has(3), equalTo(true));
+        assertThat(values.args(), emptyArray());
+    }
+
+    private void assertSameAsCommonsCli(String... args) {
+        assertSameAsCommonsCli(schema, args);
+    }
+
+    private void assertSameAsCommonsCli(CmdArgsSchema schema, String... args) {
+        OptionValues expected = new OptionValues();
+        ParseException expectedException = null;
+        try {
+            expected.reset(schema, new DefaultParser().parse(schema.options(), args));
+        } catch (ParseException e) {
+            expectedException = e;
+        }
+
+        OptionValues actual = new OptionValues();
+        ParseException actualException = null;
+        try {
+            new NativeParser(schema).parse(args, actual);
+        } catch (ParseException e) {
+            actualException = e;
+        }
+
+        String description = Arrays.toString(args);
+        if (expectedException != null) {
+            assertThat(description, actualException, instanceOf(expectedException.getClass()));
+            assertThat(description, actualException.getMessage(), equalTo(expectedException.getMessage()));
+        } else {
+            assertThat(description, actualException, nullValue());
+            assertThat(description, describe(schema, actual), equalTo(describe(schema, expected)));
+        }
+    }
+
+    private List<String> describe(CmdArgsSchema schema, OptionValues values) {
+        List<String> description = new ArrayList<>();
+        for (int slot = 0; slot < schema.size(); ++slot) {
+            if (values.has(slot))
+                description.add(schema.option(slot) + " x" + values.occurrences(slot) + " = " + describe(values.values(slot)));
+        }
+        description.add("args = " + Arrays.toString(values.args()));
+        return description;
+    }
+
+    private String describe(@Nullable String[] values) {
+        return values == null ? "null" : Arrays.toString(values);
+    }
+
+    private static OptionGroup required(OptionGroup group) {
+        group.setRequired(true);
+        return group;
+    }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.zepben.commandlinearguments;
+
+import com.zepben.testutils.exception.ExpectException;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static com.github.npathai.hamcrestopt.OptionalMatchers.isEmpty;
+import static com.github.npathai.hamcrestopt.OptionalMatchers.isPresentAnd;
+import static com.zepben.testutils.exception.ExpectException.expect;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class NumberParserTest {
+
+    @Test
+    public void integersMatchTheJdk() throws Exception {
+        for (String value : Arrays.asList("0", "-0", "+7", "123", "-2147483648", "2147483647", "0042", "١٢"))
+            assertThat(NumberParser.parseInt(value, "n"), equalTo(Integer.parseInt(value)));
+
+        for (String value : Arrays.asList("-9223372036854775808", "9223372036854775807", "-1", "2147483648"))
+            assertThat(NumberParser.parseLong(value, "n"), equalTo(Long.parseLong(value)));
+
+        for (String value : Arrays.asList("", "-", "+", "1.0", "1_000", "0x10", " 1", "2147483648", "-2147483649"))
+            expectInvalid(() -> NumberParser.parseInt(value, "n"), value, "integer");
+
+        for (String value : Arrays.asList("9223372036854775808", "-9223372036854775809", "10k"))
+            expectInvalid(() -> NumberParser.parseLong(value, "n"), value, "integer");
+    }
+
+    @Test
+    public void quantitiesAcceptUnderscoresHexAndSuffixes() throws Exception {
+        assertThat(NumberParser.parseQuantity("1_000_000", "n"), equalTo(1_000_000L));
+        assertThat(NumberParser.parseQuantity("0x7f_ff", "n"), equalTo(0x7fffL));
+        assertThat(NumberParser.parseQuantity("-0XFF", "n"), equalTo(-255L));
+        assertThat(NumberParser.parseQuantity("10k", "n"), equalTo(10_000L));
+        assertThat(NumberParser.parseQuantity("10K", "n"), equalTo(10_000L));
+        assertThat(NumberParser.parseQuantity("3MB", "n"), equalTo(3_000_000L));
+        assertThat(NumberParser.parseQuantity("512MiB", "n"), equalTo(512L * 1024 * 1024));
+        assertThat(NumberParser.parseQuantity("2Gi", "n"), equalTo(2L << 30));
+        assertThat(NumberParser.parseQuantity("7EiB", "n"), equalTo(7L << 60));
+        assertThat(NumberParser.parseQuantity("64B", "n"), equalTo(64L));
+        assertThat(NumberParser.parseQuantity("-9223372036854775808", "n"), equalTo(Long.MIN_VALUE));
+        assertThat(NumberParser.parseQuantity("-8EiB", "n"), equalTo(Long.MIN_VALUE));
+
+        for (String value : Arrays.asList("", "k", "_1", "1_", "1__0", "1_k", "0x", "0x_1", "0x10k", "10m", "10kk", "10iB", "1.5k", "10 k"))
+            expectInvalid(() -> NumberParser.parseQuantity(value, "n"), value, "quantity");
+    }
+
+    @Test
+    public void quantitiesThatOverflowAreOutOfRange() {
+        for (String value : Arrays.asList("9223372036854775808", "8EiB", "0x8000000000000000", "9_300P")) {
+            expect(() -> NumberParser.parseQuantity(value, "n"))
+                .toThrow(OptionValueException.class)
+                .withMessage(String.format("Quantity '%s' for argument n is too large.", value));
+        }
+    }
+
+    @Test
+    public void doublesMatchTheJdk() throws Exception {
+        for (String value : Arrays.asList("0", "-0.0", "1.", ".5", "3.14159", "-2.5e-3", "1E22", "123456789012345", "0.1",
+            "1234567890.123456789", "4.9e-324", "1.7976931348623157e308", "1e400", "NaN", "-Infinity", "0x1p3", "2d", " 1.5 "))
+            assertThat(value, NumberParser.parseDouble(value, "n"), equalTo(Double.parseDouble(value)));
+
+        assertThat(NumberParser.parseDouble("1_000.000_5", "n"), equalTo(1000.0005));
+        assertThat(NumberParser.parseDouble("1_234_567_890.123_456_789", "n"), equalTo(1234567890.123456789));
+
+        for (String value : Arrays.asList("", "-", ".", "e5", "1e", "1.2.3", "_1", "1_", "1._5", "1k"))
+            expectInvalid(() -> NumberParser.parseDouble(value, "n"), value, "number");
+    }
+
+    @Test
+    public void gettersCacheAndCheckRanges() throws Exception {
+        TestCmdArgs cmdArgs = new TestCmdArgs();
+        ParsedArgs parsed = cmdArgs.parseSnapshot(new String[]{"-a", "4GiB", "-b", "1"});
+
+        assertThat(parsed.getRequiredQuantityArg("a"), equalTo(4L << 30));
+        assertThat(parsed.getOptionalQuantityArg("a", 0, 8L << 30), isPresentAnd(equalTo(4L << 30)));
+        assertThat(parsed.getOptionalQuantityArg("c"), isEmpty());
+        expect(() -> parsed.getRequiredQuantityArg("a", 0, 1 << 30))
+            .toThrow(OptionValueException.class)
+            .withMessage("Integer 4294967296 for argument a is out of range. Expected value in range 0..1073741824.");
+        expect(() -> parsed.getRequiredLongArg("a"))
+            .toThrow(OptionValueException.class)
+            .withMessage("Invalid integer '4GiB' for argument a.");
+
+        assertThat(parsed.getRequiredLongArg("b"), equalTo(1L));
+        assertThat(parsed.getOptionalLongArg("b", 1, 1), isPresentAnd(equalTo(1L)));
+        assertThat(parsed.getRequiredDoubleArg("b"), equalTo(1.0));
+        assertThat(parsed.getOptionalDoubleArg("c"), isEmpty());
+        expect(() -> parsed.getRequiredDoubleArg("b", 1.5, 2.5))
+            .toThrow(OptionValueException.class)
+            .withMessage("Number 1.0 for argument b is out of range. Expected value in range 1.5..2.5.");
+        expect(() -> parsed.getRequiredDoubleArg("c"))
+            .toThrow(OptionValueException.class)
+            .withMessage("Missing required option: c.");
+    }
+
+    @Test
+    public void keysReadTheNewTypes() throws Exception {
+        ParsedArgs parsed = new TestCmdArgs().parseSnapshot(new String[]{"-a", "2.5", "-b", "16k"});
+
+        assertThat(parsed.getRequiredArg(OptionKey.doubleKey("a")), equalTo(2.5));
+        assertThat(parsed.getRequiredArg(OptionKey.quantityKey("b")), equalTo(16_000L));
+        expect(() -> parsed.getRequiredArg(OptionKey.longKey("a")))
+            .toThrow(OptionValueException.class)
+            .withMessage("Invalid integer '2.5' for argument a.");
+    }
+
+    private static void expectInvalid(ExpectException.RunWithException func, String value, String type) {
+        expect(func)
+            .toThrow(OptionValueException.class)
+            .withMessage(String.format("Invalid %s '%s' for argument n.", type, value));
+    }
+
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.zepben.commandlinearguments;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static com.github.npathai.hamcrestopt.OptionalMatchers.isEmpty;
+import static com.github.npathai.hamcrestopt.OptionalMatchers.isPresentAnd;
+import static com.zepben.testutils.exception.ExpectException.expect;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class OptionKeyTest {
+
+    private static final OptionKey<String> NAME = OptionKey.stringKey(Option.builder("n").longOpt("name").hasArg().build());
+    private static final OptionKey<Integer> PORT = OptionKey.intKey(Option.builder().longOpt("port").hasArg().build(), 1, 65535);
+    private static final OptionKey<LocalDate> DATE = OptionKey.dateKey(Option.builder("d").hasArg().build());
+    private static final OptionKey<List<String>> TAGS = OptionKey.stringListKey(Option.builder("t").hasArgs().build());
+    private static final OptionKey<int[]> IDS = OptionKey.intListKey(Option.builder("i").hasArgs().build());
+    private static final OptionKey<long[]> SIZES = OptionKey.longListKey(Option.builder("s").hasArgs().build());
+    private static final OptionKey<Integer> B = OptionKey.intKey("b");
+
+    @Test
+    public void gettersResolveByKey() throws Exception {
+        KeyCmdArgs cmdArgs = new KeyCmdArgs();
+        cmdArgs.parse(new String[]{"--name", "abc", "--port", "80", "-d", "2020-10-08", "-t", "x", "y", "-i", "1", "2", "-s", "3"});
+
+        assertThat(cmdArgs.hasArg(NAME), equalTo(true));
+        assertThat(cmdArgs.getRequiredArg(NAME), equalTo("abc"));
+        assertThat(cmdArgs.getRequiredArg(PORT), equalTo(80));
+        assertThat(cmdArgs.getRequiredArg(DATE), equalTo(LocalDate.of(2020, 10, 8)));
+        assertThat(cmdArgs.getRequiredArg(TAGS), contains("x", "y"));
+        assertThat(cmdArgs.getRequiredArg(IDS), equalTo(new int[]{1, 2}));
+        assertThat(cmdArgs.getRequiredArg(SIZES), equalTo(new long[]{3}));
+        assertThat(cmdArgs.getOptionalArg(PORT), isPresentAnd(equalTo(80)));
+
+        cmdArgs.getRequiredArg(IDS)[0] = 0;
+        assertThat(cmdArgs.getRequiredArg(IDS), equalTo(new int[]{1, 2}));
+
+        cmdArgs.parse(new String[]{"--port", "0"});
+        assertThat(cmdArgs.hasArg(NAME), equalTo(false));
+        assertThat(cmdArgs.getOptionalArg(NAME), isEmpty());
+        expect(() -> cmdArgs.getRequiredArg(NAME))
+            .toThrow(ParseException.class)
+            .withMessage("Missing required option: n.");
+        expect(() -> cmdArgs.getRequiredArg(PORT))
+            .toThrow(ParseException.class)
+            .withMessage("Integer 0 for argument port is out of range. Expected value in range 1..65535.");
+    }
+
+    @Test
+    public void keysRebindForEachSchema() throws Exception {
+        KeyCmdArgs keyCmdArgs = new KeyCmdArgs();
+        TestCmdArgs testCmdArgs = new TestCmdArgs();
+        keyCmdArgs.parse(new String[]{"-n", "abc"});
+        testCmdArgs.parse(new String[]{"-b", "123"});
+
+        assertThat(keyCmdArgs.schema().slotOf("n"), not(equalTo(testCmdArgs.schema().slotOf("b"))));
+        for (int i = 0; i < 2; ++i) {
+            assertThat(keyCmdArgs.getRequiredArg(NAME), equalTo("abc"));
+            assertThat(testCmdArgs.getRequiredArg(B), equalTo(123));
+            assertThat(keyCmdArgs.hasArg(B), equalTo(false));
+            assertThat(testCmdArgs.hasArg(NAME), equalTo(false));
+        }
+    }
+
+    @Test
+    public void keysRememberTheSlotInEachSchema() {
+        OptionKey<String> key = OptionKey.stringKey("k");
+        CmdArgsSchema[] schemas = new CmdArgsSchema[10];
+        for (int i = 0; i < schemas.length; ++i) {
+            Options options = new Options();
+            for (int j = 0; j < i; ++j)
+                options.addOption(Option.builder("o" + j).build());
+            options.addOption(Option.builder("k").hasArg().build());
+            schemas[i] = CmdArgsSchema.compile(options);
+        }
+
+        for (int round = 0; round < 3; ++round) {
+            for (int i = 0; i < schemas.length; ++i)
+                assertThat(key.slotIn(schemas[i]), equalTo(i));
+            assertThat(key.slotIn(schemas[0]), equalTo(0));
+            assertThat(key.slotIn(schemas[1]), equalTo(1));
+        }
+    }
+
+    @Test
+    public void onlyKeysWithOptionsCanBeAdded() {
+        expect(() -> B.addTo(new Options()))
+            .toThrow(IllegalStateException.class)
+            .withMessage("INTERNAL ERROR: The key for 'b' was not created from an option, so it has nothing to add.");
+    }
+
+    @EverythingIsNonnullByDefault
+    private static class KeyCmdArgs extends CmdArgsBase {
+
+        @Override
+        protected void addCustomOptions(Options options) {
+            NAME.addTo(options);
+            PORT.addTo(options);
+            DATE.addTo(options);
+            TAGS.addTo(options);
+            IDS.addTo(options);
+            SIZES.addTo(options);
+        }
+
+        @Override
+        protected void extractCustomOptions() {
+        }
+
+    }
+
+}
@@ -0,0 +1,356 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.zepben.commandlinearguments;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.annotation.Nullable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.github.npathai.hamcrestopt.OptionalMatchers.isPresentAnd;
+import static com.zepben.testutils.exception.ExpectException.expect;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class ParseCacheTest {
+
+    @TempDir
+    Path directory;
+
+    private final AtomicLong now = new AtomicLong();
+
+    @Test
+    public void reusesCachedArgs() throws Exception {
+        for (ParserEngine engine : ParserEngine.values()) {
+            ParseCache cache = new ParseCache(10, Duration.ofMinutes(1));
+
+            CachedCmdArgs first = new CachedCmdArgs(engine, cache);
+            first.parse(new String[]{"--count", "3"});
+            CachedCmdArgs second = new CachedCmdArgs(engine, cache);
+            second.parse(new String[]{"--count", "3"});
+
+            assertThat(second.count, equalTo(3));
+            assertThat(second.parsedArgs(), sameInstance(first.parsedArgs()));
+            assertThat(cache.hits(), equalTo(1L));
+            assertThat(cache.misses(), equalTo(1L));
+            assertThat(second.validations.get(), equalTo(0));
+        }
+    }
+
+    @Test
+    public void cachedArgsAreNotParsedInto() throws Exception {
+        ParseCache cache = new ParseCache(10, Duration.ofMinutes(1));
+        CachedCmdArgs cmdArgs = new CachedCmdArgs(ParserEngine.NATIVE, cache);
+
+        cmdArgs.parse(new String[]{"--count", "1"});
+        ParsedArgs cached = cmdArgs.parsedArgs();
+        cmdArgs.parse(new String[]{"--count", "2"});
+        cmdArgs.parse(new String[]{"--count", "1"});
+        cmdArgs.reset();
+        cmdArgs.parse(new String[]{"--count", "4"});
+
+        assertThat(cmdArgs.count, equalTo(4));
+        assertThat(cached.getRequiredIntArg("count"), equalTo(1));
+        assertThat(cache.size(), equalTo(3));
+    }
+
+    @Test
+    public void doesNotCacheFailures() throws Exception {
+        ParseCache cache = new ParseCache(10, Duration.ofMinutes(1));
+
+        for (int i = 0; i < 2; ++i) {
+            CachedCmdArgs cmdArgs = new CachedCmdArgs(ParserEngine.NATIVE, cache);
+            expect(() -> cmdArgs.parse(new String[]{"--count", "-1"}))
+                .toThrow(ParseException.class)
+                .withMessage("The count must not be negative.");
+        }
+
+        assertThat(cache.size(), equalTo(0));
+        assertThat(cache.misses(), equalTo(0L));
+    }
+
+    @Test
+    public void keysBySchema() throws Exception {
+        ParseCache cache = new ParseCache(10, Duration.ofMinutes(1));
+        new CachedCmdArgs(ParserEngine.NATIVE, cache).parse(new String[]{"--count", "3"});
+
+        OtherCmdArgs other = new OtherCmdArgs(cache);
+        other.parse(new String[]{"--count", "3"});
+
+        assertThat(other.parsedArgs().schema(), sameInstance(other.schema()));
+        assertThat(cache.size(), equalTo(2));
+        assertThat(cache.hits(), equalTo(0L));
+    }
+
+    @Test
+    public void evictsTheLeastRecentlyUsed() throws Exception {
+        ParseCache cache = new ParseCache(2, Duration.ofMinutes(1));
+        CachedCmdArgs cmdArgs = new CachedCmdArgs(ParserEngine.NATIVE, cache);
+
+        cmdArgs.parse(new String[]{"--count", "1"});
+        cmdArgs.parse(new String[]{"--count", "2"});
+        cmdArgs.parse(new String[]{"--count", "1"});
+        cmdArgs.parse(new String[]{"--count", "3"});
+        assertThat(cache.size(), equalTo(2));
+
+        cmdArgs.parse(new String[]{"--count", "1"});
+        assertThat(cache.hits(), equalTo(2L));
+        cmdArgs.parse(new String[]{"--count", "2"});
+        assertThat(cache.hits(), equalTo(2L));
+    }
+
+    @Test
+    public void expiresOldArgs() throws Exception {
+        ParseCache cache = new ParseCache(10, Duration.ofSeconds(5), now::get);
+        CachedCmdArgs cmdArgs = new CachedCmdArgs(ParserEngine.NATIVE, cache);
+
+        cmdArgs.parse(new String[]{"--count", "1"});
+        now.addAndGet(Duration.ofSeconds(5).toNanos());
+        cmdArgs.parse(new String[]{"--count", "1"});
+        assertThat(cache.hits(), equalTo(1L));
+
+        now.addAndGet(1);
+        cmdArgs.parse(new String[]{"--count", "1"});
+        assertThat(cache.hits(), equalTo(1L));
+        assertThat(cmdArgs.validations.get(), equalTo(2));
+    }
+
+    @Test
+    public void doesNotCacheConfigFiles() throws Exception {
+        Path config = Files.write(directory.resolve("app.conf"), Collections.singletonList("count = 5"));
+        ParseCache cache = new ParseCache(10, Duration.ofMinutes(1));
+        CachedCmdArgs cmdArgs = new CachedCmdArgs(ParserEngine.NATIVE, cache);
+        cmdArgs.config = config;
+
+        cmdArgs.parse(new String[0]);
+        Files.write(config, Collections.singletonList("count = 6"));
+        cmdArgs.parse(new String[0]);
+
+        assertThat(cmdArgs.count, equalTo(6));
+        assertThat(cache.size(), equalTo(0));
+    }
+
+    @Test
+    public void readsConfigFilesThatAppearAfterCaching() throws Exception {
+        ParseCache cache = new ParseCache(10, Duration.ofMinutes(1));
+        CachedCmdArgs cmdArgs = new CachedCmdArgs(ParserEngine.NATIVE, cache);
+        cmdArgs.parse(new String[0]);
+        assertThat(cache.size(), equalTo(1));
+
+        cmdArgs.config = Files.write(directory.resolve("late.conf"), Collections.singletonList("count = 9"));
+        cmdArgs.parse(new String[0]);
+
+        assertThat(cmdArgs.count, equalTo(9));
+        assertThat(cache.hits(), equalTo(0L));
+    }
+
+    @Test
+    public void keysByListener() throws Exception {
+        ParseCache cache = new ParseCache(10, Duration.ofMinutes(1));
+        CachedCmdArgs first = new CachedCmdArgs(ParserEngine.NATIVE, cache);
+        CachedCmdArgs second = new CachedCmdArgs(ParserEngine.NATIVE, cache);
+        second.listener = new ParseListener() {
+        };
+
+        first.parse(new String[]{"--count", "3"});
+        second.parse(new String[]{"--count", "3"});
+
+        assertThat(second.parsedArgs(), not(sameInstance(first.parsedArgs())));
+        assertThat(cache.size(), equalTo(2));
+        assertThat(cache.hits(), equalTo(0L));
+    }
+
+    @Test
+    public void doesNotCacheExternalFallbacks() throws Exception {
+        ParseCache cache = new ParseCache(10, Duration.ofMinutes(1));
+        CachedCmdArgs cmdArgs = new EnvironmentCmdArgs(cache);
+
+        cmdArgs.parse(new String[0]);
+        assertThat(cmdArgs.count, equalTo(0));
+
+        cmdArgs.environment.put("COUNT", "7");
+        cmdArgs.parse(new String[0]);
+        assertThat(cmdArgs.count, equalTo(7));
+        assertThat(cmdArgs.sourceOf("count"), isPresentAnd(equalTo(ValueSource.ENVIRONMENT)));
+
+        cmdArgs.environment.put("COUNT", "8");
+        cmdArgs.parse(new String[0]);
+        assertThat(cmdArgs.count, equalTo(8));
+        assertThat(cache.size(), equalTo(0));
+        assertThat(cache.misses(), equalTo(0L));
+
+        // Once the option is given the fallback isn't looked up, so the command line can be cached.
+        cmdArgs.parse(new String[]{"--count", "1"});
+        assertThat(cache.size(), equalTo(1));
+    }
+
+    @Test
+    public void notifiesTheListenerOfHits() throws Exception {
+        ParseCache cache = new ParseCache(10, Duration.ofMinutes(1));
+        CachedCmdArgs cmdArgs = new CachedCmdArgs(ParserEngine.NATIVE, cache);
+        List<String> events = new ArrayList<>();
+        cmdArgs.listener = new ParseListener() {
+            @Override
+            public void onParsed(Class<?> type, ParserEngine engine, long tokenizeNanos, long resolveNanos) {
+                events.add("parsed " + engine + " " + (tokenizeNanos >= 0) + " " + resolveNanos);
+            }
+
+            @Override
+            public void onExtracted(Class<?> type, long durationNanos) {
+                events.add("extracted " + type.getSimpleName());
+            }
+        };
+
+        cmdArgs.parse(new String[]{"--count", "1"});
+        events.clear();
+        cmdArgs.parse(new String[]{"--count", "1"});
+
+        assertThat(cache.hits(), equalTo(1L));
+        assertThat(events, contains("parsed NATIVE true 0", "extracted CachedCmdArgs"));
+    }
+
+    @Test
+    public void cachesHelp() throws Exception {
+        ParseCache cache = new ParseCache(10, Duration.ofMinutes(1));
+        CachedCmdArgs cmdArgs = new CachedCmdArgs(ParserEngine.NATIVE, cache);
+
+        cmdArgs.parse(new String[]{"--count", "1"});
+        cmdArgs.parse(new String[]{"-h"});
+        cmdArgs.parse(new String[]{"-h"});
+
+        assertThat(cmdArgs.isHelpRequested(), equalTo(true));
+        assertThat(cache.hits(), equalTo(1L));
+    }
+
+    @Test
+    public void validatesTheLimits() {
+        expect(() -> new ParseCache(0, Duration.ofMinutes(1)))
+            .toThrow(IllegalArgumentException.class)
+            .withMessage("INTERNAL ERROR: The cache must hold at least 1 command line, not 0.");
+        expect(() -> new ParseCache(1, Duration.ZERO))
+            .toThrow(IllegalArgumentException.class)
+            .withMessage("INTERNAL ERROR: The maximum age of the cache must be positive, not PT0S.");
+    }
+
+    @EverythingIsNonnullByDefault
+    private static class CachedCmdArgs extends CmdArgsBase {
+
+        private final ParserEngine engine;
+        private final ParseCache cache;
+        private final AtomicInteger validations = new AtomicInteger();
+        private final Map<String, String> environment = new HashMap<>();
+        @Nullable private Path config = null;
+        private ParseListener listener = ParseListener.NONE;
+        private int count = 0;
+
+        CachedCmdArgs(ParserEngine engine, ParseCache cache) {
+            this.engine = engine;
+            this.cache = cache;
+        }
+
+        @Override
+        protected void addCustomOptions(Options options) {
+            options.addOption(Option.builder().longOpt("count").hasArg().build());
+        }
+
+        @Override
+        protected void extractCustomOptions() throws ParseException {
+            count = getOptionalIntArg("count").orElse(0);
+        }
+
+        @Override
+        protected Map<String, String> environment() {
+            return environment;
+        }
+
+        @Override
+        protected ParseListener parseListener() {
+            return listener;
+        }
+
+        @Override
+        protected List<ArgsValidator> validators() {
+            return Collections.singletonList(args -> {
+                validations.incrementAndGet();
+                if (args.getOptionalIntArg("count").orElse(0) < 0)
+                    throw new ParseException("The count must not be negative.");
+            });
+        }
+
+        @Override
+        protected List<Path> configFiles(ParsedArgs commandLine) {
+            return config == null ? Collections.emptyList() : Collections.singletonList(config);
+        }
+
+        @Override
+        protected ParseCache parseCache() {
+            return cache;
+        }
+
+        @Override
+        protected ParserEngine parserEngine() {
+            return engine;
+        }
+
+    }
+
+    @EverythingIsNonnullByDefault
+    private static class EnvironmentCmdArgs extends CachedCmdArgs {
+
+        EnvironmentCmdArgs(ParseCache cache) {
+            super(ParserEngine.NATIVE, cache);
+        }
+
+        @Override
+        protected void addFallbacks(Fallbacks fallbacks) {
+            fallbacks.option("count").environmentVariable("COUNT");
+        }
+
+    }
+
+    @EverythingIsNonnullByDefault
+    private static class OtherCmdArgs extends CmdArgsBase {
+
+        private final ParseCache cache;
+
+        OtherCmdArgs(ParseCache cache) {
+            this.cache = cache;
+        }
+
+        @Override
+        protected void addCustomOptions(Options options) {
+            options.addOption(Option.builder().longOpt("count").hasArg().build());
+        }
+
+        @Override
+        protected void extractCustomOptions() {
+        }
+
+        @Override
+        protected ParseCache parseCache() {
+            return cache;
+        }
+
+    }
+
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.zepben.commandlinearguments;
+
+import org.apache.commons.cli.ParseException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+
+import static com.zepben.testutils.exception.ExpectException.expect;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class ParsedArgsTest {
+
+    private final TestCmdArgs cmdArgs = new TestCmdArgs();
+
+    @Test
+    public void snapshotHasTheTypedGetters() throws Exception {
+        assertThat(cmdArgs.snapshot(), nullValue());
+
+        ParsedArgs parsed = cmdArgs.parseSnapshot(new String[]{"-a", "2018-12-03", "-b", "123", "-b", "456"});
+
+        assertThat(cmdArgs.snapshot(), sameInstance(parsed));
+        assertThat(parsed.schema(), sameInstance(cmdArgs.schema()));
+        assertThat(parsed.isHelpRequested(), equalTo(false));
+        assertThat(parsed.hasArg("a"), equalTo(true));
+        assertThat(parsed.getRequiredDateArg("a").toString(), equalTo("2018-12-03"));
+        assertThat(parsed.getRequiredIntArgList("b", 100, 500), equalTo(new int[]{123, 456}));
+        assertThat(parsed.streamIntArg("b").sum(), equalTo(579));
+        expect(() -> parsed.getRequiredStringArg("c"))
+            .toThrow(ParseException.class)
+            .withMessage("Missing required option: c.");
+    }
+
+    @Test
+    public void snapshotIsNotChangedByLaterParses() throws Exception {
+        ParsedArgs first = cmdArgs.parseSnapshot(new String[]{"-a", "first", "-b", "1", "2"});
+        List<String> streamed = new ArrayList<>();
+        first.iterateStringArg("b").forEachRemaining(streamed::add);
+
+        cmdArgs.parse(new String[]{"-a", "second"});
+        cmdArgs.parse(new String[]{"-a", "third"});
+        ParsedArgs fourth = cmdArgs.parseSnapshot(new String[]{"-a", "fourth"});
+        cmdArgs.parse(new String[]{"-a", "fifth"});
+        cmdArgs.parse(new String[]{"-a", "sixth"});
+        expect(() -> cmdArgs.parseSnapshot(new String[]{"-z"})).toThrow(ParseException.class);
+
+        assertThat(first.getRequiredStringArg("a"), equalTo("first"));
+        assertThat(first.streamStringArg("b").collect(Collectors.toList()), equalTo(streamed));
+        assertThat(fourth.getRequiredStringArg("a"), equalTo("fourth"));
+        assertThat(cmdArgs.snapshot(), sameInstance(fourth));
+        assertThat(cmdArgs.getRequiredStringArg("a"), equalTo("sixth"));
+    }
+
+    @Test
+    public void snapshotCanBeReadConcurrently() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            CountDownLatch done = new CountDownLatch(1);
+            List<Future<?>> readers = new ArrayList<>();
+            for (int i = 0; i < 4; ++i) {
+                readers.add(executor.submit(() -> {
+                    while (done.getCount() > 0) {
+                        ParsedArgs parsed = cmdArgs.snapshot();
+                        if (parsed != null) {
+                            int[] values = parsed.getRequiredIntArgList("b");
+                            assertThat(values[1], equalTo(values[0] + 1));
+                            assertThat(parsed.getRequiredIntArg("a"), equalTo(values[0]));
+                        }
+                    }
+                    return null;
+                }));
+            }
+
+            for (int i = 0; i < 10000; ++i) {
+                String value = Integer.toString(i);
+                cmdArgs.parseSnapshot(new String[]{"-a", value, "-b", value, Integer.toString(i + 1)});
+            }
+            done.countDown();
+
+            for (Future<?> reader : readers)
+                reader.get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+}
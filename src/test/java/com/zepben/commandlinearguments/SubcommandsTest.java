@@ -0,0 +1,170 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.zepben.commandlinearguments;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.cli.UnrecognizedOptionException;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.github.npathai.hamcrestopt.OptionalMatchers.isEmpty;
+import static com.github.npathai.hamcrestopt.OptionalMatchers.isPresentAnd;
+import static com.zepben.testutils.exception.ExpectException.expect;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class SubcommandsTest {
+
+    @Test
+    public void parsesTheOptionsOfTheCommand() throws Exception {
+        for (ParserEngine engine : ParserEngine.values()) {
+            ToolCmdArgs cmdArgs = new ToolCmdArgs(engine);
+
+            cmdArgs.parse(new String[]{"import", "--file", "a.csv", "-v"});
+            assertThat(cmdArgs.command(), isPresentAnd(equalTo("import")));
+            assertThat(cmdArgs.extracted, equalTo("import a.csv verbose"));
+
+            cmdArgs.parse(new String[]{"export", "--format", "json"});
+            assertThat(cmdArgs.command(), isPresentAnd(equalTo("export")));
+            assertThat(cmdArgs.extracted, equalTo("export json"));
+        }
+    }
+
+    @Test
+    public void optionsOfOtherCommandsAreRejected() {
+        for (ParserEngine engine : ParserEngine.values()) {
+            ToolCmdArgs cmdArgs = new ToolCmdArgs(engine);
+
+            expect(() -> cmdArgs.parse(new String[]{"export", "--file", "a.csv"})).toThrow(UnrecognizedOptionException.class);
+            expect(() -> cmdArgs.parse(new String[]{"--file", "a.csv", "import"})).toThrow(UnrecognizedOptionException.class);
+        }
+    }
+
+    @Test
+    public void commandMustBeKnown() {
+        expect(() -> new ToolCmdArgs(ParserEngine.COMMONS_CLI).parse(new String[]{"delete", "-v"}))
+            .toThrow(ParseException.class)
+            .withMessage("Unknown command 'delete'. Expected one of: import, export, check.");
+        expect(() -> new ToolCmdArgs(ParserEngine.COMMONS_CLI).parse(new String[]{"-v"}))
+            .toThrow(ParseException.class)
+            .withMessage("Missing command. Expected one of: import, export, check.");
+        expect(() -> new ToolCmdArgs(ParserEngine.NATIVE).parse(new String[0]))
+            .toThrow(ParseException.class)
+            .withMessage("Missing command. Expected one of: import, export, check.");
+    }
+
+    @Test
+    public void helpCanBeRequestedWithOrWithoutACommand() throws Exception {
+        ToolCmdArgs cmdArgs = new ToolCmdArgs(ParserEngine.COMMONS_CLI);
+
+        cmdArgs.parse(new String[]{"-h"});
+        assertThat(cmdArgs.isHelpRequested(), equalTo(true));
+        assertThat(cmdArgs.command(), isEmpty());
+
+        cmdArgs.parse(new String[]{"import", "--help"});
+        assertThat(cmdArgs.isHelpRequested(), equalTo(true));
+        assertThat(cmdArgs.command(), isPresentAnd(equalTo("import")));
+        assertThat(cmdArgs.options("import").hasLongOption("file"), equalTo(true));
+        assertThat(cmdArgs.options().hasLongOption("file"), equalTo(false));
+    }
+
+    @Test
+    public void onlyCompilesTheCommandsThatAreUsed() throws Exception {
+        new ToolCmdArgs(ParserEngine.NATIVE).parse(new String[]{"check"});
+        new ToolCmdArgs(ParserEngine.COMMONS_CLI).parse(new String[]{"check", "-v"});
+
+        assertThat(ToolCmdArgs.COMPILED.get("check").get(), equalTo(1));
+        assertThat(new ToolCmdArgs(ParserEngine.NATIVE).schema("check"), sameInstance(new ToolCmdArgs(ParserEngine.NATIVE).schema("check")));
+        assertThat(ToolCmdArgs.COMPILED.get("check").get(), equalTo(1));
+        assertThat(ToolCmdArgs.COMPILED.keySet(), everyItem(oneOf("import", "export", "check")));
+    }
+
+    @Test
+    public void commandFallbacksOnlyApplyToTheirCommand() throws Exception {
+        ToolCmdArgs cmdArgs = new ToolCmdArgs(ParserEngine.COMMONS_CLI);
+
+        ParsedArgs export = cmdArgs.parseSnapshot(new String[]{"export"});
+        assertThat(export.command(), isPresentAnd(equalTo("export")));
+        assertThat(export.getRequiredStringArg("format"), equalTo("csv"));
+        assertThat(export.sourceOf("format"), isPresentAnd(equalTo(ValueSource.DEFAULT)));
+        assertThat(export.schema(), sameInstance(cmdArgs.schema("export")));
+        assertThat(export.schema().command(), isPresentAnd(equalTo("export")));
+        assertThat(cmdArgs.schema().command(), isEmpty());
+    }
+
+    @Test
+    public void unknownCommandSchemasAreAnError() {
+        expect(() -> new ToolCmdArgs(ParserEngine.COMMONS_CLI).schema("delete"))
+            .toThrow(IllegalArgumentException.class)
+            .withMessage("INTERNAL ERROR: 'delete' is not one of the commands.");
+    }
+
+    @EverythingIsNonnullByDefault
+    private static class ToolCmdArgs extends CmdArgsBase {
+
+        private static final Map<String, AtomicInteger> COMPILED = new ConcurrentHashMap<>();
+
+        private final ParserEngine engine;
+        private String extracted = "";
+
+        ToolCmdArgs(ParserEngine engine) {
+            this.engine = engine;
+        }
+
+        @Override
+        protected void addCustomOptions(Options options) {
+            options.addOption(Option.builder("v").longOpt("verbose").build());
+        }
+
+        @Override
+        protected List<String> commands() {
+            return Arrays.asList("import", "export", "check");
+        }
+
+        @Override
+        protected void addCommandOptions(String command, Options options) {
+            COMPILED.computeIfAbsent(command, key -> new AtomicInteger()).incrementAndGet();
+
+            if ("import".equals(command))
+                options.addOption(Option.builder().longOpt("file").hasArg().build());
+            else if ("export".equals(command))
+                options.addOption(Option.builder().longOpt("format").hasArg().build());
+        }
+
+        @Override
+        protected void addCommandFallbacks(String command, Fallbacks fallbacks) {
+            if ("export".equals(command))
+                fallbacks.option("format").defaultValue("csv");
+        }
+
+        @Override
+        protected void extractCustomOptions() throws ParseException {
+            String command = command().orElse("");
+            if ("import".equals(command))
+                extracted = command + " " + getRequiredStringArg("file") + (hasArg("verbose") ? " verbose" : "");
+            else if ("export".equals(command))
+                extracted = command + " " + getRequiredStringArg("format");
+            else
+                extracted = command;
+        }
+
+        @Override
+        protected ParserEngine parserEngine() {
+            return engine;
+        }
+
+    }
+
+}